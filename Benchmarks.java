@@ -0,0 +1,450 @@
+package org.cis1200.minesweeper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * This class holds the benchmarks of the game. It is not part of the game itself;
+ * run its main method (with the name of a benchmark, or nothing to run all of
+ * them) to print the measurements.
+ *
+ * Benchmarks:
+ * - memory = How many bytes of heap each Board costs per cell
+ * - cascade = How many cells per microsecond the RevealCascade uncovers (and
+ * covers back up) on open boards from 16x16 up to millions of cells
+ * - generation = How long it takes to make a seeded board at bomb densities from
+ * 10% to 99%
+ * - numbers = How long the NeighborCounter takes to fill in the numbers of
+ * boards up to 100M cells (in parallel on all cores)
+ * - codec = How long the BoardCodec takes to save and load a 10M-cell board
+ * (to a ByteBuffer and through streams)
+ * - archive = How fast 16x16 snapshots can be appended to and read back out
+ * of a SnapshotArchive
+ * - solver = How many positions per second the Solver solves while playing
+ * whole games (beginner, intermediate, expert and a big board)
+ * - noguess = How long the NoGuessGenerator takes to make an expert board that
+ * can be solved without guessing (p50, p99 and max over many boards)
+ *
+ * The main operations of the game (making boards, the string and binary
+ * import/export, numSurroundingBombs, reveal cascades, undo) are measured by the
+ * JMH benchmarks in jmh/ instead, at several board sizes and bomb densities, so
+ * the numbers can be compared from release to release (run them with
+ * gradle jmh).
+ */
+public class Benchmarks {
+
+    /**
+     * Runs the benchmarks named in args (or all of them).
+     *
+     * @param args the names of the benchmarks to run
+     */
+    public static void main(String[] args) {
+        if (shouldRun(args, "memory")) {
+            memory();
+        }
+        if (shouldRun(args, "cascade")) {
+            cascade();
+        }
+        if (shouldRun(args, "generation")) {
+            generation();
+        }
+        if (shouldRun(args, "numbers")) {
+            numbers();
+        }
+        if (shouldRun(args, "codec")) {
+            codec();
+        }
+        if (shouldRun(args, "archive")) {
+            archive();
+        }
+        if (shouldRun(args, "solver")) {
+            solver();
+        }
+        if (shouldRun(args, "noguess")) {
+            noGuess();
+        }
+    }
+
+    /**
+     * Measures the heap used by boards of increasing sizes (up to 10,000 x
+     * 10,000) and prints the number of bytes used per cell.
+     */
+    public static void memory() {
+        int[] sizes = { 16, 100, 1000, 5000, 10000 };
+        System.out.println("Board memory footprint:");
+        for (int size : sizes) {
+            long before = usedMemory();
+            Board board = new Board(size, size, size * size / 8);
+            long after = usedMemory();
+
+            long cells = (long) size * size;
+            System.out.printf(
+                    "  %5d x %-5d %,15d bytes  %6.3f bytes/cell%n",
+                    size, size, after - before, (double) (after - before) / cells
+            );
+            // Keeps the board alive until after it has been measured
+            if (board.getRows() != size) {
+                throw new IllegalStateException();
+            }
+        }
+    }
+
+    /**
+     * Uncovers (and then covers back up) the whole of a board without bombs, so
+     * a single click cascades over every cell, and prints the cells changed per
+     * microsecond. Every size is repeated a few times so the JIT has warmed up by
+     * the last (printed) round.
+     */
+    public static void cascade() {
+        int[] sizes = { 16, 64, 256, 1024, 2048, 4096 };
+        System.out.println("Reveal cascade throughput:");
+        RevealCascade cascade = new RevealCascade();
+        for (int size : sizes) {
+            Board board = new Board(size, size, 0);
+            long cells = (long) size * size;
+            // Small boards need many rounds to be measurable
+            int rounds = (int) Math.max(3, Math.min(20000, 50_000_000L / cells));
+
+            long revealNanos = 0;
+            long hideNanos = 0;
+            for (int warmup = 0; warmup < 2; warmup++) {
+                revealNanos = 0;
+                hideNanos = 0;
+                for (int i = 0; i < rounds; i++) {
+                    long start = System.nanoTime();
+                    int revealed = cascade.reveal(board, 0, 0);
+                    long middle = System.nanoTime();
+                    int hidden = cascade.hide(board, 0, 0);
+                    long end = System.nanoTime();
+
+                    if (revealed != cells || hidden != cells) {
+                        throw new IllegalStateException();
+                    }
+                    revealNanos += middle - start;
+                    hideNanos += end - middle;
+                }
+            }
+
+            // cells per microsecond = cells * rounds / (nanoseconds / 1000)
+            double changed = cells * rounds * 1000.0;
+            System.out.printf(
+                    "  %5d x %-5d reveal %8.1f cells/us   hide %8.1f cells/us%n",
+                    size, size, changed / revealNanos, changed / hideNanos
+            );
+        }
+    }
+
+    /**
+     * Makes 1000x1000 boards at increasing bomb densities and prints how long each
+     * takes. Also checks that the same seed gives the same board.
+     */
+    public static void generation() {
+        double[] densities = { 0.1, 0.25, 0.5, 0.75, 0.9, 0.99 };
+        int size = 1000;
+        int rounds = 20;
+        System.out.println("Seeded board generation (" + size + " x " + size + "):");
+        for (double density : densities) {
+            int bombs = (int) (size * size * density);
+            // The fastest round is printed (the others include JIT and GC noise)
+            long nanos = Long.MAX_VALUE;
+            for (int i = 0; i < rounds; i++) {
+                long start = System.nanoTime();
+                Board board = new Board(size, size, bombs, i);
+                nanos = Math.min(nanos, System.nanoTime() - start);
+
+                if (i == 0 && !Arrays.equals(
+                        board.getCells(), new Board(size, size, bombs, i).getCells()
+                )) {
+                    throw new IllegalStateException("same seed gave different boards");
+                }
+            }
+            System.out.printf("  %3.0f%% bombs  %8.2f ms%n", density * 100, nanos / 1e6);
+        }
+    }
+
+    /**
+     * Makes boards (20% bombs) of up to 10,000 x 10,000 and prints how long the
+     * whole board took to make and how long addNumbers alone takes. Also checks
+     * the numbers of a smaller board against numSurroundingBombs.
+     */
+    public static void numbers() {
+        Board check = new Board(700, 500, 700 * 500 / 5, 1);
+        for (int i = 0; i < check.getRows(); i++) {
+            for (int j = 0; j < check.getColumns(); j++) {
+                if (!check.isBomb(i, j)
+                        && check.getNumOfCell(i, j) != check.numSurroundingBombs(i, j)) {
+                    throw new IllegalStateException("wrong number at " + i + ", " + j);
+                }
+            }
+        }
+
+        int[] sizes = { 1000, 3000, 10000 };
+        int rounds = 5;
+        System.out.println("Neighbor counts (20% bombs, "
+                + Runtime.getRuntime().availableProcessors() + " cores):");
+        for (int size : sizes) {
+            long start = System.nanoTime();
+            Board board = new Board(size, size, size * size / 5, 7);
+            long total = System.nanoTime() - start;
+
+            long nanos = Long.MAX_VALUE;
+            for (int i = 0; i < rounds; i++) {
+                start = System.nanoTime();
+                board.addNumbers();
+                nanos = Math.min(nanos, System.nanoTime() - start);
+            }
+            System.out.printf(
+                    "  %5d x %-5d whole board %8.1f ms   addNumbers %8.1f ms%n",
+                    size, size, total / 1e6, nanos / 1e6
+            );
+        }
+    }
+
+    /**
+     * Saves and loads a 10M-cell board (with about half of it uncovered) with the
+     * BoardCodec, both to a ByteBuffer and through streams, and prints the
+     * fastest of a few rounds. Also checks that the board survives the trip.
+     */
+    public static void codec() {
+        int rows = 4000;
+        int columns = 2500;
+        GameEngine engine = new GameEngine(rows, columns, rows * columns / 10, 3);
+        Board board = engine.getBoard();
+        for (int i = 0; i < rows / 2; i++) {
+            for (int j = 0; j < columns; j++) {
+                if (!board.isBomb(i, j)) {
+                    board.changeVisibilityOfCell(i, j, true);
+                }
+            }
+        }
+        int size = BoardCodec.encodedSize(board);
+        System.out.printf("Board codec (%,d cells, %,d bytes):%n", rows * columns, size);
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(size);
+        long[] best = { Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE };
+        Board loaded = null;
+        for (int round = 0; round < 10; round++) {
+            long start = System.nanoTime();
+            buffer.clear();
+            BoardCodec.write(board, buffer);
+            long written = System.nanoTime();
+            buffer.flip();
+            loaded = BoardCodec.read(buffer);
+            long read = System.nanoTime();
+            bytes.reset();
+            try {
+                BoardCodec.write(board, bytes);
+                long streamed = System.nanoTime();
+                loaded = BoardCodec.read(new ByteArrayInputStream(bytes.toByteArray()));
+                long end = System.nanoTime();
+                best[2] = Math.min(best[2], streamed - read);
+                best[3] = Math.min(best[3], end - streamed);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            best[0] = Math.min(best[0], written - start);
+            best[1] = Math.min(best[1], read - written);
+        }
+        if (!Arrays.equals(board.getCells(), loaded.getCells())) {
+            throw new IllegalStateException("board changed in the round trip");
+        }
+        System.out.printf("  ByteBuffer   write %7.1f ms   read %7.1f ms%n",
+                best[0] / 1e6, best[1] / 1e6);
+        System.out.printf("  Streams      write %7.1f ms   read %7.1f ms%n",
+                best[2] / 1e6, best[3] / 1e6);
+    }
+
+    /**
+     * Appends snapshots of many 16x16 games to a temporary SnapshotArchive, reopens
+     * it (which reads the index back), and loads games at random. Prints the
+     * appends and loads per second and the bytes used per game.
+     */
+    public static void archive() {
+        int games = 200_000;
+        try {
+            Path path = Files.createTempFile("minesweeper", ".archive");
+            Path indexPath = path.resolveSibling(path.getFileName() + ".idx");
+            try {
+                GameEngine engine = new GameEngine();
+                long start = System.nanoTime();
+                try (SnapshotArchive archive = new SnapshotArchive(path)) {
+                    for (int id = 0; id < games; id++) {
+                        engine.reset(id);
+                        engine.showClickedCell(id % 16, id / 16 % 16);
+                        archive.append(id, engine);
+                    }
+                }
+                long appended = System.nanoTime();
+
+                long loadStart;
+                SplittableRandom random = new SplittableRandom(1);
+                try (SnapshotArchive archive = new SnapshotArchive(path)) {
+                    loadStart = System.nanoTime();
+                    for (int i = 0; i < games; i++) {
+                        long id = random.nextInt(games);
+                        if (!archive.read(id, engine)) {
+                            throw new IllegalStateException("missing game " + id);
+                        }
+                    }
+                }
+                long loaded = System.nanoTime();
+
+                System.out.printf("Snapshot archive (%,d games of 16x16):%n", games);
+                System.out.printf("  append %,10.0f games/s   %5.1f bytes/game (+index)%n",
+                        games / ((appended - start) / 1e9), (double) Files.size(path) / games);
+                System.out.printf("  open   %,10.1f ms   load %,10.0f games/s%n",
+                        (loadStart - appended) / 1e6, games / ((loaded - loadStart) / 1e9));
+            } finally {
+                Files.deleteIfExists(path);
+                Files.deleteIfExists(indexPath);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Plays games with the Solver: the first click is on a 0, and then every cell
+     * the solver proves safe is uncovered, until it can't prove anything else.
+     * Every position it is run on counts. Prints the positions solved per second
+     * and how many of the games were won without ever guessing. The first round
+     * of every preset only warms up the JIT.
+     */
+    public static void solver() {
+        int[][] presets = { { 9, 9, 10 }, { 16, 16, 40 }, { 16, 30, 99 }, { 256, 256, 9830 } };
+        String[] names = { "beginner", "intermediate", "expert", "256x256" };
+        long budget = 1_000_000_000L;
+        Solver solver = new Solver();
+        System.out.println("Solver throughput (positions = one solve after each round of moves):");
+        for (int p = 0; p < presets.length; p++) {
+            int rows = presets[p][0];
+            int columns = presets[p][1];
+            int bombs = presets[p][2];
+            long positions = 0;
+            long nanos = 0;
+            int games = 0;
+            int won = 0;
+            for (int round = 0; round < 2; round++) {
+                positions = 0;
+                nanos = 0;
+                games = 0;
+                won = 0;
+                for (long seed = 0; nanos < budget; seed++) {
+                    GameEngine engine = new GameEngine(rows, columns, bombs, seed);
+                    int zero = firstZero(engine.getBoard());
+                    engine.showClickedCell(zero / columns, zero % columns);
+                    while (engine.getGameInPlay()) {
+                        long start = System.nanoTime();
+                        solver.solve(engine.getBoard());
+                        nanos += System.nanoTime() - start;
+                        positions++;
+                        if (solver.getSafeCount() == 0) {
+                            break;
+                        }
+                        for (int cell : solver.getSafeCells()) {
+                            engine.showClickedCell(cell / columns, cell % columns);
+                        }
+                    }
+                    games++;
+                    if (engine.getState() == GameEngine.WON) {
+                        won++;
+                    }
+                }
+            }
+            System.out.printf(
+                    "  %-12s %,12.0f positions/s  %8.2f us/position  %5.1f%% won without"
+                            + " guessing%n",
+                    names[p], positions / (nanos / 1e9), nanos / 1e3 / positions,
+                    100.0 * won / games
+            );
+        }
+    }
+
+    /**
+     * Makes expert boards (16x30, 99 bombs) that can be solved without guessing
+     * from the middle cell, on every core, and prints how long they took. The
+     * first round only warms up the JIT.
+     */
+    public static void noGuess() {
+        int boards = 200;
+        long[] times = new long[boards];
+        int failed = 0;
+        try (NoGuessGenerator generator = new NoGuessGenerator()) {
+            for (int round = 0; round < 2; round++) {
+                failed = 0;
+                for (int i = 0; i < boards; i++) {
+                    long start = System.nanoTime();
+                    Board board = generator.generate(16, 30, 99, 8, 15, i, 5_000);
+                    times[i] = System.nanoTime() - start;
+                    if (board == null) {
+                        failed++;
+                    }
+                }
+            }
+        }
+        Arrays.sort(times);
+        System.out.printf(
+                "No-guess expert boards (%d threads): p50 %.1f ms  p99 %.1f ms  max %.1f ms"
+                        + "  (%d out of %d timed out)%n",
+                Runtime.getRuntime().availableProcessors(), times[boards / 2] / 1e6,
+                times[boards * 99 / 100] / 1e6, times[boards - 1] / 1e6, failed, boards
+        );
+    }
+
+    /**
+     * Simple helper function that finds a cell to click on that cascades.
+     *
+     * @param board the board to search
+     * @return the index of the first 0 on the board (or 0 if there is none)
+     */
+    private static int firstZero(Board board) {
+        byte[] cells = board.getCells();
+        for (int i = 0; i < cells.length; i++) {
+            if ((cells[i] & Board.VALUE_MASK) == 0) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Simple helper function that asks for a garbage collection and returns the
+     * heap that is still in use afterwards.
+     *
+     * @return the number of bytes of heap in use
+     */
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Simple helper function that checks whether a benchmark was asked for.
+     *
+     * @param args the names given on the command line
+     * @param name the name of the benchmark
+     * @return true if no names were given or name is one of them
+     */
+    private static boolean shouldRun(String[] args, String name) {
+        if (args.length == 0) {
+            return true;
+        }
+        for (String arg : args) {
+            if (arg.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,139 @@
+package org.cis1200.minesweeper;
+
+/**
+ * Helper functions for bitplanes: one bit per cell of the board, packed 64
+ * cells per long (cell i is bit i % 64 of word i / 64). A plane holds one yes/no
+ * fact about every cell (is it a bomb, is it flagged, ...), so questions about
+ * the whole board become a loop over words with bit operations and popcounts,
+ * 64 cells at a time, instead of a loop over cells.
+ *
+ * The bits past the last cell of the board are always 0.
+ */
+final class BitPlanes {
+
+    private BitPlanes() {
+    }
+
+    /**
+     * @param cells the number of cells of the board
+     * @return a new plane with every bit 0
+     */
+    static long[] newPlane(int cells) {
+        return new long[(int) ((cells + 63L) >>> 6)];
+    }
+
+    /**
+     * Makes the plane of the cells that have all of the given state bits set
+     * (e.g. Board.VISIBLE or Board.FLAGGED).
+     *
+     * @param cells the packed cells of the board
+     * @param bits  the state bits to look for
+     * @return the plane
+     */
+    static long[] ofState(byte[] cells, int bits) {
+        long[] plane = newPlane(cells.length);
+        for (int i = 0; i < cells.length; i++) {
+            if ((cells[i] & bits) == bits) {
+                plane[i >>> 6] |= 1L << i;
+            }
+        }
+        return plane;
+    }
+
+    /**
+     * Makes the plane of the bombs.
+     *
+     * @param cells the packed cells of the board
+     * @return the plane
+     */
+    static long[] ofBombs(byte[] cells) {
+        long[] plane = newPlane(cells.length);
+        for (int i = 0; i < cells.length; i++) {
+            if ((cells[i] & Board.VALUE_MASK) == 9) {
+                plane[i >>> 6] |= 1L << i;
+            }
+        }
+        return plane;
+    }
+
+    static boolean get(long[] plane, int i) {
+        return (plane[i >>> 6] & 1L << i) != 0;
+    }
+
+    static void set(long[] plane, int i) {
+        plane[i >>> 6] |= 1L << i;
+    }
+
+    static void clear(long[] plane, int i) {
+        plane[i >>> 6] &= ~(1L << i);
+    }
+
+    /**
+     * @return the number of cells in the plane
+     */
+    static int count(long[] plane) {
+        int count = 0;
+        for (long word : plane) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of cells in both planes
+     */
+    static int countBoth(long[] a, long[] b) {
+        int count = 0;
+        for (int w = 0; w < a.length; w++) {
+            count += Long.bitCount(a[w] & b[w]);
+        }
+        return count;
+    }
+
+    /**
+     * Lists the cells of the plane, in increasing order.
+     *
+     * @param plane the plane
+     * @return the indices of the cells
+     */
+    static int[] toIndices(long[] plane) {
+        int[] indices = new int[count(plane)];
+        int size = 0;
+        for (int w = 0; w < plane.length; w++) {
+            for (long word = plane[w]; word != 0; word &= word - 1) {
+                indices[size++] = w << 6 | Long.numberOfTrailingZeros(word);
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Copies the bits of one row of the board into words of their own, so that
+     * column j of the row is bit j % 64 of out[j / 64] (rows usually don't start
+     * at the start of a word).
+     *
+     * @param plane   the plane of the whole board
+     * @param row     the row to copy
+     * @param columns the number of columns of the board
+     * @param out     the words of the row ((columns + 63) / 64 of them)
+     */
+    static void copyRow(long[] plane, int row, int columns, long[] out) {
+        long start = (long) row * columns;
+        int words = (columns + 63) >>> 6;
+        for (int w = 0; w < words; w++) {
+            long position = start + ((long) w << 6);
+            int word = (int) (position >>> 6);
+            int shift = (int) (position & 63);
+            long bits = plane[word] >>> shift;
+            if (shift != 0 && word + 1 < plane.length) {
+                bits |= plane[word + 1] << (64 - shift);
+            }
+            out[w] = bits;
+        }
+        // Drops the bits of the next row from the last word
+        int extra = words * 64 - columns;
+        if (extra > 0) {
+            out[words - 1] &= -1L >>> extra;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.cis1200.minesweeper;
 
-import java.util.Random;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
 /**
  * This class focuses on creating the game board which contains the proper
@@ -9,102 +10,308 @@ import java.util.Random;
  * that are the constructor (2nd), addBombs, and numSurroundingBombs.
  *
  * I will create a algorithm that can determine the position of each item like
- * so, knowing that the board is 16x16:
- * - The x-coordinate will be: (cell value) / 16
- * - The y-coordinate will be: (cell value) % 16
- * For example, cell 5 will be in row 0 (5/16 = 0) and column 5 (5%16 = 5)
+ * so, for a board with any number of rows and columns:
+ * - The x-coordinate will be: (cell value) / columns
+ * - The y-coordinate will be: (cell value) % columns
+ * For example, on a 16x16 board cell 5 will be in row 0 (5/16 = 0) and column 5
+ * (5%16 = 5)
  *
- * Because in my version of minesweeper, the board is only a 16x16, the
- * coordinates are between 0 and 15. Also, by default, the number of bombs is
- * set to 30.
+ * Instead of one Cell object per cell, every cell is packed into a single byte
+ * of one big array (indexed by the cell value above), so a board costs about
+ * one byte per cell no matter how big it gets:
+ * - Bits 0-3: the numerical value of the cell (0-8, 9 if bomb)
+ * - Bit 4: whether the cell is visible
+ * - Bit 5: whether the cell is flagged
+ *
+ * The bombs are placed using a seed, so the same seed and size always give
+ * exactly the same board (e.g. to reproduce a bug report). By default, the board
+ * is a 16x16 with 30 bombs and a random seed.
  */
 
 public class Board {
+    // The largest number of cells a board can hold (largest possible array)
+    public static final int MAX_CELLS = Integer.MAX_VALUE - 8;
+
+    static final int VALUE_MASK = 0x0F;
+    static final int VISIBLE = 0x10;
+    static final int FLAGGED = 0x20;
+
     private int rows = 16;
     private int columns = 16;
     private int totalBombs = 30;
-    private Cell[][] currentBoard;
+    private long seed;
+    private byte[] cells;
+    // The cells (in increasing order) that must not get a bomb
+    private int[] excluded = new int[0];
+    // One bit per cell, set for the bombs (see BitPlanes); made when first needed
+    private long[] bombPlane;
 
     /**
      * Default constructor. If nothing is specified, create and initialize a random
-     * board.
+     * 16x16 board with 30 bombs.
      */
     public Board() {
-        currentBoard = new Cell[rows][columns];
+        this(16, 16, 30);
+    }
+
+    /**
+     * Overloaded constructor. Creates and initializes a random board of the given
+     * size (with a random seed).
+     *
+     * @param rows    the number of rows
+     * @param columns the number of columns
+     * @param bombs   the number of bombs
+     * @throws IllegalArgumentException if the size is not positive, the board
+     *                                  would have more than MAX_CELLS cells, or
+     *                                  the bombs do not fit on the board
+     */
+    public Board(int rows, int columns, int bombs) {
+        this(rows, columns, bombs, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Overloaded constructor. Creates and initializes the board of the given size
+     * that belongs to the given seed. The same arguments always give the same
+     * board.
+     *
+     * @param rows    the number of rows
+     * @param columns the number of columns
+     * @param bombs   the number of bombs
+     * @param seed    the seed used to place the bombs
+     * @throws IllegalArgumentException if the size is not positive, the board
+     *                                  would have more than MAX_CELLS cells, or
+     *                                  the bombs do not fit on the board
+     */
+    public Board(int rows, int columns, int bombs, long seed) {
+        checkSize(rows, columns);
+        if (bombs < 0 || bombs > rows * columns) {
+            throw new IllegalArgumentException();
+        }
+
+        this.rows = rows;
+        this.columns = columns;
+        this.totalBombs = bombs;
+        this.seed = seed;
+        cells = new byte[rows * columns];
         initializeBoard();
     }
 
     /**
-     * Overloaded constructor. Takes in a string representation of a board state
-     * (state that contains the numerical values, not the visibility and flag
-     * status)
-     * and creates a board.
-     * 
-     * @param stringBoard
+     * Overloaded constructor. Like the seeded constructor, but no bombs are placed
+     * on the given cell or the (up to) 8 cells around it, so clicking it first
+     * always uncovers a 0. Used by the NoGuessGenerator.
+     *
+     * @param rows    the number of rows
+     * @param columns the number of columns
+     * @param bombs   the number of bombs
+     * @param seed    the seed used to place the bombs
+     * @param safeX   the x coordinate of the cell that must be a 0
+     * @param safeY   the y coordinate of the cell that must be a 0
+     * @throws IllegalArgumentException if the size is not positive, the board
+     *                                  would have more than MAX_CELLS cells, the
+     *                                  safe cell is out of bounds, or the bombs do
+     *                                  not fit on the rest of the board
+     */
+    public Board(int rows, int columns, int bombs, long seed, int safeX, int safeY) {
+        checkSize(rows, columns);
+        if (safeX < 0 || safeX >= rows || safeY < 0 || safeY >= columns) {
+            throw new IllegalArgumentException();
+        }
+        int count = 0;
+        int[] around = new int[9];
+        for (int i = Math.max(0, safeX - 1); i <= Math.min(rows - 1, safeX + 1); i++) {
+            for (int j = Math.max(0, safeY - 1); j <= Math.min(columns - 1, safeY + 1); j++) {
+                around[count++] = i * columns + j;
+            }
+        }
+        if (bombs < 0 || bombs > rows * columns - count) {
+            throw new IllegalArgumentException();
+        }
+
+        this.rows = rows;
+        this.columns = columns;
+        this.totalBombs = bombs;
+        this.seed = seed;
+        // Found row by row, so they are already in increasing order
+        this.excluded = Arrays.copyOf(around, count);
+        cells = new byte[rows * columns];
+        initializeBoard();
+    }
+
+    /**
+     * Overloaded constructor. Takes in a string representation of a 16x16 board
+     * state (state that contains the numerical values, not the visibility and
+     * flag status) and creates a board.
+     *
+     * @param stringBoard the 256 values of the board (0-9)
      */
     public Board(String stringBoard) {
+        this(16, 16, stringBoard);
+    }
+
+    /**
+     * Overloaded constructor. Takes in a string representation of a board state
+     * of the given size (state that contains the numerical values, not the
+     * visibility and flag status) and creates a board.
+     *
+     * @param rows        the number of rows
+     * @param columns     the number of columns
+     * @param stringBoard the rows * columns values of the board (0-9)
+     * @throws IllegalArgumentException if the size or the string is invalid
+     */
+    public Board(int rows, int columns, String stringBoard) {
+        checkSize(rows, columns);
         if (stringBoard == null || stringBoard.length() != rows * columns) {
             throw new IllegalArgumentException();
         }
 
-        currentBoard = new Cell[rows][columns];
-        for (int i = 0; i < 256; i++) {
-            currentBoard[i / 16][i % 16] = new Cell(
-                    i / 16, i % 16,
-                    Integer.parseInt(stringBoard.substring(0, 1))
-            );
-            stringBoard = stringBoard.substring(1);
+        this.rows = rows;
+        this.columns = columns;
+        cells = new byte[rows * columns];
+        totalBombs = 0;
+        for (int i = 0; i < cells.length; i++) {
+            int value = stringBoard.charAt(i) - '0';
+            if (value < 0 || value > 9) {
+                throw new IllegalArgumentException();
+            }
+            if (value == 9) {
+                totalBombs++;
+            }
+            cells[i] = (byte) value;
+        }
+    }
+
+    /**
+     * Overloaded constructor. Creates a board around already packed cells (see
+     * top for the layout), e.g. ones read by the BoardCodec. The array is used
+     * as is, not copied.
+     *
+     * @param rows    the number of rows
+     * @param columns the number of columns
+     * @param cells   the packed cells, rows * columns of them
+     * @throws IllegalArgumentException if the size doesn't match the cells
+     */
+    Board(int rows, int columns, byte[] cells) {
+        checkSize(rows, columns);
+        if (cells.length != rows * columns) {
+            throw new IllegalArgumentException();
+        }
+
+        this.rows = rows;
+        this.columns = columns;
+        this.cells = cells;
+        totalBombs = 0;
+        for (int i = 0; i < cells.length; i++) {
+            if ((cells[i] & VALUE_MASK) == 9) {
+                totalBombs++;
+            }
+        }
+    }
+
+    /**
+     * Simple helper function that checks that a board of the given size can be
+     * made.
+     *
+     * @param rows    the number of rows
+     * @param columns the number of columns
+     * @throws IllegalArgumentException if the size is invalid
+     */
+    private static void checkSize(int rows, int columns) {
+        if (rows <= 0 || columns <= 0 || (long) rows * columns > MAX_CELLS) {
+            throw new IllegalArgumentException();
         }
     }
 
     /**
      * Initializes the board by calling the two functions in order (since addNumbers
-     * relies on addBombs)
+     * relies on addBombs), and records how long each one took in the Metrics
+     * (and the whole thing as a BoardGeneratedEvent for the flight recorder)
      */
     public void initializeBoard() {
+        GameEvents.BoardGeneratedEvent event = new GameEvents.BoardGeneratedEvent();
+        event.begin();
+        long start = System.nanoTime();
         addBombs();
+        long bombsPlaced = System.nanoTime();
         addNumbers();
+        Metrics.ADD_BOMBS_NANOS.record(bombsPlaced - start);
+        Metrics.ADD_NUMBERS_NANOS.record(System.nanoTime() - bombsPlaced);
+        if (event.shouldCommit()) {
+            event.rows = rows;
+            event.columns = columns;
+            event.bombs = totalBombs;
+            event.seed = seed;
+            event.commit();
+        }
     }
 
     /**
-     * Uses a random number generator to determine placements of bombs in 30
-     * unique positions
+     * Places totalBombs bombs in unique random positions, using the seed of the
+     * board. Uses Floyd's sampling algorithm, so every bomb takes exactly one
+     * random number (no retries when a position is already taken), even on boards
+     * that are almost all bombs:
+     * - For each j from (cells - bombs) to (cells - 1), pick t between 0 and j
+     * - If t already has a bomb, put the bomb on j instead (j can't have one yet)
+     * If some cells must stay free of bombs, the positions are picked among the
+     * other cells only (position t is the t-th cell that isn't excluded).
      */
     public void addBombs() {
-        Random r = new Random();
+        SplittableRandom r = new SplittableRandom(seed);
+        int available = cells.length - excluded.length;
+        bombPlane = BitPlanes.newPlane(cells.length);
 
-        int tempCountBombs = 0;
-        while (tempCountBombs < totalBombs) {
-            int index = r.nextInt(rows * columns);
+        for (int j = available - totalBombs; j < available; j++) {
+            int index = skipExcluded(r.nextInt(j + 1));
 
             // Checks to make sure that randomly generated position isn't already taken
-            if (currentBoard[index / rows][index % rows] == null) {
-                currentBoard[index / rows][index % rows] = new Cell(
-                        index / rows,
-                        index % rows, 9
-                );
-                tempCountBombs++;
+            if (BitPlanes.get(bombPlane, index)) {
+                index = skipExcluded(j);
+            }
+            cells[index] = 9;
+            BitPlanes.set(bombPlane, index);
+        }
+    }
+
+    /**
+     * Simple helper function that finds the position-th cell that isn't excluded.
+     *
+     * @param position the position among the cells that aren't excluded
+     * @return the index of the cell
+     */
+    private int skipExcluded(int position) {
+        int index = position;
+        for (int cell : excluded) {
+            if (index >= cell) {
+                index++;
             }
         }
+        return index;
+    }
+
+    /**
+     * The bombs of the board as a bitplane (see BitPlanes). Not a copy. Filled in
+     * by addBombs, or from the cells the first time it is needed.
+     */
+    long[] getBombPlane() {
+        if (bombPlane == null) {
+            bombPlane = BitPlanes.ofBombs(cells);
+        }
+        return bombPlane;
     }
 
     /**
      * Add the numbers of the cells after bombs are added. Only provides numerical
      * count for cells that aren't bombs (not 9). 0s are not shown.
+     * The whole board is counted in one sweep by the NeighborCounter (in parallel
+     * for big boards) instead of calling numSurroundingBombs for every cell.
      */
     public void addNumbers() {
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < columns; j++) {
-                if (currentBoard[i][j] == null) {
-                    currentBoard[i][j] = new Cell(i, j, numSurroundingBombs(i, j));
-                }
-            }
-        }
+        NeighborCounter.countAll(this);
     }
 
     /**
      * Take in any cell on the board, return the number of surrounding bombs (0-8).
-     * 
+     *
      * @param x the x coordinate of the cell
      * @param y the y coordinate of the cell
      * @return the number of bombs surrounding the cell (0-8)
@@ -127,7 +334,7 @@ public class Board {
         for (int i = x - 1; i <= x + 1; i++) {
             for (int j = y - 1; j <= y + 1; j++) {
                 if ((i != x || j != y) && i >= 0 && j >= 0 && i < rows && j < columns) {
-                    if (currentBoard[i][j] != null && currentBoard[i][j].getValue() == 9) {
+                    if ((cells[i * columns + j] & VALUE_MASK) == 9) {
                         currentBombCount++;
                     }
 
@@ -138,6 +345,62 @@ public class Board {
         return currentBombCount;
     }
 
+    /**
+     * Simple helper function that turns coordinates into the position of the cell
+     * in the array.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the index of the cell (x * columns + y)
+     * @throws IllegalArgumentException if given coordinate is invalid
+     */
+    private int index(int x, int y) {
+        if (x < 0 || y < 0 || x >= rows || y >= columns) {
+            throw new IllegalArgumentException();
+        }
+        return x * columns + y;
+    }
+
+    /**
+     * Gives classes in this package (e.g. RevealCascade) direct access to the
+     * packed cells so they can work on many cells at once without going through
+     * the getters.
+     *
+     * @return the packed cells of the board (see top for the layout)
+     */
+    byte[] getCells() {
+        return cells;
+    }
+
+    /**
+     * @return the number of rows of the board
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return the number of columns of the board
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return the total number of bombs on the board
+     */
+    public int getTotalBombs() {
+        return totalBombs;
+    }
+
+    /**
+     * @return the seed the bombs were placed with (0 for boards that were read
+     *         from a string)
+     */
+    public long getSeed() {
+        return seed;
+    }
+
     /**
      * Getter function returning whether the cell is a bomb.
      *
@@ -146,7 +409,7 @@ public class Board {
      * @return boolean representing whether the cell is a bomb
      */
     public boolean isBomb(int x, int y) {
-        return (currentBoard[x][y].getValue() == 9);
+        return (cells[index(x, y)] & VALUE_MASK) == 9;
     }
 
     /**
@@ -157,7 +420,7 @@ public class Board {
      * @return number value of the cell
      */
     public int getNumOfCell(int x, int y) {
-        return (currentBoard[x][y].getValue());
+        return cells[index(x, y)] & VALUE_MASK;
     }
 
     /**
@@ -168,7 +431,7 @@ public class Board {
      * @return boolean representing whether or not cell is visible
      */
     public boolean getVisibilityOfCell(int x, int y) {
-        return currentBoard[x][y].isVisible();
+        return (cells[index(x, y)] & VISIBLE) != 0;
     }
 
     /**
@@ -179,7 +442,12 @@ public class Board {
      * @param b the boolean value representing new visibility of cell
      */
     public void changeVisibilityOfCell(int x, int y, boolean b) {
-        currentBoard[x][y].setVisible(b);
+        int index = index(x, y);
+        if (b) {
+            cells[index] |= VISIBLE;
+        } else {
+            cells[index] &= ~VISIBLE;
+        }
     }
 
     /**
@@ -190,7 +458,7 @@ public class Board {
      * @return boolean representing whether the cell is flagged
      */
     public boolean getFlaggedOfCell(int x, int y) {
-        return currentBoard[x][y].isFlagged();
+        return (cells[index(x, y)] & FLAGGED) != 0;
     }
 
     /**
@@ -201,22 +469,18 @@ public class Board {
      * @param b the boolean value representing new flagged status of cell
      */
     public void changeFlaggedOfCell(int x, int y, boolean b) {
-        currentBoard[x][y].setFlagged(b);
+        int index = index(x, y);
+        if (b) {
+            cells[index] |= FLAGGED;
+        } else {
+            cells[index] &= ~FLAGGED;
+        }
     }
 
     /**
      * @return String representation of the board (numerical values only)
      */
     public String toString() {
-        String stringBoardSolution = "";
-
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < columns; j++) {
-                stringBoardSolution += currentBoard[i][j].getValue();
-            }
-            stringBoardSolution += "\n";
-        }
-
-        return stringBoardSolution;
+        return BoardCodec.valuesToText(this);
     }
 }
@@ -0,0 +1,346 @@
+package org.cis1200.minesweeper;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * This class turns a Board (the values of the cells and whether each one is
+ * visible or flagged) into bytes and back, in time linear in the number of
+ * cells and without building any Strings. The binary layout is:
+ * - int: MAGIC
+ * - byte: VERSION
+ * - int: rows
+ * - int: columns
+ * - (cells + 1) / 2 bytes: the values (0-9), two cells per byte (the even cell
+ * in the low 4 bits, the odd cell in the high 4 bits)
+ * - (cells + 3) / 4 bytes: the states, four cells per byte (2 bits each, the
+ * first cell in the lowest bits): 0 = hidden, 1 = visible, 2 = flagged, 3 =
+ * visible and flagged (a flagged bomb uncovered when the game was lost)
+ *
+ * A 16x16 board takes 205 bytes, and a 10M-cell board about 7.5MB.
+ *
+ * There are also linear-time versions of the text format used by the exported
+ * .txt files (one line of digits, or of V/F/H, per row).
+ */
+public final class BoardCodec {
+
+    public static final int MAGIC = 0x4D535742; // "MSWB"
+    public static final byte VERSION = 1;
+
+    private static final int HEADER_BYTES = 4 + 1 + 4 + 4;
+    // The streams are packed and unpacked through a buffer of this many bytes
+    private static final int CHUNK_BYTES = 1 << 16;
+
+    private BoardCodec() {
+    }
+
+    /**
+     * @param board the board to encode
+     * @return the number of bytes write(board, ...) will produce
+     */
+    public static int encodedSize(Board board) {
+        long size = HEADER_BYTES + valueBytes(board.getCells().length)
+                + (long) stateBytes(board.getCells().length);
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException();
+        }
+        return (int) size;
+    }
+
+    /**
+     * Writes the board into the buffer (starting at its position).
+     *
+     * @param board  the board to encode
+     * @param buffer the buffer to write into
+     * @throws java.nio.BufferOverflowException if there isn't encodedSize(board)
+     *                                          bytes of room left
+     */
+    public static void write(Board board, ByteBuffer buffer) {
+        byte[] cells = board.getCells();
+        buffer.putInt(MAGIC);
+        buffer.put(VERSION);
+        buffer.putInt(board.getRows());
+        buffer.putInt(board.getColumns());
+
+        byte[] chunk = new byte[Math.min(CHUNK_BYTES, Math.max(1, valueBytes(cells.length)))];
+        for (int cell = 0; cell < cells.length;) {
+            int length = packValues(cells, cell, chunk);
+            buffer.put(chunk, 0, length);
+            cell += length * 2;
+        }
+        for (int cell = 0; cell < cells.length;) {
+            int length = packStates(cells, cell, chunk);
+            buffer.put(chunk, 0, length);
+            cell += length * 4;
+        }
+    }
+
+    /**
+     * Reads a board from the buffer (starting at its position).
+     *
+     * @param buffer the buffer to read from
+     * @return the board that was encoded
+     * @throws IllegalArgumentException if the buffer doesn't hold a valid board
+     */
+    public static Board read(ByteBuffer buffer) {
+        try {
+            if (buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+                throw new IllegalArgumentException();
+            }
+            int rows = buffer.getInt();
+            int columns = buffer.getInt();
+            byte[] cells = newCells(rows, columns);
+
+            byte[] chunk = new byte[Math.min(CHUNK_BYTES, Math.max(1, valueBytes(cells.length)))];
+            for (int cell = 0; cell < cells.length;) {
+                int length = Math.min(chunk.length, valueBytes(cells.length - cell));
+                buffer.get(chunk, 0, length);
+                unpackValues(chunk, length, cells, cell);
+                cell += length * 2;
+            }
+            for (int cell = 0; cell < cells.length;) {
+                int length = Math.min(chunk.length, stateBytes(cells.length - cell));
+                buffer.get(chunk, 0, length);
+                unpackStates(chunk, length, cells, cell);
+                cell += length * 4;
+            }
+            return new Board(rows, columns, cells);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Writes the board to the stream. Nothing is buffered beyond a single chunk,
+     * so wrap unbuffered streams yourself if they are slow to write small pieces.
+     *
+     * @param board the board to encode
+     * @param out   the stream to write to
+     * @throws IOException if the stream can't be written to
+     */
+    public static void write(Board board, OutputStream out) throws IOException {
+        byte[] cells = board.getCells();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeInt(board.getRows());
+        data.writeInt(board.getColumns());
+
+        byte[] chunk = new byte[Math.min(CHUNK_BYTES, Math.max(1, valueBytes(cells.length)))];
+        for (int cell = 0; cell < cells.length;) {
+            int length = packValues(cells, cell, chunk);
+            out.write(chunk, 0, length);
+            cell += length * 2;
+        }
+        for (int cell = 0; cell < cells.length;) {
+            int length = packStates(cells, cell, chunk);
+            out.write(chunk, 0, length);
+            cell += length * 4;
+        }
+    }
+
+    /**
+     * Reads a board from the stream. Only the bytes of the board are read.
+     *
+     * @param in the stream to read from
+     * @return the board that was encoded
+     * @throws IOException              if the stream can't be read (or ends early)
+     * @throws IllegalArgumentException if the stream doesn't hold a valid board
+     */
+    public static Board read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readByte() != VERSION) {
+            throw new IllegalArgumentException();
+        }
+        int rows = data.readInt();
+        int columns = data.readInt();
+        byte[] cells = newCells(rows, columns);
+
+        byte[] chunk = new byte[Math.min(CHUNK_BYTES, Math.max(1, valueBytes(cells.length)))];
+        for (int cell = 0; cell < cells.length;) {
+            int length = Math.min(chunk.length, valueBytes(cells.length - cell));
+            data.readFully(chunk, 0, length);
+            unpackValues(chunk, length, cells, cell);
+            cell += length * 2;
+        }
+        for (int cell = 0; cell < cells.length;) {
+            int length = Math.min(chunk.length, stateBytes(cells.length - cell));
+            data.readFully(chunk, 0, length);
+            unpackStates(chunk, length, cells, cell);
+            cell += length * 4;
+        }
+        return new Board(rows, columns, cells);
+    }
+
+    /**
+     * Translates the values of the board into the text format (one line of
+     * digits per row). Same as Board.toString.
+     *
+     * @param board the board to translate
+     * @return the values of the board as text
+     */
+    public static String valuesToText(Board board) {
+        byte[] cells = board.getCells();
+        int columns = board.getColumns();
+        StringBuilder text = new StringBuilder(cells.length + board.getRows());
+        for (int start = 0; start < cells.length; start += columns) {
+            for (int i = start; i < start + columns; i++) {
+                text.append((char) ('0' + (cells[i] & Board.VALUE_MASK)));
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Translates the visibility of the board into the text format (one line per
+     * row, with a V being visible, F being flagged, and H being hidden).
+     *
+     * @param board the board to translate
+     * @return the visibility of the board as text
+     */
+    public static String visibilityToText(Board board) {
+        byte[] cells = board.getCells();
+        int columns = board.getColumns();
+        StringBuilder text = new StringBuilder(cells.length + board.getRows());
+        for (int start = 0; start < cells.length; start += columns) {
+            for (int i = start; i < start + columns; i++) {
+                if ((cells[i] & Board.VISIBLE) != 0) {
+                    text.append('V');
+                } else if ((cells[i] & Board.FLAGGED) != 0) {
+                    text.append('F');
+                } else {
+                    text.append('H');
+                }
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Reads a board from the text format: the values (one digit per cell) and
+     * the visibility (one V, F or H per cell), both without line breaks.
+     *
+     * @param rows       the number of rows
+     * @param columns    the number of columns
+     * @param values     the values of the cells
+     * @param visibility the visibility of the cells
+     * @return the board
+     * @throws IllegalArgumentException if the size or either string is invalid
+     */
+    public static Board fromText(int rows, int columns, CharSequence values,
+            CharSequence visibility) {
+        byte[] cells = newCells(rows, columns);
+        if (values == null || visibility == null || values.length() != cells.length
+                || visibility.length() != cells.length) {
+            throw new IllegalArgumentException();
+        }
+        for (int i = 0; i < cells.length; i++) {
+            int value = values.charAt(i) - '0';
+            if (value < 0 || value > 9) {
+                throw new IllegalArgumentException();
+            }
+            char state = visibility.charAt(i);
+            if (state == 'V') {
+                value |= Board.VISIBLE;
+            } else if (state == 'F') {
+                value |= Board.FLAGGED;
+            } else if (state != 'H') {
+                throw new IllegalArgumentException();
+            }
+            cells[i] = (byte) value;
+        }
+        return new Board(rows, columns, cells);
+    }
+
+    /**
+     * Packs the values of the cells starting at from into the chunk (two per
+     * byte).
+     *
+     * @return the number of bytes of the chunk that were filled
+     */
+    private static int packValues(byte[] cells, int from, byte[] chunk) {
+        int length = Math.min(chunk.length, valueBytes(cells.length - from));
+        int cell = from;
+        for (int i = 0; i < length; i++) {
+            int low = cells[cell++] & Board.VALUE_MASK;
+            int high = cell < cells.length ? cells[cell++] & Board.VALUE_MASK : 0;
+            chunk[i] = (byte) (low | (high << 4));
+        }
+        return length;
+    }
+
+    /**
+     * Packs the states of the cells starting at from into the chunk (four per
+     * byte).
+     *
+     * @return the number of bytes of the chunk that were filled
+     */
+    static int packStates(byte[] cells, int from, byte[] chunk) {
+        int length = Math.min(chunk.length, stateBytes(cells.length - from));
+        int cell = from;
+        for (int i = 0; i < length; i++) {
+            int packed = 0;
+            for (int shift = 0; shift < 8 && cell < cells.length; shift += 2) {
+                // VISIBLE is bit 4 and FLAGGED is bit 5, so this gives 0 to 3
+                packed |= ((cells[cell++] >> 4) & 3) << shift;
+            }
+            chunk[i] = (byte) packed;
+        }
+        return length;
+    }
+
+    /**
+     * Unpacks length bytes of values into the cells starting at from.
+     */
+    private static void unpackValues(byte[] chunk, int length, byte[] cells, int from) {
+        int cell = from;
+        for (int i = 0; i < length; i++) {
+            cells[cell++] = checkValue(chunk[i] & 0x0F);
+            if (cell < cells.length) {
+                cells[cell++] = checkValue((chunk[i] >> 4) & 0x0F);
+            }
+        }
+    }
+
+    /**
+     * Unpacks length bytes of states into the cells starting at from (the values
+     * must already be there).
+     */
+    static void unpackStates(byte[] chunk, int length, byte[] cells, int from) {
+        int cell = from;
+        for (int i = 0; i < length; i++) {
+            for (int shift = 0; shift < 8 && cell < cells.length; shift += 2) {
+                cells[cell++] |= (byte) (((chunk[i] >> shift) & 3) << 4);
+            }
+        }
+    }
+
+    private static byte checkValue(int value) {
+        if (value > 9) {
+            throw new IllegalArgumentException();
+        }
+        return (byte) value;
+    }
+
+    private static byte[] newCells(int rows, int columns) {
+        if (rows <= 0 || columns <= 0 || (long) rows * columns > Board.MAX_CELLS) {
+            throw new IllegalArgumentException();
+        }
+        return new byte[rows * columns];
+    }
+
+    private static int valueBytes(int cells) {
+        return (int) ((cells + 1L) / 2);
+    }
+
+    static int stateBytes(int cells) {
+        return (int) ((cells + 3L) / 4);
+    }
+}
@@ -0,0 +1,164 @@
+package org.cis1200.minesweeper;
+
+import java.awt.*;
+import java.awt.event.InputEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+
+import javax.swing.*;
+
+/**
+ * The one mouse listener of the whole board. Instead of every cell having its
+ * own listeners (and every event searching all of the cells for the one that
+ * was clicked), the cell is found straight from the position of the mouse
+ * (BoardView.cellAt), so every event takes the same time on any size of board.
+ *
+ * It behaves like the JButtons the board used to be made of: a click only
+ * counts if the mouse is pressed and released on the same cell, and a cell
+ * being held down with the left button is drawn sunken (but not while the
+ * mouse is dragged off of it).
+ * - Left click = Reveal the cell (if it is hidden, unflagged, and the game is
+ * still going on)
+ * - Right click = Flag/unflag the cell (if it is hidden and the game is still
+ * going on)
+ * - Ctrl + mouse wheel = Zoom in or out, keeping the cell under the mouse in
+ * place (the mouse wheel on its own scrolls, as usual)
+ */
+public class BoardMouseHandler extends MouseAdapter {
+
+    // How much one notch of the mouse wheel zooms
+    private static final double ZOOM_STEP = 1.25;
+
+    private final BoardView view;
+    private final GameCourt court;
+
+    // The cell and button of the press in progress, or -1 if there is none
+    private int pressedCell = -1;
+    private int pressedButton = -1;
+
+    /**
+     * Creates the listener. It still needs to be added to the view as a mouse
+     * listener, a mouse motion listener and a mouse wheel listener.
+     *
+     * @param view  the board
+     * @param court the court the clicks are passed on to
+     */
+    public BoardMouseHandler(BoardView view, GameCourt court) {
+        this.view = view;
+        this.court = court;
+    }
+
+    @Override
+    public void mousePressed(MouseEvent e) {
+        if (pressedButton >= 0 || e.getButton() != MouseEvent.BUTTON1
+                && e.getButton() != MouseEvent.BUTTON3) {
+            return;
+        }
+        pressedButton = e.getButton();
+        pressedCell = view.cellAt(e.getX(), e.getY());
+        if (pressedButton == MouseEvent.BUTTON1 && canReveal(pressedCell)) {
+            view.setPressedCell(pressedCell);
+        }
+    }
+
+    @Override
+    public void mouseDragged(MouseEvent e) {
+        if (pressedButton == MouseEvent.BUTTON1 && canReveal(pressedCell)) {
+            boolean over = view.cellAt(e.getX(), e.getY()) == pressedCell;
+            view.setPressedCell(over ? pressedCell : -1);
+        }
+    }
+
+    @Override
+    public void mouseReleased(MouseEvent e) {
+        if (e.getButton() != pressedButton) {
+            return;
+        }
+        int cell = view.cellAt(e.getX(), e.getY());
+        int button = pressedButton;
+        boolean sameCell = cell >= 0 && cell == pressedCell;
+        pressedButton = -1;
+        pressedCell = -1;
+        view.setPressedCell(-1);
+        if (!sameCell) {
+            return;
+        }
+
+        int columns = court.getEngine().getBoard().getColumns();
+        if (button == MouseEvent.BUTTON1 && canReveal(cell)) {
+            court.showClickedCell(cell / columns, cell % columns);
+        } else if (button == MouseEvent.BUTTON3 && canFlag(cell)) {
+            court.flagCell(cell / columns, cell % columns);
+        }
+    }
+
+    @Override
+    public void mouseWheelMoved(MouseWheelEvent e) {
+        JViewport viewport = (JViewport) SwingUtilities.getAncestorOfClass(
+                JViewport.class, view
+        );
+        if ((e.getModifiersEx() & InputEvent.CTRL_DOWN_MASK) == 0 || viewport == null) {
+            // A component with a wheel listener keeps the events from its scroll
+            // pane, so they are passed on to it
+            Container scrollPane = SwingUtilities.getAncestorOfClass(JScrollPane.class, view);
+            if (scrollPane != null) {
+                scrollPane.dispatchEvent(SwingUtilities.convertMouseEvent(view, e, scrollPane));
+            }
+            return;
+        }
+
+        int oldSize = view.getCellSize();
+        double zoom = Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation());
+        int newSize = (int) Math.round(oldSize * zoom);
+        if (newSize == oldSize) {
+            newSize += zoom > 1 ? 1 : -1;
+        }
+        newSize = Math.max(BoardView.MIN_CELL_SIZE,
+                Math.min(BoardView.MAX_CELL_SIZE, newSize));
+        if (newSize == oldSize) {
+            return;
+        }
+
+        // Keeps the point under the mouse in the same place of the viewport
+        Point position = viewport.getViewPosition();
+        double scale = (double) newSize / oldSize;
+        view.setCellSize(newSize);
+        viewport.validate();
+        Dimension extent = viewport.getExtentSize();
+        Dimension size = view.getPreferredSize();
+        int x = (int) Math.round(e.getX() * scale) - (e.getX() - position.x);
+        int y = (int) Math.round(e.getY() * scale) - (e.getY() - position.y);
+        viewport.setViewPosition(new Point(
+                Math.max(0, Math.min(x, size.width - extent.width)),
+                Math.max(0, Math.min(y, size.height - extent.height))
+        ));
+    }
+
+    /**
+     * Only register a click if cell is unflagged, cell is not already uncovered,
+     * and game is still going on.
+     */
+    private boolean canReveal(int cell) {
+        if (cell < 0 || !court.getGameInPlay()) {
+            return false;
+        }
+        Board board = court.getEngine().getBoard();
+        int columns = board.getColumns();
+        return !board.getFlaggedOfCell(cell / columns, cell % columns)
+                && !board.getVisibilityOfCell(cell / columns, cell % columns);
+    }
+
+    /**
+     * Only register a right-click if cell is not already uncovered, and game is
+     * still going on.
+     */
+    private boolean canFlag(int cell) {
+        if (cell < 0 || !court.getGameInPlay()) {
+            return false;
+        }
+        Board board = court.getEngine().getBoard();
+        int columns = board.getColumns();
+        return !board.getVisibilityOfCell(cell / columns, cell % columns);
+    }
+}
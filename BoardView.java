@@ -0,0 +1,355 @@
+package org.cis1200.minesweeper;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import javax.swing.*;
+
+/**
+ * This class draws the whole board as one component, instead of one JButton
+ * per cell. It has no state of its own besides the engine: every paint reads
+ * the cells straight from the engine's Board, so the board can be swapped out
+ * (reset or import) without rebuilding anything.
+ *
+ * Only the cells that changed are repainted. GameCourt passes every change the
+ * engine reports on to cellChanged or cellsChanged, which ask Swing to repaint
+ * just the rectangle around those cells (one rectangle per batch, e.g. per
+ * reveal cascade), and paintComponent only draws the cells inside the clip.
+ * So neither startup nor a click costs more on a bigger board; only the number
+ * of cells that actually change (or are on screen) matters.
+ *
+ * The view is meant to sit in a JScrollPane (it is Scrollable), so a board far
+ * bigger than the screen only ever draws the cells in the viewport, and it can
+ * be zoomed by changing the size of the cells. Every kind of cell (the numbers,
+ * a bomb, hidden, flagged, held down) is drawn once per zoom level into an atlas
+ * image, and painting a cell is just copying its tile out of the atlas, so no
+ * text is laid out while painting. The atlas holds ATLAS_TILES tiles, so the
+ * memory the view uses depends on the zoom level, not the size of the board.
+ */
+public class BoardView extends JComponent implements Scrollable {
+
+    public static final int CELL_SIZE = 50;
+    public static final int MIN_CELL_SIZE = 8;
+    public static final int MAX_CELL_SIZE = 100;
+
+    private static final String BOMB = Character.toString('\u2739');
+    private static final String FLAG = Character.toString('\u2691');
+
+    private static final Color HIDDEN = new Color(0xDDDDDD);
+    private static final Color SHOWN = new Color(0xF7F7F7);
+    private static final Color GRID = new Color(0xAAAAAA);
+
+    // The tiles of the atlas:
+    // - 0 to 8 = A visible number
+    // - 9 = A visible bomb
+    // - 10 = A hidden cell
+    // - 11 = A hidden, flagged cell
+    // - 12 = A hidden cell that is being held down
+    private static final int TILE_BOMB = 9;
+    private static final int TILE_HIDDEN = 10;
+    private static final int TILE_FLAGGED = 11;
+    private static final int TILE_PRESSED = 12;
+    private static final int ATLAS_TILES = 13;
+
+    // The largest board (in pixels) Swing is asked to lay out
+    private static final int MAX_PIXELS = Integer.MAX_VALUE / 2;
+
+    private final GameEngine engine;
+    // The cell the mouse is holding down (drawn sunken), or -1
+    private int pressed = -1;
+    private int cellSize = CELL_SIZE;
+    // The tiles for the current cell size, side by side (made when first needed)
+    private BufferedImage atlas;
+
+    /**
+     * Creates the view of the engine's board.
+     *
+     * @param engine the game to draw
+     */
+    public BoardView(GameEngine engine) {
+        this.engine = engine;
+        setOpaque(true);
+    }
+
+    /**
+     * Marks a single cell as dirty.
+     *
+     * @param x the x coordinate of the cell
+     * @param y the y coordinate of the cell
+     */
+    public void cellChanged(int x, int y) {
+        repaintCells(x, y, x, y);
+    }
+
+    /**
+     * Marks a batch of cells as dirty. The rectangle around all of them is
+     * repainted at once.
+     *
+     * @param cells   the indices (x * columns + y) of the changed cells
+     * @param count   the number of valid entries in cells
+     * @param columns the number of columns of the board
+     */
+    public void cellsChanged(int[] cells, int count, int columns) {
+        if (count == 0) {
+            return;
+        }
+        int top = Integer.MAX_VALUE;
+        int bottom = 0;
+        int left = Integer.MAX_VALUE;
+        int right = 0;
+        for (int i = 0; i < count; i++) {
+            int x = cells[i] / columns;
+            int y = cells[i] % columns;
+            top = Math.min(top, x);
+            bottom = Math.max(bottom, x);
+            left = Math.min(left, y);
+            right = Math.max(right, y);
+        }
+        repaintCells(top, left, bottom, right);
+    }
+
+    /**
+     * Marks the whole board as dirty. Used after the board was replaced (reset or
+     * import), which may also have changed its size.
+     */
+    public void boardChanged() {
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Finds the cell under a point of the component.
+     *
+     * @param px the x position (in pixels, from the left)
+     * @param py the y position (in pixels, from the top)
+     * @return the index (x * columns + y) of the cell, or -1 if the point isn't on
+     *         the board
+     */
+    public int cellAt(int px, int py) {
+        Board board = engine.getBoard();
+        if (px < 0 || py < 0) {
+            return -1;
+        }
+        int x = py / cellSize;
+        int y = px / cellSize;
+        if (x >= board.getRows() || y >= board.getColumns()) {
+            return -1;
+        }
+        return x * board.getColumns() + y;
+    }
+
+    /**
+     * Draws the given cell sunken, like a button that is being held down, and
+     * the cell that was held down before as normal again.
+     *
+     * @param cell the index (x * columns + y) of the cell, or -1 for none
+     */
+    public void setPressedCell(int cell) {
+        if (cell == pressed) {
+            return;
+        }
+        int columns = engine.getBoard().getColumns();
+        if (pressed >= 0) {
+            cellChanged(pressed / columns, pressed % columns);
+        }
+        pressed = cell;
+        if (pressed >= 0) {
+            cellChanged(pressed / columns, pressed % columns);
+        }
+    }
+
+    /**
+     * @return the cell that is being held down, or -1 for none
+     */
+    public int getPressedCell() {
+        return pressed;
+    }
+
+    /**
+     * Zooms the board by changing the size of its cells. The atlas is drawn again
+     * for the new size the next time the board is painted.
+     *
+     * @param size the width and height of a cell (in pixels)
+     * @throws IllegalArgumentException if the size is not between MIN_CELL_SIZE
+     *                                  and MAX_CELL_SIZE
+     */
+    public void setCellSize(int size) {
+        if (size < MIN_CELL_SIZE || size > MAX_CELL_SIZE) {
+            throw new IllegalArgumentException();
+        }
+        if (size != cellSize) {
+            cellSize = size;
+            atlas = null;
+            boardChanged();
+        }
+    }
+
+    /**
+     * @return the width and height of a cell (in pixels)
+     */
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        Board board = engine.getBoard();
+        return new Dimension(
+                (int) Math.min(MAX_PIXELS, (long) board.getColumns() * cellSize),
+                (int) Math.min(MAX_PIXELS, (long) board.getRows() * cellSize)
+        );
+    }
+
+    /**
+     * Shows at most 16x16 cells (the size of the default board) without
+     * scrolling.
+     */
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        Dimension preferred = getPreferredSize();
+        return new Dimension(
+                Math.min(preferred.width, 16 * CELL_SIZE),
+                Math.min(preferred.height, 16 * CELL_SIZE)
+        );
+    }
+
+    /**
+     * Scrolls one cell at a time (e.g. for the arrows of the scroll bars).
+     */
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visible, int orientation, int direction) {
+        return cellSize;
+    }
+
+    /**
+     * Scrolls a whole screen at a time, less one cell.
+     */
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visible, int orientation, int direction) {
+        int extent = orientation == SwingConstants.HORIZONTAL ? visible.width : visible.height;
+        return Math.max(cellSize, extent - cellSize);
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return false;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return false;
+    }
+
+    /**
+     * Draws the cells inside the clip (the dirty rectangle, or the part of the
+     * viewport that is showing) and nothing else.
+     */
+    @Override
+    protected void paintComponent(Graphics g) {
+        Board board = engine.getBoard();
+        byte[] cells = board.getCells();
+        int rows = board.getRows();
+        int columns = board.getColumns();
+
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        g.setColor(getBackground() == null ? Color.WHITE : getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        int firstRow = Math.max(0, clip.y / cellSize);
+        int lastRow = Math.min(rows - 1, (clip.y + clip.height - 1) / cellSize);
+        int firstColumn = Math.max(0, clip.x / cellSize);
+        int lastColumn = Math.min(columns - 1, (clip.x + clip.width - 1) / cellSize);
+
+        BufferedImage tiles = getAtlas();
+        for (int i = firstRow; i <= lastRow; i++) {
+            int py = i * cellSize;
+            for (int j = firstColumn; j <= lastColumn; j++) {
+                int tile = tileOf(cells[i * columns + j], i * columns + j == pressed);
+                int px = j * cellSize;
+                int sx = tile * cellSize;
+                g.drawImage(tiles, px, py, px + cellSize, py + cellSize, sx, 0, sx + cellSize,
+                        cellSize, null);
+            }
+        }
+    }
+
+    /**
+     * @return the tile of the atlas that shows the given cell
+     */
+    private static int tileOf(byte cell, boolean down) {
+        if ((cell & Board.VISIBLE) != 0) {
+            // 0 to 8 for the numbers and 9 for a bomb
+            return cell & Board.VALUE_MASK;
+        } else if ((cell & Board.FLAGGED) != 0) {
+            return TILE_FLAGGED;
+        }
+        return down ? TILE_PRESSED : TILE_HIDDEN;
+    }
+
+    /**
+     * @return the atlas for the current cell size, drawing it first if needed
+     */
+    private BufferedImage getAtlas() {
+        if (atlas != null) {
+            return atlas;
+        }
+        GraphicsConfiguration config = getGraphicsConfiguration();
+        atlas = config != null
+                ? config.createCompatibleImage(ATLAS_TILES * cellSize, cellSize)
+                : new BufferedImage(ATLAS_TILES * cellSize, cellSize,
+                        BufferedImage.TYPE_INT_RGB);
+
+        Graphics2D g = atlas.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setFont(new Font(Font.DIALOG, Font.BOLD, Math.max(6, cellSize * 2 / 5)));
+        FontMetrics metrics = g.getFontMetrics();
+        for (int tile = 0; tile < ATLAS_TILES; tile++) {
+            int px = tile * cellSize;
+            String text = null;
+            Color color = Color.BLACK;
+            if (tile <= TILE_BOMB) {
+                g.setColor(SHOWN);
+                g.fillRect(px, 0, cellSize, cellSize);
+                g.setColor(GRID);
+                g.drawRect(px, 0, cellSize - 1, cellSize - 1);
+                if (tile == TILE_BOMB) {
+                    text = BOMB;
+                    color = Color.RED;
+                } else {
+                    text = Integer.toString(tile);
+                }
+            } else {
+                g.setColor(HIDDEN);
+                g.fill3DRect(px, 0, cellSize, cellSize, tile != TILE_PRESSED);
+                if (tile == TILE_FLAGGED) {
+                    text = FLAG;
+                }
+            }
+            if (text != null) {
+                g.setColor(color);
+                g.drawString(text, px + (cellSize - metrics.stringWidth(text)) / 2,
+                        (cellSize - metrics.getHeight()) / 2 + metrics.getAscent());
+            }
+        }
+        g.dispose();
+        return atlas;
+    }
+
+    /**
+     * Repaints the rectangle holding the cells from (top, left) to (bottom,
+     * right).
+     */
+    private void repaintCells(int top, int left, int bottom, int right) {
+        long px = (long) left * cellSize;
+        long py = (long) top * cellSize;
+        if (px < MAX_PIXELS && py < MAX_PIXELS) {
+            repaint((int) px, (int) py,
+                    (int) Math.min(MAX_PIXELS, (long) (right - left + 1) * cellSize),
+                    (int) Math.min(MAX_PIXELS, (long) (bottom - top + 1) * cellSize));
+        }
+    }
+}
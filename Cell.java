@@ -23,12 +23,12 @@ public class Cell {
      * @param val the numerical value of the cell indicating neighboring bombs (9 if
      *            bomb)
      * @throws IllegalArgumentException if the given parameters are not valid
-     *                                  (x,y must be between 0 and 15, val must be
+     *                                  (x,y must not be negative, val must be
      *                                  between 0 and 9)
      *
      */
     public Cell(int x, int y, int val) {
-        if (x < 0 || y < 0 || val < 0 || val > 9 || x > 15 || y > 15) {
+        if (x < 0 || y < 0 || val < 0 || val > 9) {
             throw new IllegalArgumentException();
         }
 
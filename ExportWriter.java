@@ -0,0 +1,319 @@
+package org.cis1200.minesweeper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes exported games to files in the background, so the thread that asks for
+ * the export (e.g. the Swing event thread) never waits for the disk, or even
+ * touches it: write only hands over the path and the text, and returns right
+ * away.
+ *
+ * The file is written with an AsynchronousFileChannel to a temporary file next
+ * to it (the name of the file plus PART_SUFFIX), which is forced to the disk and
+ * then renamed to the real name in one atomic step. So the real file is either
+ * the old one or the whole new one, never half written, even if the program
+ * dies in the middle of the write.
+ *
+ * At most one write runs at a time. A write asked for while one is running
+ * waits, in the order they were asked for. If another write to the same file
+ * is asked for before the waiting one starts, it replaces it (it holds a newer
+ * state of the game anyway), so a burst of saves to one file costs at most two
+ * writes, however long it is. Writes to different files never replace each
+ * other, so every file asked for is written.
+ *
+ * The Listener hears how every write ended (but not about the writes that were
+ * replaced by a newer one to the same file, whose file is still written),
+ * through the executor given to the constructor, e.g. SwingUtilities::invokeLater
+ * so it runs on the event thread.
+ *
+ * The writes are timed in the Metrics (EXPORT_NANOS and EXPORT_BYTES) and
+ * recorded as GameEvents.SnapshotEvents.
+ */
+public class ExportWriter implements Closeable {
+
+    public static final String PART_SUFFIX = ".part";
+
+    /**
+     * What is told how the writes ended. Its methods run through the callback
+     * executor of the writer.
+     */
+    public interface Listener {
+        /**
+         * A file was written (and renamed to its real name).
+         *
+         * @param path  the file
+         * @param bytes the size of the file
+         */
+        void exported(Path path, long bytes);
+
+        /**
+         * A file couldn't be written. The file that was there before (if any) is
+         * left as it was.
+         *
+         * @param path  the file
+         * @param error what went wrong
+         */
+        void exportFailed(Path path, IOException error);
+    }
+
+    /**
+     * A file to write.
+     */
+    private static class Request {
+        final Path path;
+        final String contents;
+
+        Request(Path path, String contents) {
+            this.path = path;
+            this.contents = contents;
+        }
+    }
+
+    private final Listener listener;
+    private final Executor callbacks;
+    // The one thread that writes. It also runs the completion handlers of the
+    // channels, and goes away when there is nothing to write for a while
+    private final ThreadPoolExecutor writer;
+
+    // All guarded by the writer's lock
+    private boolean busy = false;
+    private boolean closed = false;
+    // The waiting writes by file, in the order they were asked for
+    private final LinkedHashMap<Path, Request> waiting = new LinkedHashMap<Path, Request>();
+    private long coalesced = 0;
+
+    /**
+     * Creates a writer. Its thread is only started when there is something to
+     * write.
+     *
+     * @param listener  what is told how the writes ended
+     * @param callbacks what runs the methods of the listener
+     * @throws IllegalArgumentException if either of them is null
+     */
+    public ExportWriter(Listener listener, Executor callbacks) {
+        if (listener == null || callbacks == null) {
+            throw new IllegalArgumentException();
+        }
+        this.listener = listener;
+        this.callbacks = callbacks;
+        writer = new ThreadPoolExecutor(
+                1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), task -> {
+                    Thread thread = new Thread(task, "export-writer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+        writer.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Writes text to a file in the background (see the class comment), replacing
+     * the file if there is one. Never blocks.
+     *
+     * @param path     the file
+     * @param contents the text to write (as UTF-8)
+     * @throws IllegalArgumentException if either of them is null
+     * @throws IllegalStateException    if the writer was closed
+     */
+    public synchronized void write(Path path, String contents) {
+        if (path == null || contents == null) {
+            throw new IllegalArgumentException();
+        }
+        if (closed) {
+            throw new IllegalStateException();
+        }
+        Request request = new Request(path, contents);
+        if (busy) {
+            if (waiting.put(path, request) != null) {
+                coalesced++;
+            }
+            return;
+        }
+        busy = true;
+        writer.execute(() -> new Job(request).start());
+    }
+
+    /**
+     * @return the number of writes that were replaced by a newer one to the same
+     *         file before they started
+     */
+    public synchronized long getCoalesced() {
+        return coalesced;
+    }
+
+    /**
+     * @return whether a write is running or waiting
+     */
+    public synchronized boolean isBusy() {
+        return busy;
+    }
+
+    /**
+     * Stops taking writes, and waits for the running and the waiting writes to
+     * end (their listener calls are handed to the callback executor, but not
+     * waited for).
+     *
+     * @throws IOException if it was interrupted while waiting
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            try {
+                while (busy) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the exports", e);
+            }
+        }
+        writer.shutdown();
+    }
+
+    /**
+     * Starts the write that has been waiting the longest, if there is one. Runs
+     * on the writer thread when a write ends, so the next one starts without
+     * going through the queue of the executor again.
+     */
+    private void next() {
+        Request request;
+        synchronized (this) {
+            Iterator<Request> oldest = waiting.values().iterator();
+            if (!oldest.hasNext()) {
+                busy = false;
+                notifyAll();
+                return;
+            }
+            request = oldest.next();
+            oldest.remove();
+        }
+        new Job(request).start();
+    }
+
+    /**
+     * One write: open the temporary file, write the bytes (as many times as it
+     * takes, since a write may write only some of them), force them to the disk,
+     * and rename the file.
+     */
+    private class Job implements CompletionHandler<Integer, Void> {
+        private final Request request;
+        private final GameEvents.SnapshotEvent event = new GameEvents.SnapshotEvent();
+        private ByteBuffer bytes;
+        private Path part;
+        private AsynchronousFileChannel channel;
+        private long start;
+
+        Job(Request request) {
+            this.request = request;
+        }
+
+        void start() {
+            event.begin();
+            start = System.nanoTime();
+            bytes = ByteBuffer.wrap(request.contents.getBytes(StandardCharsets.UTF_8));
+            part = request.path.resolveSibling(request.path.getFileName() + PART_SUFFIX);
+            try {
+                channel = AsynchronousFileChannel.open(
+                        part, EnumSet.of(StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                                StandardOpenOption.TRUNCATE_EXISTING),
+                        writer
+                );
+            } catch (IOException | RuntimeException e) {
+                finish(e);
+                return;
+            }
+            channel.write(bytes, 0, null, this);
+        }
+
+        @Override
+        public void completed(Integer written, Void attachment) {
+            if (bytes.hasRemaining()) {
+                channel.write(bytes, bytes.position(), null, this);
+                return;
+            }
+            try {
+                channel.force(true);
+                channel.close();
+                rename();
+            } catch (IOException | RuntimeException e) {
+                finish(e);
+                return;
+            }
+            finish(null);
+        }
+
+        @Override
+        public void failed(Throwable error, Void attachment) {
+            finish(error);
+        }
+
+        private void rename() throws IOException {
+            try {
+                Files.move(part, request.path, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(part, request.path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        /**
+         * Cleans up after the write, records it, tells the listener, and starts
+         * the next write.
+         *
+         * @param error what went wrong, or null if the file was written
+         */
+        private void finish(Throwable error) {
+            long size = bytes.limit();
+            if (error == null) {
+                Metrics.EXPORT_NANOS.record(System.nanoTime() - start);
+                Metrics.EXPORT_BYTES.record(size);
+            } else {
+                try {
+                    if (channel != null) {
+                        channel.close();
+                    }
+                    Files.deleteIfExists(part);
+                } catch (IOException | RuntimeException e) {
+                    error.addSuppressed(e);
+                }
+            }
+            if (event.shouldCommit()) {
+                event.operation = GameEvents.SnapshotEvent.EXPORT;
+                event.path = request.path.toString();
+                event.bytes = error == null ? size : 0;
+                event.succeeded = error == null;
+                event.commit();
+            }
+
+            Path path = request.path;
+            try {
+                if (error == null) {
+                    callbacks.execute(() -> listener.exported(path, size));
+                } else {
+                    IOException failure = error instanceof IOException ? (IOException) error
+                            : new IOException(error);
+                    callbacks.execute(() -> listener.exportFailed(path, failure));
+                }
+            } finally {
+                next();
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.cis1200;
 
 import org.cis1200.minesweeper.GameCourt;
+import org.cis1200.minesweeper.Metrics;
 
 import javax.swing.*;
 import java.awt.*;
@@ -34,7 +35,7 @@ public class Game extends JPanel implements Runnable {
 
         // Main playing area
         final GameCourt court = new GameCourt(status, timerLabel, flagLabel);
-        final JPanel myBoard = court.makeAndAddBoard();
+        final JComponent myBoard = court.makeAndAddBoard();
         frame.add(myBoard, BorderLayout.CENTER);
 
         // Control panel
@@ -89,6 +90,15 @@ public class Game extends JPanel implements Runnable {
         });
         control_panel.add(undo);
 
+        // Button that allows user to redo moves that were undone
+        final JButton redo = new JButton("Redo");
+        redo.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                court.redo();
+            }
+        });
+        control_panel.add(redo);
+
         // Label showing the current time spent on the puzzle
         control_panel.add(timerLabel);
 
@@ -108,6 +118,7 @@ public class Game extends JPanel implements Runnable {
      * submission.
      */
     public static void main(String[] args) {
+        Metrics.install();
         SwingUtilities.invokeLater(new Game());
     }
 }
@@ -0,0 +1,116 @@
+package org.cis1200.minesweeper;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The elapsed time of a game. Instead of adding a second on every tick of a
+ * timer, the clock remembers when it was started (System.nanoTime, which only
+ * ever goes forward, even if the time of day is changed) and how much time had
+ * passed before that, so the elapsed time is worked out when it is asked for, to
+ * the millisecond. A clock that isn't being looked at costs nothing: there is
+ * no timer per game, so 100k idle games cause no wakeups at all.
+ *
+ * Whatever shows the time (e.g. the label of the GUI) uses the one shared
+ * scheduler (see schedule) instead of a timer of its own. Its single daemon
+ * thread only runs the tasks that are scheduled, and never keeps the program
+ * from exiting.
+ */
+public class GameClock {
+
+    // The time banked before the clock was last started
+    private long elapsedNanos = 0;
+    // When the clock was last started (only meaningful while it runs)
+    private long startedAt = 0;
+    private boolean running = false;
+
+    /**
+     * The shared scheduler, made the first time it is used.
+     */
+    private static class Scheduler {
+        static final ScheduledThreadPoolExecutor INSTANCE = makeScheduler();
+
+        private static ScheduledThreadPoolExecutor makeScheduler() {
+            ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, task -> {
+                Thread thread = new Thread(task, "game-clock");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // Cancelled tasks are dropped right away, instead of waiting in the
+            // queue until they would have run
+            scheduler.setRemoveOnCancelPolicy(true);
+            return scheduler;
+        }
+    }
+
+    /**
+     * Starts the clock (or keeps it running if it already is).
+     */
+    public void start() {
+        if (!running) {
+            startedAt = System.nanoTime();
+            running = true;
+        }
+    }
+
+    /**
+     * Stops the clock, keeping the time that has passed so far.
+     */
+    public void pause() {
+        if (running) {
+            elapsedNanos += System.nanoTime() - startedAt;
+            running = false;
+        }
+    }
+
+    /**
+     * Sets the elapsed time, e.g. to the time of a saved game. The clock keeps
+     * running (or stays paused) from there.
+     *
+     * @param elapsedMillis the elapsed time (in milliseconds)
+     * @throws IllegalArgumentException if the time is negative
+     */
+    public void reset(long elapsedMillis) {
+        if (elapsedMillis < 0) {
+            throw new IllegalArgumentException();
+        }
+        elapsedNanos = TimeUnit.MILLISECONDS.toNanos(elapsedMillis);
+        startedAt = System.nanoTime();
+    }
+
+    /**
+     * @return the elapsed time (in milliseconds)
+     */
+    public long getElapsedMillis() {
+        long nanos = elapsedNanos;
+        if (running) {
+            nanos += System.nanoTime() - startedAt;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * @return whether the clock is running
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Runs a task over and over on the shared scheduler, until it is cancelled.
+     * The task runs on the scheduler's thread, so it has to hand anything it does
+     * with Swing to the event thread.
+     *
+     * @param task         what to run
+     * @param delayMillis  how long until the first run (in milliseconds)
+     * @param periodMillis the time between runs (in milliseconds)
+     * @return the handle to cancel the task with
+     */
+    public static ScheduledFuture<?> schedule(Runnable task, long delayMillis,
+            long periodMillis) {
+        return Scheduler.INSTANCE.scheduleAtFixedRate(
+                task, delayMillis, periodMillis, TimeUnit.MILLISECONDS
+        );
+    }
+}
@@ -0,0 +1,192 @@
+package org.cis1200.minesweeper;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * This class saves a whole game (the board, the elapsed time and the moves) as a
+ * compact binary snapshot and loads it back into a GameEngine. It replaces the
+ * text format (the visibility board, the value board and the time) wherever
+ * files don't need to be read by people. The layout is:
+ * - int: MAGIC
+ * - byte: VERSION
+ * - long: the elapsed time (in milliseconds; an int in seconds before version
+ * 3)
+ * - the board, as written by the BoardCodec
+ * - the moves, as written by MoveLog.write (only since version 2)
+ *
+ * Snapshots of versions 1 (without the moves) and 2 (with the time in seconds)
+ * can still be read.
+ */
+public final class GameCodec {
+
+    public static final int MAGIC = 0x4D535747; // "MSWG"
+    public static final byte VERSION = 3;
+
+    private static final int HEADER_BYTES = 4 + 1 + 8;
+
+    private GameCodec() {
+    }
+
+    /**
+     * @param engine the game to encode
+     * @return the number of bytes write(engine, ...) will produce
+     */
+    public static int encodedSize(GameEngine engine) {
+        long size = HEADER_BYTES + (long) BoardCodec.encodedSize(engine.getBoard())
+                + engine.getMoveLog().encodedSize();
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException();
+        }
+        return (int) size;
+    }
+
+    /**
+     * Writes the game into the buffer (starting at its position).
+     *
+     * @param engine the game to encode
+     * @param buffer the buffer to write into
+     * @throws java.nio.BufferOverflowException if there isn't encodedSize(engine)
+     *                                          bytes of room left
+     */
+    public static void write(GameEngine engine, ByteBuffer buffer) {
+        buffer.putInt(MAGIC);
+        buffer.put(VERSION);
+        buffer.putLong(engine.getElapsedMillis());
+        BoardCodec.write(engine.getBoard(), buffer);
+        engine.getMoveLog().write(buffer);
+    }
+
+    /**
+     * Reads a game from the buffer (starting at its position) and loads it into
+     * the engine.
+     *
+     * @param buffer the buffer to read from
+     * @param engine the engine to load the game into
+     * @throws IllegalArgumentException if the buffer doesn't hold a valid game
+     *                                  (the engine is left unchanged)
+     */
+    public static void read(ByteBuffer buffer, GameEngine engine) {
+        Snapshot snapshot = decode(buffer);
+        engine.restore(snapshot.board, snapshot.elapsedMillis, snapshot.log);
+    }
+
+    /**
+     * Reads a game from the buffer (starting at its position) into a new engine,
+     * without making a random board for it first.
+     *
+     * @param buffer the buffer to read from
+     * @return the game
+     * @throws IllegalArgumentException if the buffer doesn't hold a valid game
+     */
+    public static GameEngine read(ByteBuffer buffer) {
+        Snapshot snapshot = decode(buffer);
+        return new GameEngine(snapshot.board, snapshot.elapsedMillis, snapshot.log);
+    }
+
+    /**
+     * Writes the game to the stream.
+     *
+     * @param engine the game to encode
+     * @param out    the stream to write to
+     * @throws IOException if the stream can't be written to
+     */
+    public static void write(GameEngine engine, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeLong(engine.getElapsedMillis());
+        BoardCodec.write(engine.getBoard(), out);
+        engine.getMoveLog().write(out);
+    }
+
+    /**
+     * Reads a game from the stream and loads it into the engine.
+     *
+     * @param in     the stream to read from
+     * @param engine the engine to load the game into
+     * @throws IOException              if the stream can't be read
+     * @throws IllegalArgumentException if the stream doesn't hold a valid game,
+     *                                  or ends before the end of the game (the
+     *                                  engine is left unchanged)
+     */
+    public static void read(InputStream in, GameEngine engine) throws IOException {
+        try {
+            DataInputStream data = new DataInputStream(in);
+            if (data.readInt() != MAGIC) {
+                throw new IllegalArgumentException();
+            }
+            byte version = checkVersion(data.readByte());
+            long elapsedMillis = version < 3 ? data.readInt() * 1000L : data.readLong();
+            Board board = BoardCodec.read(in);
+            MoveLog log = version == 1 ? emptyLog(board) : MoveLog.read(in);
+            engine.restore(board, elapsedMillis, log);
+        } catch (EOFException e) {
+            // A cut off snapshot is as invalid as a broken one, same as in decode
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * The parts of a decoded snapshot.
+     */
+    private static class Snapshot {
+        final Board board;
+        final long elapsedMillis;
+        final MoveLog log;
+
+        Snapshot(Board board, long elapsedMillis, MoveLog log) {
+            this.board = board;
+            this.elapsedMillis = elapsedMillis;
+            this.log = log;
+        }
+    }
+
+    /**
+     * Reads the parts of a game from the buffer (starting at its position).
+     *
+     * @param buffer the buffer to read from
+     * @return the board, the elapsed time and the moves
+     * @throws IllegalArgumentException if the buffer doesn't hold a valid game
+     */
+    private static Snapshot decode(ByteBuffer buffer) {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException();
+            }
+            byte version = checkVersion(buffer.get());
+            long elapsedMillis = version < 3 ? buffer.getInt() * 1000L : buffer.getLong();
+            Board board = BoardCodec.read(buffer);
+            MoveLog log = version == 1 ? emptyLog(board) : MoveLog.read(buffer);
+            return new Snapshot(board, elapsedMillis, log);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * @param version the version of a snapshot
+     * @return the version
+     * @throws IllegalArgumentException if snapshots of that version can't be read
+     */
+    private static byte checkVersion(byte version) {
+        if (version < 1 || version > VERSION) {
+            throw new IllegalArgumentException();
+        }
+        return version;
+    }
+
+    /**
+     * @param board the board of a snapshot of version 1
+     * @return a log without moves for the board
+     */
+    private static MoveLog emptyLog(Board board) {
+        return new MoveLog(board.getRows(), board.getColumns(), board.getTotalBombs());
+    }
+}
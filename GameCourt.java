@@ -1,32 +1,31 @@
 package org.cis1200.minesweeper;
 
 import java.awt.*;
-import java.awt.event.*;
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.FileReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.ref.WeakReference;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.LinkedList;
+import java.util.concurrent.ScheduledFuture;
 
 import javax.swing.*;
 
 /**
- * This class holds the primary game logic for how the different buttons, cells,
- * and
- * bombs interact with one another. Most of the functions cover the main logic
- * of the
- * game, like how to find out how many bombs are next to a particular cell. They
- * also
- * depend and rely closely on each other, which makes re-using some functions
- * really
- * easy and some only gets used once.
- *
+ * This class is the part of the GUI that shows a game. The game itself (the
+ * board, the bombs and their numbers, the moves, the clock and the status) lives
+ * in the GameEngine and its Board. The court listens to the engine and draws what
+ * it reports on the BoardView and the labels, passes the clicks of the user on to
+ * the engine, and handles the pop-ups and the importing and exporting of files.
  */
 public class GameCourt extends JPanel {
 
@@ -35,30 +34,48 @@ public class GameCourt extends JPanel {
             "/Users/tungnguyen/Desktop/CIS1200/Minesweeper/files";
     private static String path = "/Users/tungnguyen/CIS1200/Minesweeper";
 
-    private static final String VISIBLE = "V";
-    private static final String FLAGGED = "F";
-    private static final String HIDDEN = "H";
-
-    private static final String BOMB = Character.toString('\u2739');
-    private static final String FLAG = Character.toString('\u2691');
-
-    private Board board;
-    private JButton[][] cellButtons;
+    private GameEngine engine;
+    private BoardView view;
     private JLabel status;
     private JLabel timerLabel;
     private JLabel flagLabel;
+    // Updates the timer label every second while the game is going on, or null
+    // while it isn't (see updateTimerDisplay)
+    private ScheduledFuture<?> timerDisplay;
+    // Writes the exported games in the background (see exportGameState)
+    private final ExportWriter exports;
+    // The file the current game is exported to, and the moves of that game (a
+    // new game always comes with a new MoveLog), so every export of one game
+    // goes to the same file
+    private Path exportPath;
+    private MoveLog exportedGame;
+
+    /**
+     * Updates the timer label of a court, from the shared scheduler of the
+     * GameClock. It only holds on to the court weakly, so a court that was thrown
+     * away (without its game ending) can still be garbage collected, and the task
+     * cancels itself once it is.
+     */
+    private static class TimerDisplay implements Runnable {
+        private final WeakReference<GameCourt> court;
+        private volatile ScheduledFuture<?> future;
+
+        TimerDisplay(GameCourt court) {
+            this.court = new WeakReference<GameCourt>(court);
+        }
 
-    /*
-     * Stores positions of flagged cells (16 * row + column)
-     * row = value / 16, column = value % 16
-     */
-    private ArrayList<Integer> flaggedCells = new ArrayList<Integer>();
-    private int currentTime = 0;
-    private int flagsRemaining = 30;
-    private boolean gameInPlay = false;
-    // nonBombCellsRemaining = rows * columns - totalNumberOfBombs = 16*16-30
-    private int nonBombCellsRemaining = 226;
-    private LinkedList<Move> moveHistory = new LinkedList<Move>();
+        @Override
+        public void run() {
+            GameCourt target = court.get();
+            if (target == null) {
+                if (future != null) {
+                    future.cancel(false);
+                }
+                return;
+            }
+            SwingUtilities.invokeLater(target::drawTime);
+        }
+    }
 
     /**
      * Constructs the GameCourt and sets the statuses accordingly.
@@ -69,22 +86,40 @@ public class GameCourt extends JPanel {
      * @param flagStatus the status at the top left, updates the remaining flags
      */
     public GameCourt(JLabel gameStatus, JLabel timeStatus, JLabel flagStatus) {
-        /*
-         * Timer that updates the label every second
-         */
-        Timer timer = new Timer(1000, new ActionListener() {
-            public void actionPerformed(ActionEvent e) {
-                tick();
-            }
-        });
-        timer.start();
-
-        gameInPlay = true;
-
         this.status = gameStatus;
         this.timerLabel = timeStatus;
         this.flagLabel = flagStatus;
-        repaint();
+
+        engine = new GameEngine();
+        engine.setListener(new GameListener() {
+            public void cellChanged(int x, int y) {
+                if (view != null) {
+                    view.cellChanged(x, y);
+                }
+            }
+
+            public void cellsChanged(int[] cells, int count, int columns) {
+                if (view != null) {
+                    view.cellsChanged(cells, count, columns);
+                }
+            }
+
+            public void gameChanged() {
+                drawStatus();
+            }
+        });
+        exports = new ExportWriter(new ExportWriter.Listener() {
+            public void exported(Path path, long bytes) {
+                JOptionPane.showMessageDialog(null, "File exported to " + path + "!");
+            }
+
+            public void exportFailed(Path path, IOException error) {
+                JOptionPane.showMessageDialog(
+                        null, "Could not export to " + path + ": " + error.getMessage()
+                );
+            }
+        }, SwingUtilities::invokeLater);
+        updateTimerDisplay();
     }
 
     /**
@@ -139,308 +174,122 @@ public class GameCourt extends JPanel {
     }
 
     /**
-     * Generates the initial board and 256 buttons. The board is created with random
-     * cells, bombs, and numbers. Each button is assigned to a position in the grid
-     * and correlates with positions in the board.
-     * Listeners (action listeners for clicks, mouse listeners for right-clicks) are
-     * initialized and implemented.
+     * Generates the board. The whole board is a single BoardView that paints
+     * the cells itself, so making it costs the same for any size of board. It
+     * sits in a scroll pane, so boards bigger than the window can be scrolled
+     * through (and zoomed with ctrl + the mouse wheel), and imported boards can
+     * be any size.
+     * A single BoardMouseHandler listens to the whole board and finds the cell
+     * under the mouse from its position, so a click takes the same time on any
+     * size of board.
      *
-     * @return JPanel depicting the board/grid layout
-     */
-    public JPanel makeAndAddBoard() {
-        board = new Board();
-
-        JPanel myBoard = new JPanel(new GridLayout(16, 16));
-        cellButtons = new JButton[16][16];
-
-        for (int i = 0; i < 16; i++) {
-            for (int j = 0; j < 16; j++) {
-                cellButtons[i][j] = new JButton();
-                cellButtons[i][j].setPreferredSize(new Dimension(50, 50));
-                cellButtons[i][j].setVisible(true);
-
-                myBoard.add(cellButtons[i][j]);
-
-                // Registers "clicks" on the cell
-                cellButtons[i][j].addActionListener(new ActionListener() {
-                    public void actionPerformed(ActionEvent e) {
-                        for (int i = 0; i < 16; i++) {
-                            for (int j = 0; j < 16; j++) {
-
-                                // Only register a click if found correct button, cell is unflagged,
-                                // cell is not already uncovered, and game is still going on
-                                if (cellButtons[i][j] == e.getSource() &&
-                                        !board.getFlaggedOfCell(i, j) &&
-                                        !board.getVisibilityOfCell(i, j) && gameInPlay) {
-                                    showClickedCell(i, j);
-                                }
-
-                            }
-                        }
-                    }
-                });
-
-                // Registers "right-clicks" on the cell (for flags)
-                cellButtons[i][j].addMouseListener(new MouseAdapter() {
-                    public void mouseClicked(MouseEvent e) {
-                        for (int i = 0; i < 16; i++) {
-                            for (int j = 0; j < 16; j++) {
-
-                                // Only register a right-click if found correct button, cell is
-                                // not already uncovered, and game is still going on
-                                if (cellButtons[i][j] == e.getSource() && gameInPlay &&
-                                        !board.getVisibilityOfCell(i, j)) {
-                                    flagCell(i, j);
-                                }
-                            }
-                        }
-                    }
-
-                    @Override
-                    public void mousePressed(MouseEvent e) {
-                    }
-
-                    @Override
-                    public void mouseReleased(MouseEvent e) {
-                    }
-
-                    @Override
-                    public void mouseEntered(MouseEvent e) {
-                    }
-
-                    @Override
-                    public void mouseExited(MouseEvent e) {
-                    }
-                });
-
-            }
-        }
-        return myBoard;
+     * @return the component depicting the board/grid layout
+     */
+    public JComponent makeAndAddBoard() {
+        view = new BoardView(engine);
+        BoardMouseHandler handler = new BoardMouseHandler(view, this);
+        view.addMouseListener(handler);
+        view.addMouseMotionListener(handler);
+        view.addMouseWheelListener(handler);
+        return new JScrollPane(view);
     }
 
     /**
-     * Called upon click of a cell. This method is only entered for the very first
-     * cell
-     * (not the byproducts). This was created after initial draft to ensure easier
-     * testing.
-     * 
-     * @param x the x coordinate of the cell to show
-     * @param y the y coordinate of the cell to show
+     * Redraws every cell of the board. Used after the whole board was replaced
+     * (reset or import).
      */
-    public void showClickedCell(int x, int y) {
-        showCell(x, y);
-        addMoveToHistory(x, y, 0);
+    private void drawAllCells() {
+        if (view != null) {
+            view.boardChanged();
+        }
+        // The clock of the new game starts at its own time, so the timer label is
+        // lined up with it again
+        stopTimerDisplay();
+        updateTimerDisplay();
     }
 
     /**
-     * Uncover the value of a given cell. Adjusts depending on the value of the cell
-     * Basic rundown:
-     * - If bomb, lose game
-     * - If 0, show nearby cells
-     * - Otherwise, show numerical value
-     *
-     * @param x the x coordinate
-     * @param y the y coordinate
-     * @throws IllegalArgumentException if given arguments do not correspond with
-     *                                  valid cell
+     * Updates the status, flag and timer labels so that they match the engine.
+     * Called by the engine whenever the counters or status change.
      */
-    public void showCell(int x, int y) {
-        if (outOfBoundsCheck(x, y)) {
-            throw new IllegalArgumentException();
+    private void drawStatus() {
+        if (engine == null) {
+            return;
         }
-        // Can only show cell if cell is hidden, unflagged, and game is still going on
-        if (!board.getVisibilityOfCell(x, y) && !board.getFlaggedOfCell(x, y) && gameInPlay) {
-
-            if (board.getNumOfCell(x, y) == 9) {
-                loseGame();
-            } else {
-                if (board.getNumOfCell(x, y) == 0) {
-                    showMultipleCells(x, y);
-                    nonBombCellsRemaining--;
-
-                } else {
-                    cellButtons[x][y].setText(Integer.toString(board.getNumOfCell(x, y)));
-                    board.changeVisibilityOfCell(x, y, true);
-                    nonBombCellsRemaining--;
-                }
-                if (checkWinGame()) {
-                    winGame();
-                }
-            }
+        if (engine.getState() == GameEngine.WON) {
+            status.setText("You win!");
+        } else if (engine.getState() == GameEngine.LOST) {
+            status.setText("You lose!");
+        } else {
+            status.setText("Running...");
         }
+        flagLabel.setText("Flags Remaining: " + engine.getFlagsRemaining());
+        drawTime();
+        updateTimerDisplay();
     }
 
     /**
-     * Uncover the values of multiple nearby cells (because current cell is 0,
-     * so all surrounding cells are non-bomb)
-     * Invariant: arguments will always lead to valid cell since this function
-     * is only called in showClickedCell (above), which checks for outOfBounds
-     *
-     * @param x the x coordinate
-     * @param y the y coordinate
+     * Updates the timer label so that it matches the engine's clock.
      */
-    public void showMultipleCells(int x, int y) {
-        board.changeVisibilityOfCell(x, y, true);
-        cellButtons[x][y].setText(Integer.toString(board.getNumOfCell(x, y)));
-        repaint();
-
-        // iterates through all 8 adjacent cells
-        for (int i = x - 1; i <= x + 1; i++) {
-            for (int j = y - 1; j <= y + 1; j++) {
-                if ((i != x || j != y) && i >= 0 && j >= 0 && i < 16 && j < 16) {
-                    // Recursive call to reveal nearby cells of empty cell
-                    if (board.getNumOfCell(i, j) == 0 && !board.getVisibilityOfCell(x, y)) {
-                        showMultipleCells(i, j);
-                        nonBombCellsRemaining--;
-                    } else {
-                        showCell(i, j);
-                    }
-                }
-            }
-        }
+    private void drawTime() {
+        timerLabel.setText("Current Time (sec): " + Integer.toString(engine.getCurrentTime()));
     }
 
     /**
-     * Cover the value of a given cell. Used when trying to undo a recent move.
-     * Adjusts depending on the value of the cell (if 0, must adjust for neighbors)
-     * 
-     * @param x the x coordinate
-     * @param y the y coordinate
-     * @throws IllegalArgumentException if given arguments do not correspond with
-     *                                  valid cell
+     * Makes sure the timer label is only updated while the game is going on. The
+     * engine's clock keeps the time by itself, so nothing needs to run at all
+     * while the game is won or lost. The updates are lined up with the clock, so
+     * they happen right when the shown second changes.
      */
-    public void hideClickedCell(int x, int y) {
-        if (outOfBoundsCheck(x, y)) {
-            throw new IllegalArgumentException();
-        }
-        if (board.getVisibilityOfCell(x, y) && gameInPlay) {
-            board.changeVisibilityOfCell(x, y, false);
-            if (board.getNumOfCell(x, y) == 0) {
-                hideMultipleCells(x, y);
-                nonBombCellsRemaining++;
-
-            } else {
-                cellButtons[x][y].setText("");
-                nonBombCellsRemaining++;
-            }
+    private void updateTimerDisplay() {
+        if (engine.getGameInPlay() && timerDisplay == null) {
+            TimerDisplay task = new TimerDisplay(this);
+            long untilNextSecond = 1000 - engine.getElapsedMillis() % 1000;
+            timerDisplay = GameClock.schedule(task, untilNextSecond, 1000);
+            task.future = timerDisplay;
+        } else if (!engine.getGameInPlay()) {
+            stopTimerDisplay();
         }
-        repaint();
     }
 
-    /**
-     * Cover the values of multiple nearby cells (because current cell is 0,
-     * so all surrounding cells are non-bomb and were revealed earlier)
-     * Invariant: arguments will always lead to valid cell since this function
-     * is only called in hideClickedCell (above), which checks for outOfBounds
-     *
-     * @param x the x coordinate
-     * @param y the y coordinate
-     */
-    public void hideMultipleCells(int x, int y) {
-        board.changeVisibilityOfCell(x, y, false);
-        cellButtons[x][y].setText("");
-
-        // iterates through all 8 adjacent cells
-        for (int i = x - 1; i <= x + 1; i++) {
-            for (int j = y - 1; j <= y + 1; j++) {
-                if ((i != x || j != y) && i >= 0 && j >= 0 && i < 16 && j < 16) {
-                    // Recursive call to hide nearby cells of empty cell
-                    if (board.getNumOfCell(i, j) == 0 && board.getVisibilityOfCell(x, y)) {
-                        hideMultipleCells(i, j);
-                        nonBombCellsRemaining++;
-                    } else {
-                        hideClickedCell(i, j);
-                    }
-                }
-            }
+    private void stopTimerDisplay() {
+        if (timerDisplay != null) {
+            timerDisplay.cancel(false);
+            timerDisplay = null;
         }
-        repaint();
     }
 
     /**
-     * Reveals all the bombs in the game. Occurs when user clicks on bomb and loses
-     * the game
+     * Called upon click of a cell. The engine uncovers the cell (and the
+     * byproducts) and records the move.
+     *
+     * @param x the x coordinate of the cell to show
+     * @param y the y coordinate of the cell to show
      */
-    public void revealAllBombs() {
-        for (int i = 0; i < 16; i++) {
-            for (int j = 0; j < 16; j++) {
-                if (board.getNumOfCell(i, j) == 9) {
-                    cellButtons[i][j].setText(BOMB);
-                    board.changeVisibilityOfCell(i, j, true);
-                    cellButtons[i][j].setForeground(Color.RED);
-                }
-            }
-        }
-        repaint();
+    public void showClickedCell(int x, int y) {
+        engine.showClickedCell(x, y);
     }
 
     /**
-     * Hides all the bombs in the game. Occurs when the user undo's a recent loss.
+     * Uncover the value of a given cell (see GameEngine.showCell).
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @throws IllegalArgumentException if given arguments do not correspond with
+     *                                  valid cell
      */
-    public void hideAllBombs() {
-        for (int i = 0; i < 16; i++) {
-            for (int j = 0; j < 16; j++) {
-                if (board.getNumOfCell(i, j) == 9) {
-                    cellButtons[i][j].setText("");
-                    board.changeVisibilityOfCell(i, j, false);
-                    cellButtons[i][j].setForeground(Color.BLACK);
-                }
-            }
-        }
-        repaint();
+    public void showCell(int x, int y) {
+        engine.showCell(x, y);
     }
 
     /**
      * This function will flag/unflag a cell of the board.
-     * 
+     *
      * @param i the x coordinate of the cell to flag
      * @param j the y coordinate of the cell to flag
      */
     public void flagCell(int i, int j) {
-        if (board.getFlaggedOfCell(i, j)) {
-            cellButtons[i][j].setText("");
-            flaggedCells.remove(Integer.valueOf(16 * i + j));
-            addMoveToHistory(i, j, 2);
-        } else {
-            cellButtons[i][j].setText(FLAG);
-            flaggedCells.add(16 * i + j);
-            addMoveToHistory(i, j, 1);
-        }
-        board.changeFlaggedOfCell(i, j, !board.getFlaggedOfCell(i, j));
-        flagLabel.setText(
-                "Flags Remaining: " +
-                        (flagsRemaining - flaggedCells.size())
-        );
-        repaint();
-    }
-
-    /**
-     * Simple helper function to adjust the game status and other small facets upon
-     * loss
-     */
-    public void loseGame() {
-        revealAllBombs();
-        status.setText("You lose!");
-        gameInPlay = false;
-    }
-
-    /**
-     * Simple helper function to check if user has uncovered all nonBomb cells (a
-     * win!)
-     * 
-     * @return
-     */
-    public boolean checkWinGame() {
-        return nonBombCellsRemaining <= 0;
-    }
-
-    /**
-     * Simple helper function to adjust the game status and other small facets upon
-     * win
-     */
-    public void winGame() {
-        status.setText("You win!");
-        gameInPlay = false;
+        engine.flagCell(i, j);
     }
 
     /**
@@ -449,28 +298,8 @@ public class GameCourt extends JPanel {
      * Updates all game statuses and counters
      */
     public void reset() {
-        gameInPlay = true;
-        for (int i = 0; i < 16; i++) {
-            for (int j = 0; j < 16; j++) {
-                cellButtons[i][j].setText("");
-                cellButtons[i][j].setForeground(Color.black);
-                board.changeVisibilityOfCell(i, j, false);
-                board.changeFlaggedOfCell(i, j, false);
-
-            }
-        }
-
-        board = new Board();
-        moveHistory = new LinkedList<Move>();
-        currentTime = 0;
-        nonBombCellsRemaining = 16 * 16 - 30;
-        flagsRemaining = 30;
-        flaggedCells = new ArrayList<Integer>();
-
-        status.setText("Running...");
-        flagLabel.setText("Flags Remaining: " + flagsRemaining);
-        timerLabel.setText("Current Time (sec): " + Integer.toString(currentTime));
-        repaint();
+        engine.reset();
+        drawAllCells();
     }
 
     /**
@@ -478,121 +307,36 @@ public class GameCourt extends JPanel {
      * Occurs when user imports a game using the "import" button.
      * Updates all game statuses and counters based on those found in the import
      * file
-     * 
+     *
      * @param ss the numerical board representation, contains the values (0-9) of
      *           all 256 cells
      * @param vs the visibility board representation; V = visible, F = flagged, H =
      *           hidden
-     * @param t
+     * @param t  the elapsed time (in seconds) of the imported game
      */
     public void resetWithGivenState(String ss, String vs, String t) {
-        gameInPlay = true;
-        board = new Board(ss);
-        moveHistory = new LinkedList<Move>();
-        flaggedCells = new ArrayList<Integer>();
-        currentTime = Integer.parseInt(t);
-        nonBombCellsRemaining = 16 * 16 - 30;
-        flagsRemaining = 30;
-
-        for (int i = 0; i < 16; i++) {
-            for (int j = 0; j < 16; j++) {
-                // Each cell corresponds to a specific position in the string
-                String current = vs.substring(16 * i + j, 16 * i + j + 1);
-                if (current.equals(VISIBLE)) {
-                    // If a bomb is visible, game must have been lost. Update statuses accordingly
-                    if (board.getNumOfCell(i, j) == 9) {
-                        cellButtons[i][j].setText(BOMB);
-                        cellButtons[i][j].setForeground(Color.RED);
-                        gameInPlay = false;
-                        status.setText("You lose!");
-                    } else {
-                        cellButtons[i][j].setText(String.valueOf(board.getNumOfCell(i, j)));
-                        cellButtons[i][j].setForeground(Color.BLACK);
-                        nonBombCellsRemaining--;
-                    }
-                    board.changeVisibilityOfCell(i, j, true);
-                    board.changeFlaggedOfCell(i, j, false);
-                } else if (current.equals(FLAGGED)) {
-                    cellButtons[i][j].setText(FLAG);
-                    cellButtons[i][j].setForeground(Color.BLACK);
-                    board.changeVisibilityOfCell(i, j, false);
-                    board.changeFlaggedOfCell(i, j, true);
-                    flaggedCells.add(16 * i + j);
-
-                } else {
-                    cellButtons[i][j].setText("");
-                    board.changeVisibilityOfCell(i, j, false);
-                    board.changeFlaggedOfCell(i, j, false);
-                }
-            }
-        }
-
-        // Update statuses accordingly
-        if (checkWinGame()) {
-            winGame();
-        } else if (!gameInPlay) {
-            status.setText("You lose!");
-        } else {
-            status.setText("Running...");
-        }
-
-        timerLabel.setText("Current Time (sec): " + Integer.toString(currentTime));
-        flagLabel.setText("Flags Remaining: " + (flagsRemaining - flaggedCells.size()));
-        repaint();
+        engine.resetWithGivenState(ss, vs, t);
+        drawAllCells();
     }
 
     /**
-     * Undo's the most recent move. Adjust accordingly depending on value of
-     * target cell. (i.e. if 0, need to hide neighboring cells)
-     * This function will not be able to undo previously made moves in an imported
-     * game
-     * My implementation of undo may be a bit flawed if player uncovers all non-zero
-     * cells surrounding the 0 first. Undo here would then uncover the previously
-     * non-zero cells,
-     * even though they were in the last move. However, this case is very rare.
+     * Undo's the most recent move (see GameEngine.undo). Tells the user if there
+     * is nothing left to undo.
      */
     public void undo() {
-        if (moveHistory.size() > 0) {
-            Move recentMove = moveHistory.pop();
-            int xCoor = recentMove.getxCoor();
-            int yCoor = recentMove.getyCoor();
-
-            // User wants to undo a click on cell
-            if (recentMove.getMoveType() == 0) {
-
-                // Most recent move caused game to end
-                if (!gameInPlay) {
-                    gameInPlay = true;
-                    if (status.getText().equals("You lose!")) {
-                        hideAllBombs();
-                        for (Integer index : flaggedCells) {
-                            cellButtons[index / 16][index % 16].setText(FLAG);
-                            cellButtons[index / 16][index % 16].setForeground(Color.BLACK);
-                        }
-                    } else {
-                        cellButtons[xCoor][yCoor].setText("");
-                        board.changeVisibilityOfCell(xCoor, yCoor, false);
-                    }
-
-                    status.setText("Running...");
-                } else {
-                    hideClickedCell(xCoor, yCoor);
-                }
-            } else if (recentMove.getMoveType() == 1) {
-                cellButtons[xCoor][yCoor].setText("");
-                board.changeFlaggedOfCell(xCoor, yCoor, false);
-                flaggedCells.remove(Integer.valueOf(16 * xCoor + yCoor));
-            } else if (recentMove.getMoveType() == 2) {
-                cellButtons[xCoor][yCoor].setText(FLAG);
-                board.changeFlaggedOfCell(xCoor, yCoor, true);
-                flaggedCells.add(16 * xCoor + yCoor);
-            } else {
-                System.out.println("ERROR: SOMETHING WENT UNACCOUNTED FOR");
-            }
-        } else {
+        if (!engine.undo()) {
             JOptionPane.showMessageDialog(null, "No more moves to undo!");
         }
-        repaint();
+    }
+
+    /**
+     * Redo's the most recently undone move (see GameEngine.redo). Tells the user
+     * if there is nothing left to redo.
+     */
+    public void redo() {
+        if (!engine.redo()) {
+            JOptionPane.showMessageDialog(null, "No more moves to redo!");
+        }
     }
 
     /**
@@ -621,183 +365,254 @@ public class GameCourt extends JPanel {
     }
 
     /**
-     * Imports a .txt file of game.
-     * Reads the 2 boards and the timer and calls reset accordingly.
-     * 
-     * @param filepath the path of the .txt file to import
+     * Imports a saved game. Both the .txt files made by exportGameState and
+     * binary snapshots made by the GameCodec can be imported (snapshots are
+     * recognized by the GameCodec.MAGIC at the start of the file).
+     * The .txt file holds the visibility board, a blank line, the value board, a
+     * blank line, and the timer, and is read in time linear in its length.
+     *
+     * @param filepath the path of the file to import
      * @return boolean representing whether the import was successful
      */
     public boolean importGameState(String filepath) {
+        GameEvents.SnapshotEvent event = new GameEvents.SnapshotEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long bytes = readGameState(filepath);
+        boolean imported = bytes >= 0;
+        if (imported) {
+            Metrics.IMPORT_NANOS.record(System.nanoTime() - start);
+            Metrics.IMPORT_BYTES.record(bytes);
+        }
+        commitImportEvent(event, filepath, bytes);
+        return imported;
+    }
 
-        try {
-            BufferedReader br = new BufferedReader(new FileReader(filepath));
+    /**
+     * Reads a saved game (see importGameState) into the engine. The bytes are
+     * counted as they are read, so the size of the file is known without asking
+     * the file system for it again.
+     *
+     * @param filepath the path of the file to import
+     * @return the number of bytes read from the file, or -1 if the import failed
+     */
+    private long readGameState(String filepath) {
+        try (CountingInputStream file = new CountingInputStream(new FileInputStream(filepath));
+                BufferedInputStream in = new BufferedInputStream(file)) {
+            in.mark(4);
+            DataInputStream data = new DataInputStream(in);
+            boolean binary;
+            try {
+                binary = data.readInt() == GameCodec.MAGIC;
+            } catch (EOFException e) {
+                // Too short to hold any saved game
+                throw new IllegalArgumentException(e);
+            }
+            in.reset();
 
-            String visibilityState = "";
-            for (int i = 0; i < 16; i++) {
-                visibilityState += br.readLine();
+            if (binary) {
+                // Leaves the game as it was if the snapshot can't be read
+                GameCodec.read(in, engine);
+                drawAllCells();
+                return file.getCount();
             }
 
-            br.readLine();
+            BufferedReader br = new BufferedReader(new InputStreamReader(in, "utf-8"));
 
-            String solutionState = "";
-            for (int i = 0; i < 16; i++) {
-                solutionState += br.readLine();
+            StringBuilder visibilityState = new StringBuilder();
+            int rows = 0;
+            int columns = 0;
+            for (String line = br.readLine(); line != null && !line.isEmpty();
+                    line = br.readLine()) {
+                visibilityState.append(line);
+                columns = line.length();
+                rows++;
             }
 
-            br.readLine();
+            StringBuilder solutionState = new StringBuilder();
+            for (String line = br.readLine(); line != null && !line.isEmpty();
+                    line = br.readLine()) {
+                solutionState.append(line);
+            }
 
             String time = br.readLine();
+            if (time == null) {
+                throw new IllegalArgumentException();
+            }
 
-            resetWithGivenState(solutionState, visibilityState, time);
-
-            br.close();
+            engine.resetWithGivenState(
+                    rows, columns, solutionState.toString(), visibilityState.toString(), time
+            );
+            drawAllCells();
 
-            return true;
+            return file.getCount();
         } catch (FileNotFoundException e) {
-            return false;
+            return -1;
         } catch (IOException e) {
-            return false;
+            return -1;
         } catch (IllegalArgumentException e) {
             JOptionPane.showMessageDialog(null, "Imported invalid file!");
         }
-        return false;
+        return -1;
+    }
+
+    /**
+     * An InputStream that counts the bytes read through it.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        /**
+         * @return the number of bytes read (or skipped) so far
+         */
+        long getCount() {
+            return count;
+        }
     }
 
     /**
-     * Exports the current game into a .txt file and puts file in project folder
+     * Exports the current game into a .txt file and puts file in project folder.
+     * Every export of the same game replaces its file.
      * The .txt file contains the following:
      * - Board representation of the numerical values of each cell
      * - Board representation of the visibility of each cell
      * - The current time of the game
+     * The file is written in the background by the ExportWriter, which shows a
+     * message once it is written (or couldn't be).
      */
     public void exportGameState() {
-        JOptionPane.showMessageDialog(null, "File exported to the files folder!");
         writeStringsToFile(getVisibilityBoard());
     }
 
     /**
-     * This function simply translates the current visibility of all 256 cells on
-     * the
-     * board into a String. The String contains 16 rows of 16 columns each, with
-     * a V being visible, F being flagged, and H being hidden.
-     * 
      * @return String representation of the visibility of all cells in the board
+     *         (see GameEngine.getVisibilityBoard)
      */
     public String getVisibilityBoard() {
-        String s = "";
-
-        for (int i = 0; i < 16; i++) {
-            for (int j = 0; j < 16; j++) {
-                if (board.getVisibilityOfCell(i, j)) {
-                    s += VISIBLE;
-                } else if (board.getFlaggedOfCell(i, j)) {
-                    s += FLAGGED;
-                } else {
-                    s += HIDDEN;
-                }
-            }
-            s += "\n";
-        }
-        return s;
+        return engine.getVisibilityBoard();
     }
 
     /**
      * Turns the string representations into files with the file name
-     * being the unique timestamp.
+     * being the timestamp of the first export of the game (so the later exports
+     * of the same game replace that file). The text is put together here (so it
+     * is the game as it is now), but the file is written by the ExportWriter, so
+     * this returns without touching the disk. Saves of the same game made faster
+     * than the disk can keep up with are merged into one.
      * 
      * @param stringToWrite the String containing 2 boards and current time
      */
     public void writeStringsToFile(String stringToWrite) {
-        BufferedWriter br = null;
-
-        try {
-            String timeAndFilePath = "files/Minesweeper " +
-                    new SimpleDateFormat("YYYY-MM-dd-HH-mm-ss").format(new Date());
-            br = new BufferedWriter(
-                    new OutputStreamWriter(
-                            new FileOutputStream(timeAndFilePath + ".txt"), "utf-8"
-                    )
-            );
-            br.write(stringToWrite + "\n");
-            br.write(board.toString() + "\n" + Integer.toString(currentTime));
-
-            br.flush();
-            br.close();
-        } catch (IOException e1) {
-            e1.printStackTrace();
+        if (engine.getMoveLog() != exportedGame) {
+            exportedGame = engine.getMoveLog();
+            exportPath = Paths.get("files/Minesweeper " +
+                    new SimpleDateFormat("yyyy-MM-dd-HH-mm-ss").format(new Date()) + ".txt");
         }
+        exports.write(
+                exportPath, stringToWrite + "\n" + engine.getBoard().toString() + "\n"
+                        + Integer.toString(engine.getCurrentTime())
+        );
     }
 
     /**
-     * Adds a user's move to the history. Allows easier implementation of "undo"
-     * Legend:
-     * 0 = User recently revealed a cell
-     * 1 = User recently flagged a cell
-     * 2 = User recently unflagged a cell
+     * Fills in and commits the event of an import, if the flight recorder wants
+     * it.
      *
-     * @param x    the x coordinate of the cell
-     * @param y    the y coordinate of the cell
-     * @param type the type of move that was done (above)
-     */
-    private void addMoveToHistory(int x, int y, int type) {
-        moveHistory.addFirst(new Move(x, y, type));
-    }
-
-    /**
-     * Simple helper function that checks if given coordinates are valid
-     * 
-     * @param x the x coordinate
-     * @param y the y coordinate
-     * @return the boolean of whether given coordinates is a valid cell
-     */
-    private boolean outOfBoundsCheck(int x, int y) {
-        return (x < 0 || x > 15 || y < 0 || y > 15);
+     * @param event    the event, begun before the file was touched
+     * @param filepath the path of the file
+     * @param bytes    the number of bytes the import read, or -1 if it failed
+     */
+    private static void commitImportEvent(GameEvents.SnapshotEvent event, String filepath,
+            long bytes) {
+        if (event.shouldCommit()) {
+            event.operation = GameEvents.SnapshotEvent.IMPORT;
+            event.path = filepath;
+            event.bytes = Math.max(bytes, 0);
+            event.succeeded = bytes >= 0;
+            event.commit();
+        }
     }
 
     /*
      * Getter methods (primarily accessed for testing purposes)
      */
 
+    /**
+     * @return the engine that runs the current game
+     */
+    public GameEngine getEngine() {
+        return engine;
+    }
+
     /**
      * @return an array containing the move history
      */
     public Object[] getMoveHistory() {
-        return moveHistory.toArray();
+        return engine.getMoveHistory();
     }
 
     /**
      * @return an array containing the flagged cell indices
      */
     public Object[] getFlaggedCells() {
-        return flaggedCells.toArray();
+        return engine.getFlaggedCells();
     }
 
     /**
      * @return an integer representing the number of non bomb cells remaining
      */
     public int getNonBombCellsRemaining() {
-        return nonBombCellsRemaining;
+        return engine.getNonBombCellsRemaining();
     }
 
     /**
      * @return a boolean representing the gameInPlay status
      */
     public boolean getGameInPlay() {
-        return gameInPlay;
+        return engine.getGameInPlay();
     }
 
     /**
      * @return an integer representing the number of flags remaining
      */
     public int getFlagsRemaining() {
-        return flagsRemaining - flaggedCells.size();
+        return engine.getFlagsRemaining();
     }
 
     /**
      * @return an integer representing the current time elapsed
      */
     public int getCurrentTime() {
-        return currentTime;
+        return engine.getCurrentTime();
     }
 
     /**
@@ -806,19 +621,4 @@ public class GameCourt extends JPanel {
     public String getGameStatus() {
         return status.getText();
     }
-
-    /**
-     * This method is called every time the timer defined in the constructor
-     * triggers.
-     * Here, updates the timer label every second
-     */
-    void tick() {
-        if (gameInPlay) {
-            currentTime++;
-            timerLabel.setText("Current Time (sec): " + Integer.toString(currentTime));
-        }
-
-        // update the display
-        repaint();
-    }
 }
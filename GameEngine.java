@@ -0,0 +1,760 @@
+package org.cis1200.minesweeper;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * This class holds all of the rules of the game without any of the GUI. It owns
+ * the Board, the counters (flags, remaining safe cells, time), and the history
+ * of moves. Whenever something changes it tells its GameListener (if it has
+ * one), which is how GameCourt knows what to draw. Since there is no Swing in
+ * here, a game can be played completely headless (e.g. by a batch job).
+ *
+ * The state of the game is one of:
+ * - RUNNING = The game is still going on
+ * - WON = The player has uncovered every non-bomb cell
+ * - LOST = The player has uncovered a bomb
+ */
+public class GameEngine {
+
+    public static final int RUNNING = 0;
+    public static final int WON = 1;
+    public static final int LOST = 2;
+
+    private int rows = 16;
+    private int columns = 16;
+    private int bombs = 30;
+    private Board board;
+    private GameListener listener;
+    private RevealCascade cascade = new RevealCascade();
+
+    /*
+     * Stores positions of flagged cells (columns * row + column) as a bitplane
+     * (see BitPlanes), so flagging and unflagging are a single bit operation
+     * row = value / columns, column = value % columns
+     */
+    private long[] flaggedCells = new long[0];
+    private int flagCount = 0;
+    // The elapsed time, which only runs while the game is going on
+    private GameClock clock = new GameClock();
+    private int flagsRemaining = 30;
+    private int state = RUNNING;
+    // nonBombCellsRemaining = rows * columns - totalNumberOfBombs = 16*16-30
+    private int nonBombCellsRemaining = 226;
+    private MoveLog moveLog;
+
+    // The cells changed by the move being made (see showClickedCell)
+    private boolean recording = false;
+    private int[] recorded = new int[64];
+    private int recordedCount = 0;
+
+    /**
+     * Default constructor. Creates a new, randomized 16x16 game with 30 bombs.
+     */
+    public GameEngine() {
+        reset();
+    }
+
+    /**
+     * Overloaded constructor. Creates a new, randomized game of the given size.
+     *
+     * @param rows    the number of rows
+     * @param columns the number of columns
+     * @param bombs   the number of bombs
+     * @throws IllegalArgumentException if a board of that size can't be made
+     */
+    public GameEngine(int rows, int columns, int bombs) {
+        this.rows = rows;
+        this.columns = columns;
+        this.bombs = bombs;
+        reset();
+    }
+
+    /**
+     * Overloaded constructor. Creates the game of the given size that belongs to
+     * the given seed.
+     *
+     * @param rows    the number of rows
+     * @param columns the number of columns
+     * @param bombs   the number of bombs
+     * @param seed    the seed used to place the bombs
+     * @throws IllegalArgumentException if a board of that size can't be made
+     */
+    public GameEngine(int rows, int columns, int bombs, long seed) {
+        this.rows = rows;
+        this.columns = columns;
+        this.bombs = bombs;
+        reset(seed);
+    }
+
+    /**
+     * Overloaded constructor. Creates the game of a saved board with its moves
+     * (e.g. one decoded by the GameCodec) without making a random board first.
+     *
+     * @param savedBoard    the board of the saved game
+     * @param elapsedMillis the elapsed time (in milliseconds) of the saved game
+     * @param savedLog      the moves of the saved game (the moves that are done
+     *                      must already be done on the board)
+     * @throws IllegalArgumentException if the time is negative or the moves don't
+     *                                  fit the board
+     */
+    public GameEngine(Board savedBoard, long elapsedMillis, MoveLog savedLog) {
+        restore(savedBoard, elapsedMillis, savedLog);
+    }
+
+    /**
+     * Sets the listener that is told about every change in the game.
+     *
+     * @param listener the listener (null if the game is headless)
+     */
+    public void setListener(GameListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Called upon click of a cell. This method is only entered for the very first
+     * cell (not the byproducts), and records the move (along with every cell it
+     * changed) in the history if it changed anything.
+     *
+     * @param x the x coordinate of the cell to show
+     * @param y the y coordinate of the cell to show
+     */
+    public void showClickedCell(int x, int y) {
+        GameEvents.MoveEvent event = new GameEvents.MoveEvent();
+        event.begin();
+        int stateBefore = state;
+        recordedCount = 0;
+        recording = true;
+        try {
+            showCell(x, y);
+        } finally {
+            recording = false;
+        }
+        if (recordedCount > 0) {
+            addMoveToHistory(new Move(
+                    x, y, 0, Arrays.copyOf(recorded, recordedCount), stateBefore, state
+            ));
+        }
+        Metrics.CELLS_REVEALED_PER_CLICK.record(recordedCount);
+        if (event.shouldCommit()) {
+            event.type = GameEvents.MoveEvent.REVEAL;
+            event.x = x;
+            event.y = y;
+            event.cellsChanged = recordedCount;
+            event.commit();
+        }
+        notifyGame();
+    }
+
+    /**
+     * Uncover the value of a given cell. Adjusts depending on the value of the cell
+     * Basic rundown:
+     * - If bomb, lose game
+     * - If 0, show nearby cells
+     * - Otherwise, show numerical value
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @throws IllegalArgumentException if given arguments do not correspond with
+     *                                  valid cell
+     */
+    public void showCell(int x, int y) {
+        if (outOfBoundsCheck(x, y)) {
+            throw new IllegalArgumentException();
+        }
+        // Can only show cell if cell is hidden, unflagged, and game is still going on
+        if (!board.getVisibilityOfCell(x, y) && !board.getFlaggedOfCell(x, y)
+                && state == RUNNING) {
+
+            if (board.getNumOfCell(x, y) == 9) {
+                loseGame();
+            } else {
+                showMultipleCells(x, y);
+                if (checkWinGame()) {
+                    winGame();
+                }
+            }
+        }
+    }
+
+    /**
+     * Uncover the given cell, and if it is a 0 all of the nearby cells connected
+     * to it (because current cell is 0, so all surrounding cells are non-bomb).
+     * The whole region is uncovered at once by the RevealCascade and reported to
+     * the listener as a single batch.
+     * Invariant: arguments will always lead to a valid, hidden, non-bomb cell
+     * since this function is only called in showCell (above)
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     */
+    public void showMultipleCells(int x, int y) {
+        GameEvents.CascadeEvent event = new GameEvents.CascadeEvent();
+        event.begin();
+        long start = System.nanoTime();
+        int revealed = cascade.reveal(board, x, y);
+        Metrics.CASCADE_NANOS.record(System.nanoTime() - start);
+        Metrics.CASCADE_CELLS.record(revealed);
+        if (event.shouldCommit()) {
+            event.size = revealed;
+            event.depth = cascade.getDepth();
+            event.commit();
+        }
+        nonBombCellsRemaining -= revealed;
+        record(cascade.getCells(), revealed);
+        notifyCells(cascade.getCells(), revealed);
+    }
+
+    /**
+     * Reveals all the bombs in the game. Occurs when user clicks on bomb and loses
+     * the game
+     */
+    public void revealAllBombs() {
+        byte[] cells = board.getCells();
+        long[] bombPlane = board.getBombPlane();
+        int[] revealed = new int[bombs];
+        int count = 0;
+        // Only visits the bombs, 64 cells at a time
+        for (int w = 0; w < bombPlane.length; w++) {
+            for (long word = bombPlane[w]; word != 0; word &= word - 1) {
+                int i = w << 6 | Long.numberOfTrailingZeros(word);
+                if ((cells[i] & Board.VISIBLE) == 0) {
+                    cells[i] |= Board.VISIBLE;
+                    revealed[count++] = i;
+                }
+            }
+        }
+        record(revealed, count);
+        notifyCells(revealed, count);
+    }
+
+    /**
+     * This function will flag/unflag a cell of the board. Only hidden cells can be
+     * flagged, and only while the game is still going on.
+     *
+     * @param i the x coordinate of the cell to flag
+     * @param j the y coordinate of the cell to flag
+     * @throws IllegalArgumentException if given arguments do not correspond with
+     *                                  valid cell
+     */
+    public void flagCell(int i, int j) {
+        if (outOfBoundsCheck(i, j)) {
+            throw new IllegalArgumentException();
+        }
+        if (state != RUNNING || board.getVisibilityOfCell(i, j)) {
+            return;
+        }
+        GameEvents.MoveEvent event = new GameEvents.MoveEvent();
+        event.begin();
+        int[] changed = { board.getColumns() * i + j };
+        boolean unflag = board.getFlaggedOfCell(i, j);
+        if (unflag) {
+            changeFlags(changed, false);
+            addMoveToHistory(new Move(i, j, 2, changed, state, state));
+        } else {
+            changeFlags(changed, true);
+            addMoveToHistory(new Move(i, j, 1, changed, state, state));
+        }
+        if (event.shouldCommit()) {
+            event.type = unflag ? GameEvents.MoveEvent.UNFLAG : GameEvents.MoveEvent.FLAG;
+            event.x = i;
+            event.y = j;
+            event.cellsChanged = 1;
+            event.commit();
+        }
+        notifyCell(i, j);
+        notifyGame();
+    }
+
+    /**
+     * Simple helper function to adjust the game status and other small facets upon
+     * loss
+     */
+    public void loseGame() {
+        revealAllBombs();
+        state = LOST;
+        updateClock();
+    }
+
+    /**
+     * Simple helper function to check if user has uncovered all nonBomb cells (a
+     * win!)
+     *
+     * @return whether there are no non-bomb cells left to uncover
+     */
+    public boolean checkWinGame() {
+        return nonBombCellsRemaining <= 0;
+    }
+
+    /**
+     * Simple helper function to adjust the game status and other small facets upon
+     * win
+     */
+    public void winGame() {
+        state = WON;
+        updateClock();
+    }
+
+    /**
+     * Default reset. Starts a new, randomized game (of the same size as before)
+     * and resets all counters.
+     */
+    public void reset() {
+        reset(new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Overloaded reset. Starts the game (of the same size as before) that belongs
+     * to the given seed and resets all counters. The same seed always gives the
+     * same board.
+     *
+     * @param seed the seed used to place the bombs
+     */
+    public void reset(long seed) {
+        board = new Board(rows, columns, bombs, seed);
+        moveLog = new MoveLog(rows, columns, bombs, seed);
+        clock.reset(0);
+        nonBombCellsRemaining = board.getRows() * board.getColumns() - board.getTotalBombs();
+        flagsRemaining = board.getTotalBombs();
+        flaggedCells = BitPlanes.newPlane(board.getCells().length);
+        flagCount = 0;
+        state = RUNNING;
+        updateClock();
+        notifyGame();
+    }
+
+    /**
+     * Overloaded reset. Starts a 16x16 game from a saved state and sets all
+     * counters based on that state.
+     *
+     * @param ss the numerical board representation, contains the values (0-9) of
+     *           all 256 cells
+     * @param vs the visibility board representation; V = visible, F = flagged, H =
+     *           hidden
+     * @param t  the elapsed time (in seconds) of the saved game
+     * @throws IllegalArgumentException if any of the representations are invalid
+     */
+    public void resetWithGivenState(String ss, String vs, String t) {
+        resetWithGivenState(16, 16, ss, vs, t);
+    }
+
+    /**
+     * Overloaded reset. Starts a game of the given size from a saved state and
+     * sets all counters based on that state.
+     *
+     * @param rows    the number of rows of the saved board
+     * @param columns the number of columns of the saved board
+     * @param ss      the numerical board representation, contains the values
+     *                (0-9) of all cells
+     * @param vs      the visibility board representation; V = visible, F =
+     *                flagged, H = hidden
+     * @param t       the elapsed time (in seconds) of the saved game
+     * @throws IllegalArgumentException if any of the representations are invalid
+     */
+    public void resetWithGivenState(int rows, int columns, String ss, String vs, String t) {
+        int time = Integer.parseInt(t);
+        resetWithGivenBoard(BoardCodec.fromText(rows, columns, ss, vs), time);
+    }
+
+    /**
+     * Overloaded reset. Starts a game from a board that already holds the
+     * visibility and flags of a saved game (e.g. one read by the BoardCodec) and
+     * sets all counters based on that board.
+     *
+     * @param savedBoard the board of the saved game
+     * @param time       the elapsed time (in seconds) of the saved game
+     * @throws IllegalArgumentException if the time is negative
+     */
+    public void resetWithGivenBoard(Board savedBoard, int time) {
+        resetWithGivenBoard(
+                savedBoard, time, new MoveLog(
+                        savedBoard.getRows(), savedBoard.getColumns(),
+                        savedBoard.getTotalBombs()
+                )
+        );
+    }
+
+    /**
+     * Overloaded reset. Starts a game from the board of a saved game along with
+     * its moves (e.g. one read by the GameCodec), so they can still be undone,
+     * redone and replayed.
+     *
+     * @param savedBoard the board of the saved game
+     * @param time       the elapsed time (in seconds) of the saved game
+     * @param savedLog   the moves of the saved game (the moves that are done must
+     *                   already be done on the board)
+     * @throws IllegalArgumentException if the time is negative or the moves don't
+     *                                  fit the board
+     */
+    public void resetWithGivenBoard(Board savedBoard, int time, MoveLog savedLog) {
+        restore(savedBoard, time * 1000L, savedLog);
+    }
+
+    /**
+     * Starts a game from the board of a saved game along with its moves, with the
+     * elapsed time to the millisecond (see resetWithGivenBoard). Used by the
+     * constructor and by the GameCodec.
+     *
+     * @param savedBoard    the board of the saved game
+     * @param elapsedMillis the elapsed time (in milliseconds) of the saved game
+     * @param savedLog      the moves of the saved game
+     * @throws IllegalArgumentException if the time is negative or the moves don't
+     *                                  fit the board
+     */
+    void restore(Board savedBoard, long elapsedMillis, MoveLog savedLog) {
+        if (elapsedMillis < 0) {
+            throw new IllegalArgumentException();
+        }
+        if (savedLog.getRows() != savedBoard.getRows()
+                || savedLog.getColumns() != savedBoard.getColumns()) {
+            throw new IllegalArgumentException();
+        }
+        if (savedLog.getTotal() > 0) {
+            // Checks every move against the board before anything is changed
+            new GameReplay(savedBoard, savedLog, RUNNING, savedLog.size(), Integer.MAX_VALUE);
+        }
+        board = savedBoard;
+        rows = board.getRows();
+        columns = board.getColumns();
+        bombs = board.getTotalBombs();
+        moveLog = savedLog;
+        clock.reset(elapsedMillis);
+        flagsRemaining = bombs;
+        state = RUNNING;
+
+        // Counted 64 cells at a time on the bitplanes
+        byte[] cells = board.getCells();
+        long[] visible = BitPlanes.ofState(cells, Board.VISIBLE);
+        long[] bombPlane = board.getBombPlane();
+        // A flagged bomb stays flagged when it is uncovered by losing
+        flaggedCells = BitPlanes.ofState(cells, Board.FLAGGED);
+        flagCount = BitPlanes.count(flaggedCells);
+        int visibleBombs = BitPlanes.countBoth(visible, bombPlane);
+        nonBombCellsRemaining = rows * columns - bombs
+                - (BitPlanes.count(visible) - visibleBombs);
+        // If a bomb is visible, game must have been lost
+        if (visibleBombs > 0) {
+            state = LOST;
+        }
+
+        if (state == RUNNING && checkWinGame()) {
+            winGame();
+        }
+        updateClock();
+        notifyGame();
+    }
+
+    /**
+     * Undo's the most recent move. Every move knows exactly which cells it
+     * changed, so those cells are simply flipped back (hidden again, or flagged /
+     * unflagged again) and the state of the game (running, won or lost) is set
+     * back to what it was before the move. The move can then be redone.
+     * Games imported from text files don't come with their moves, so those moves
+     * can't be undone
+     *
+     * @return whether there was a move to undo
+     * @throws IllegalStateException if the move is of an unknown type (which no
+     *                               move is ever made with)
+     */
+    public boolean undo() {
+        if (moveLog.size() == 0) {
+            return false;
+        }
+        GameEvents.MoveEvent event = new GameEvents.MoveEvent();
+        event.begin();
+        long start = System.nanoTime();
+        Move recentMove = moveLog.get(moveLog.size() - 1);
+        int[] changed = recentMove.getChangedCells();
+
+        // User wants to undo a click on cell
+        if (recentMove.getMoveType() == 0) {
+            changeVisibility(changed, false);
+        } else if (recentMove.getMoveType() == 1) {
+            changeFlags(changed, false);
+        } else if (recentMove.getMoveType() == 2) {
+            changeFlags(changed, true);
+        } else {
+            // Moves are only ever made with the types above
+            throw new IllegalStateException("unknown move type " + recentMove.getMoveType());
+        }
+        moveLog.undo();
+        state = recentMove.getStateBefore();
+        updateClock();
+        Metrics.UNDO_NANOS.record(System.nanoTime() - start);
+        Metrics.UNDO_CELLS.record(changed.length);
+        commitMoveEvent(event, GameEvents.MoveEvent.UNDO, recentMove);
+
+        notifyCells(changed, changed.length);
+        notifyGame();
+        return true;
+    }
+
+    /**
+     * Redo's the most recently undone move, by flipping its cells the same way
+     * the move first did and setting the state of the game to what it was after
+     * the move. Making a new move clears the moves that can be redone.
+     *
+     * @return whether there was a move to redo
+     * @throws IllegalStateException if the move is of an unknown type (which no
+     *                               move is ever made with)
+     */
+    public boolean redo() {
+        if (moveLog.size() == moveLog.getTotal()) {
+            return false;
+        }
+        GameEvents.MoveEvent event = new GameEvents.MoveEvent();
+        event.begin();
+        Move undoneMove = moveLog.get(moveLog.size());
+        int[] changed = undoneMove.getChangedCells();
+
+        if (undoneMove.getMoveType() == 0) {
+            changeVisibility(changed, true);
+        } else if (undoneMove.getMoveType() == 1) {
+            changeFlags(changed, true);
+        } else if (undoneMove.getMoveType() == 2) {
+            changeFlags(changed, false);
+        } else {
+            // Moves are only ever made with the types above
+            throw new IllegalStateException("unknown move type " + undoneMove.getMoveType());
+        }
+        moveLog.redo();
+        state = undoneMove.getStateAfter();
+        updateClock();
+        commitMoveEvent(event, GameEvents.MoveEvent.REDO, undoneMove);
+
+        notifyCells(changed, changed.length);
+        notifyGame();
+        return true;
+    }
+
+    /**
+     * Simple helper function that shows or hides the given cells and updates the
+     * count of non-bomb cells remaining.
+     *
+     * @param changed the indices of the cells
+     * @param visible whether the cells should become visible
+     */
+    private void changeVisibility(int[] changed, boolean visible) {
+        byte[] cells = board.getCells();
+        for (int cell : changed) {
+            if (visible) {
+                cells[cell] |= Board.VISIBLE;
+            } else {
+                cells[cell] &= ~Board.VISIBLE;
+            }
+            if ((cells[cell] & Board.VALUE_MASK) != 9) {
+                nonBombCellsRemaining += visible ? -1 : 1;
+            }
+        }
+    }
+
+    /**
+     * Simple helper function that flags or unflags the given cells and keeps
+     * track of them in flaggedCells.
+     *
+     * @param changed the indices of the cells
+     * @param flagged whether the cells should become flagged
+     */
+    private void changeFlags(int[] changed, boolean flagged) {
+        byte[] cells = board.getCells();
+        for (int cell : changed) {
+            if (flagged) {
+                cells[cell] |= Board.FLAGGED;
+                if (!BitPlanes.get(flaggedCells, cell)) {
+                    BitPlanes.set(flaggedCells, cell);
+                    flagCount++;
+                }
+            } else {
+                cells[cell] &= ~Board.FLAGGED;
+                if (BitPlanes.get(flaggedCells, cell)) {
+                    BitPlanes.clear(flaggedCells, cell);
+                    flagCount--;
+                }
+            }
+        }
+    }
+
+    /**
+     * This function simply translates the current visibility of all cells on the
+     * board into a String. The String contains one line per row, with a V being
+     * visible, F being flagged, and H being hidden.
+     *
+     * @return String representation of the visibility of all cells in the board
+     */
+    public String getVisibilityBoard() {
+        return BoardCodec.visibilityToText(board);
+    }
+
+    /**
+     * Adds a user's move to the history. Allows easier implementation of "undo".
+     * A new move means the moves that were undone can't be redone anymore.
+     *
+     * @param move the move that was just done
+     */
+    private void addMoveToHistory(Move move) {
+        moveLog.add(move);
+    }
+
+    /**
+     * Remembers the changed cells as part of the move being made (only while
+     * showClickedCell is recording).
+     *
+     * @param cells the indices of the changed cells
+     * @param count the number of valid entries in cells
+     */
+    private void record(int[] cells, int count) {
+        if (!recording) {
+            return;
+        }
+        if (recordedCount + count > recorded.length) {
+            recorded = Arrays.copyOf(
+                    recorded, (int) Math.min(Board.MAX_CELLS,
+                            Math.max(recorded.length * 2L, (long) recordedCount + count))
+            );
+        }
+        System.arraycopy(cells, 0, recorded, recordedCount, count);
+        recordedCount += count;
+    }
+
+    /**
+     * Simple helper function that checks if given coordinates are valid
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the boolean of whether given coordinates is a valid cell
+     */
+    private boolean outOfBoundsCheck(int x, int y) {
+        return (x < 0 || x >= board.getRows() || y < 0 || y >= board.getColumns());
+    }
+
+    /**
+     * Simple helper function that fills in and commits the event of an undo or
+     * redo, if the recording wants it.
+     *
+     * @param event the event, begun before the move was undone or redone
+     * @param type  MoveEvent.UNDO or MoveEvent.REDO
+     * @param move  the move that was undone or redone
+     */
+    private static void commitMoveEvent(GameEvents.MoveEvent event, String type, Move move) {
+        if (event.shouldCommit()) {
+            event.type = type;
+            event.x = move.getxCoor();
+            event.y = move.getyCoor();
+            event.cellsChanged = move.getChangedCells().length;
+            event.commit();
+        }
+    }
+
+    /**
+     * Simple helper function that runs the clock while the game is going on and
+     * stops it once the game is won or lost.
+     */
+    private void updateClock() {
+        if (state == RUNNING) {
+            clock.start();
+        } else {
+            clock.pause();
+        }
+    }
+
+    private void notifyCell(int x, int y) {
+        if (listener != null) {
+            listener.cellChanged(x, y);
+        }
+    }
+
+    private void notifyCells(int[] cells, int count) {
+        if (listener != null) {
+            listener.cellsChanged(cells, count, board.getColumns());
+        }
+    }
+
+    private void notifyGame() {
+        if (listener != null) {
+            listener.gameChanged();
+        }
+    }
+
+    /*
+     * Getter methods
+     */
+
+    /**
+     * @return the board of the current game
+     */
+    public Board getBoard() {
+        return board;
+    }
+
+    /**
+     * @return the state of the game (RUNNING, WON or LOST)
+     */
+    public int getState() {
+        return state;
+    }
+
+    /**
+     * @return a boolean representing whether the game is still going on
+     */
+    public boolean getGameInPlay() {
+        return state == RUNNING;
+    }
+
+    /**
+     * @return an array containing the move history (the most recent move first)
+     */
+    public Object[] getMoveHistory() {
+        Object[] history = new Object[moveLog.size()];
+        for (int i = 0; i < history.length; i++) {
+            history[i] = moveLog.get(history.length - 1 - i);
+        }
+        return history;
+    }
+
+    /**
+     * @return the log of every move of the game (see MoveLog)
+     */
+    public MoveLog getMoveLog() {
+        return moveLog;
+    }
+
+    /**
+     * @return an array containing the flagged cell indices (in increasing order)
+     */
+    public Object[] getFlaggedCells() {
+        int[] indices = BitPlanes.toIndices(flaggedCells);
+        Object[] flagged = new Object[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            flagged[i] = indices[i];
+        }
+        return flagged;
+    }
+
+    /**
+     * @return an integer representing the number of non bomb cells remaining
+     */
+    public int getNonBombCellsRemaining() {
+        return nonBombCellsRemaining;
+    }
+
+    /**
+     * @return an integer representing the number of flags remaining
+     */
+    public int getFlagsRemaining() {
+        return flagsRemaining - flagCount;
+    }
+
+    /**
+     * @return an integer representing the current time elapsed (in seconds)
+     */
+    public int getCurrentTime() {
+        return (int) Math.min(Integer.MAX_VALUE, clock.getElapsedMillis() / 1000);
+    }
+
+    /**
+     * @return the time elapsed (in milliseconds)
+     */
+    public long getElapsedMillis() {
+        return clock.getElapsedMillis();
+    }
+}
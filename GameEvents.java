@@ -0,0 +1,123 @@
+package org.cis1200.minesweeper;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Java Flight Recorder events of the game. They show up (under
+ * "Minesweeper") in any recording that enables them, e.g.
+ * java -XX:StartFlightRecording:settings=profile,filename=game.jfr ...
+ * next to the events of the JVM, so a slow click can be lined up with the GC or
+ * the thread that caused it.
+ *
+ * Every event is used the same way: made and begun before the work, and only
+ * filled in and committed if shouldCommit says the recording wants it. While no
+ * recording has the event enabled, shouldCommit is always false and the JIT
+ * removes the event (and the allocation) entirely, so it costs nothing.
+ *
+ * None of them record a stack trace, which is the expensive part of an event.
+ */
+final class GameEvents {
+
+    private GameEvents() {
+    }
+
+    /**
+     * A move of the player (reveal, flag, unflag, undo or redo).
+     */
+    @Name("org.cis1200.minesweeper.Move")
+    @Label("Move")
+    @Category("Minesweeper")
+    @Description("A move applied to a game")
+    @StackTrace(false)
+    static final class MoveEvent extends Event {
+        static final String REVEAL = "reveal";
+        static final String FLAG = "flag";
+        static final String UNFLAG = "unflag";
+        static final String UNDO = "undo";
+        static final String REDO = "redo";
+
+        @Label("Type")
+        String type;
+
+        @Label("X")
+        int x;
+
+        @Label("Y")
+        int y;
+
+        @Label("Cells Changed")
+        int cellsChanged;
+    }
+
+    /**
+     * A reveal cascade (see RevealCascade).
+     */
+    @Name("org.cis1200.minesweeper.Cascade")
+    @Label("Cascade")
+    @Category("Minesweeper")
+    @Description("A region of cells uncovered by one click")
+    @StackTrace(false)
+    static final class CascadeEvent extends Event {
+        @Label("Size")
+        @Description("The number of cells uncovered")
+        int size;
+
+        @Label("Depth")
+        @Description("How many steps between neighbors the region reached")
+        int depth;
+    }
+
+    /**
+     * A new board (bombs placed and numbers counted).
+     */
+    @Name("org.cis1200.minesweeper.BoardGenerated")
+    @Label("Board Generated")
+    @Category("Minesweeper")
+    @Description("A board made from a seed")
+    @StackTrace(false)
+    static final class BoardGeneratedEvent extends Event {
+        @Label("Rows")
+        int rows;
+
+        @Label("Columns")
+        int columns;
+
+        @Label("Bombs")
+        int bombs;
+
+        @Label("Seed")
+        long seed;
+    }
+
+    /**
+     * A game imported from or exported to a file.
+     */
+    @Name("org.cis1200.minesweeper.Snapshot")
+    @Label("Snapshot")
+    @Category("Minesweeper")
+    @Description("A game imported from or exported to a file")
+    @StackTrace(false)
+    static final class SnapshotEvent extends Event {
+        static final String IMPORT = "import";
+        static final String EXPORT = "export";
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Path")
+        String path;
+
+        @Label("Size")
+        @DataAmount
+        long bytes;
+
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+}
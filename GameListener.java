@@ -0,0 +1,38 @@
+package org.cis1200.minesweeper;
+
+/**
+ * This interface is how the GameEngine reports changes in the game back to
+ * whoever is drawing it (GameCourt for the GUI). The engine never touches any
+ * Swing components itself, so a listener is optional; a headless game simply
+ * runs without one.
+ */
+public interface GameListener {
+
+    /**
+     * Called whenever the visibility or flagged status of a cell changes.
+     *
+     * @param x the x coordinate of the changed cell
+     * @param y the y coordinate of the changed cell
+     */
+    void cellChanged(int x, int y);
+
+    /**
+     * Called when a whole batch of cells changed at once (e.g. a cascade of
+     * revealed cells). By default this calls cellChanged for each of them.
+     *
+     * @param cells   the indices (x * columns + y) of the changed cells
+     * @param count   the number of valid entries in cells
+     * @param columns the number of columns of the board
+     */
+    default void cellsChanged(int[] cells, int count, int columns) {
+        for (int i = 0; i < count; i++) {
+            cellChanged(cells[i] / columns, cells[i] % columns);
+        }
+    }
+
+    /**
+     * Called whenever the counters (flags remaining, elapsed time) or the
+     * status of the game (running, won, lost) change.
+     */
+    void gameChanged();
+}
@@ -0,0 +1,192 @@
+package org.cis1200.minesweeper;
+
+/**
+ * This class plays a game's MoveLog again to rebuild the exact board (which
+ * cells are visible or flagged) and state of the game after any number of
+ * moves, including undone ones. It is meant for looking back through a game,
+ * e.g. to analyze it.
+ *
+ * Every CHECKPOINT_INTERVAL moves it keeps a checkpoint: the visibility and
+ * flags of every cell, packed four cells per byte (the same way the BoardCodec
+ * does). Seeking to move N starts from the closest checkpoint before N, so it
+ * never has to play more than CHECKPOINT_INTERVAL moves.
+ *
+ * While making the checkpoints, every move is checked against the board, so a
+ * log that doesn't belong to the board is rejected.
+ */
+public class GameReplay {
+
+    public static final int CHECKPOINT_INTERVAL = 64;
+
+    private final MoveLog log;
+    private final int interval;
+    // The values of the cells, without visibility or flags
+    private final byte[] values;
+    private final int rows;
+    private final int columns;
+    private final byte[][] checkpoints;
+    private final int startState;
+
+    /**
+     * Creates the replay of a game that was made from a seed. The board is made
+     * again from the seed stored in the log.
+     *
+     * @param log the moves of the game
+     * @throws IllegalArgumentException if the log isn't seeded or its moves don't
+     *                                  fit the board
+     */
+    public GameReplay(MoveLog log) {
+        this(startOf(log), log, GameEngine.RUNNING, 0, CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * Creates the replay of the game currently being played by the engine. The
+     * board before the first move is found by undoing every done move on a copy
+     * of the current board, so this also works for imported games.
+     *
+     * @param engine the game to replay
+     */
+    public GameReplay(GameEngine engine) {
+        this(engine.getBoard(), engine.getMoveLog(), engine.getState(),
+                engine.getMoveLog().size(), CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * Creates the replay of a game from its board after the given number of
+     * moves.
+     *
+     * @param board    the board after the moves that are done (it is copied)
+     * @param log      the moves of the game
+     * @param state    the state of the game after the moves that are done
+     * @param done     the number of moves that are done on the board
+     * @param interval the number of moves between checkpoints
+     * @throws IllegalArgumentException if the moves don't fit the board
+     */
+    GameReplay(Board board, MoveLog log, int state, int done, int interval) {
+        if (board.getRows() != log.getRows() || board.getColumns() != log.getColumns()
+                || done < 0 || done > log.getTotal() || interval <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.log = log;
+        this.interval = interval;
+        rows = board.getRows();
+        columns = board.getColumns();
+
+        byte[] cells = board.getCells().clone();
+        values = new byte[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            values[i] = (byte) (cells[i] & Board.VALUE_MASK);
+        }
+
+        // Walks back to the start of the game
+        int first = state;
+        for (int i = done - 1; i >= 0; i--) {
+            Move move = log.get(i);
+            apply(cells, move, false);
+            first = move.getStateBefore();
+        }
+        startState = first;
+
+        // Then plays every move forward again, keeping checkpoints along the way
+        checkpoints = new byte[log.getTotal() / interval + 1][];
+        for (int i = 0; i <= log.getTotal(); i++) {
+            if (i % interval == 0) {
+                checkpoints[i / interval] = pack(cells);
+            }
+            if (i < log.getTotal()) {
+                apply(cells, log.get(i), true);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the board after the given number of moves.
+     *
+     * @param move the number of moves (0 is the start of the game)
+     * @return a new board holding the values, visibility and flags after the moves
+     * @throws IllegalArgumentException if the log doesn't have that many moves
+     */
+    public Board boardAt(int move) {
+        if (move < 0 || move > log.getTotal()) {
+            throw new IllegalArgumentException();
+        }
+        byte[] cells = values.clone();
+        byte[] checkpoint = checkpoints[move / interval];
+        BoardCodec.unpackStates(checkpoint, checkpoint.length, cells, 0);
+        for (int i = move - move % interval; i < move; i++) {
+            apply(cells, log.get(i), true);
+        }
+        return new Board(rows, columns, cells);
+    }
+
+    /**
+     * @param move the number of moves (0 is the start of the game)
+     * @return the state of the game (GameEngine.RUNNING, WON or LOST) after the
+     *         moves
+     * @throws IllegalArgumentException if the log doesn't have that many moves
+     */
+    public int stateAt(int move) {
+        if (move < 0 || move > log.getTotal()) {
+            throw new IllegalArgumentException();
+        }
+        return move == 0 ? startState : log.get(move - 1).getStateAfter();
+    }
+
+    /**
+     * @return the number of moves that can be replayed
+     */
+    public int getMoves() {
+        return log.getTotal();
+    }
+
+    /**
+     * Makes the board before the first move of a seeded log.
+     */
+    private static Board startOf(MoveLog log) {
+        if (!log.isSeeded()) {
+            throw new IllegalArgumentException();
+        }
+        return new Board(log.getRows(), log.getColumns(), log.getBombs(), log.getSeed());
+    }
+
+    /**
+     * Does (or undoes) a move on the cells, checking that every cell it changed
+     * was in the right state beforehand.
+     *
+     * @param cells   the packed cells of the board
+     * @param move    the move
+     * @param forward true to do the move, false to undo it
+     * @throws IllegalArgumentException if the move doesn't fit the cells
+     */
+    private void apply(byte[] cells, Move move, boolean forward) {
+        int[] changed = move.getChangedCells();
+        int type = move.getMoveType();
+        if (type != 0 && (changed.length != 1
+                || changed[0] != move.getxCoor() * columns + move.getyCoor())) {
+            throw new IllegalArgumentException();
+        }
+        // A reveal shows (or hides back) its cells; a flag (1) or unflag (2)
+        // flips the flag of its cell
+        int bit = type == 0 ? Board.VISIBLE : Board.FLAGGED;
+        boolean set = forward == (type != 2);
+        for (int cell : changed) {
+            // Only hidden cells can be uncovered or flagged (losing also uncovers
+            // the flagged bombs)
+            int blocking = type == 0 ? Board.VISIBLE : Board.VISIBLE | Board.FLAGGED;
+            if (set ? (cells[cell] & blocking) != 0 : (cells[cell] & bit) == 0) {
+                throw new IllegalArgumentException();
+            }
+            if (set) {
+                cells[cell] = (byte) (cells[cell] | bit);
+            } else {
+                cells[cell] = (byte) (cells[cell] & ~bit);
+            }
+        }
+    }
+
+    private static byte[] pack(byte[] cells) {
+        byte[] packed = new byte[BoardCodec.stateBytes(cells.length)];
+        BoardCodec.packStates(cells, 0, packed);
+        return packed;
+    }
+}
@@ -0,0 +1,542 @@
+package org.cis1200.minesweeper;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hosts many games at once behind a local TCP port, so they can be played by
+ * other programs (see LoadGenerator) instead of the GUI. Every connection is
+ * handled on its own virtual thread, so thousands of connections only cost
+ * thousands of small stacks, not thousands of OS threads.
+ *
+ * The games are kept in a SessionCache, so only the games that were used lately
+ * take up memory; the others wait in a SnapshotArchive until they are used.
+ *
+ * The protocol is one line per request and one line per response (UTF-8, "\n"
+ * at the end). A game lives on the server under its id, not on the connection,
+ * so any connection can play any game.
+ * - NEW [rows columns bombs [seed]] = Starts a game (16x16 with 30 bombs if no
+ * size is given). Answers "OK id rows columns bombs".
+ * - REVEAL id x y = Clicks a cell.
+ * - FLAG id x y = Flags or unflags a cell.
+ * - UNDO id / REDO id = Undoes or redoes a move.
+ * - STATE id = The whole game. Answers "OK state flagsLeft safeLeft millis rows
+ * columns cells", where millis is the elapsed time and cells has one character
+ * per cell, row by row.
+ * - CLOSE id = Ends the game. Answers "OK".
+ * - QUIT = Closes the connection.
+ *
+ * REVEAL, FLAG, UNDO and REDO only send back the cells that changed:
+ * "OK state flagsLeft count x,y,c x,y,c ...". The state is RUNNING, WON or
+ * LOST, and a cell c is its number (0 to 8), B for a bomb, F for a flag, or H
+ * for hidden. Anything that goes wrong is answered with "ERR message".
+ *
+ * A connection can also play one game of the endless mode (see InfiniteBoard),
+ * which belongs to the connection and ends with it. Any int is a coordinate.
+ * - ENDLESS [bombsPerChunk [seed]] = Starts an endless game (ending the one
+ * before, if any). Answers "OK seed bombsPerChunk". (0, 0) is always safe.
+ * - EREVEAL x y / EFLAG x y = Clicks, or flags or unflags, a cell. Answers
+ * "OK state count x,y,c ..." like the moves above (without flagsLeft, since
+ * there is no limit). The state is RUNNING, or LOST once a bomb was clicked,
+ * after which the game only answers EVIEW.
+ * - EVIEW x y rows columns = What the player sees of the rows x rows by columns
+ * area starting at (x, y). Answers "OK cells", one character per cell, row by
+ * row (at most MAX_VIEW_CELLS of them).
+ */
+public class GameServer implements Closeable {
+
+    public static final int DEFAULT_PORT = 7681;
+    public static final int DEFAULT_MAX_GAMES = 100_000;
+    public static final int DEFAULT_MAX_IDLE_SECONDS = 300;
+    // Keeps one request from making a game too big to hold
+    public static final int MAX_CELLS_PER_GAME = 1 << 20;
+    // About the density of the intermediate game (40 bombs on 16x16)
+    public static final int DEFAULT_BOMBS_PER_CHUNK = 640;
+    // The most chunks of an endless game in memory (16 KB of cells each)
+    public static final int ENDLESS_MAX_CHUNKS = 64;
+    public static final int MAX_VIEW_CELLS = 1 << 16;
+
+    private static final String[] STATES = { "RUNNING", "WON", "LOST" };
+
+    private final ServerSocket server;
+    private final SessionCache sessions;
+    private final AtomicLong nextId = new AtomicLong(1);
+    private volatile boolean closed = false;
+
+    /**
+     * Collects the cells one request changed. It listens to the game only while
+     * the request is made (with the game locked by the SessionCache).
+     */
+    private static class Changes implements GameListener {
+        final int columns;
+        int[] changed = new int[64];
+        int changedCount = 0;
+
+        Changes(int columns) {
+            this.columns = columns;
+        }
+
+        @Override
+        public void cellChanged(int x, int y) {
+            add(x * columns + y);
+        }
+
+        @Override
+        public void cellsChanged(int[] cells, int count, int columns) {
+            if (changedCount + count > changed.length) {
+                changed = Arrays.copyOf(
+                        changed, Math.max(changed.length * 2, changedCount + count)
+                );
+            }
+            System.arraycopy(cells, 0, changed, changedCount, count);
+            changedCount += count;
+        }
+
+        @Override
+        public void gameChanged() {
+        }
+
+        private void add(int cell) {
+            if (changedCount == changed.length) {
+                changed = Arrays.copyOf(changed, changed.length * 2);
+            }
+            changed[changedCount++] = cell;
+        }
+    }
+
+    /**
+     * What the server keeps for one connection: its endless game, if it has one.
+     * The chunks of the game are stored in a temporary file of its own, which is
+     * deleted when the game ends.
+     */
+    static class Connection implements Closeable {
+        InfiniteBoard endless;
+        Path endlessStore;
+        boolean endlessLost;
+
+        /**
+         * Starts a new endless game, ending the one before (only once the new one
+         * was made, so a bad request doesn't end it).
+         */
+        void startEndless(long seed, int bombsPerChunk) throws IOException {
+            Path store = Files.createTempFile("minesweeper-endless", ".dat");
+            InfiniteBoard board;
+            try {
+                board = new InfiniteBoard(seed, bombsPerChunk, ENDLESS_MAX_CHUNKS, store);
+            } catch (IOException | RuntimeException e) {
+                deleteStore(store);
+                throw e;
+            }
+            close();
+            endless = board;
+            endlessStore = store;
+            endlessLost = false;
+        }
+
+        /**
+         * Ends the endless game (if there is one) and deletes its file.
+         */
+        @Override
+        public void close() throws IOException {
+            if (endless == null) {
+                return;
+            }
+            try {
+                endless.close();
+            } finally {
+                deleteStore(endlessStore);
+                endless = null;
+                endlessStore = null;
+            }
+        }
+
+        private static void deleteStore(Path store) throws IOException {
+            Files.deleteIfExists(store);
+            Files.deleteIfExists(store.resolveSibling(store.getFileName() + ".idx"));
+        }
+    }
+
+    /**
+     * Opens the server on the given port of the loopback address. It doesn't
+     * accept connections until start is called.
+     *
+     * @param port     the port (0 for any free port)
+     * @param sessions where the games are kept
+     * @throws IOException if the port can't be opened
+     */
+    public GameServer(int port, SessionCache sessions) throws IOException {
+        this.sessions = sessions;
+        server = new ServerSocket();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 4096);
+    }
+
+    /**
+     * Starts accepting connections (on a virtual thread).
+     */
+    public void start() {
+        Thread.ofVirtual().name("game-server-accept").start(this::acceptAll);
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * @return the games being played
+     */
+    public SessionCache getSessions() {
+        return sessions;
+    }
+
+    /**
+     * Stops accepting connections. Connections that are open are closed the next
+     * time they send a request.
+     *
+     * @throws IOException if the server socket can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        server.close();
+    }
+
+    /**
+     * Answers one request.
+     *
+     * @param line       the request (without the "\n")
+     * @param connection the connection the request came from
+     * @return the response (without the "\n"), or null if the connection should
+     *         be closed
+     */
+    String handle(String line, Connection connection) {
+        String[] words = line.trim().split("\\s+");
+        try {
+            switch (words[0].toUpperCase()) {
+                case "NEW":
+                    return newGame(words);
+                case "REVEAL":
+                case "FLAG":
+                case "UNDO":
+                case "REDO":
+                    return move(words);
+                case "STATE":
+                    return state(words);
+                case "CLOSE":
+                    checkLength(words, 2);
+                    if (!sessions.remove(Long.parseLong(words[1]))) {
+                        return "ERR no such game";
+                    }
+                    return "OK";
+                case "ENDLESS":
+                    return newEndless(words, connection);
+                case "EREVEAL":
+                case "EFLAG":
+                    return endlessMove(words, connection);
+                case "EVIEW":
+                    return endlessView(words, connection);
+                case "QUIT":
+                    return null;
+                default:
+                    return "ERR unknown request";
+            }
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException is an IllegalArgumentException too
+            return "ERR invalid request";
+        } catch (IOException e) {
+            return "ERR storage failed";
+        } catch (UncheckedIOException e) {
+            // From the chunks of an endless game
+            return "ERR storage failed";
+        }
+    }
+
+    private String newGame(String[] words) throws IOException {
+        GameEngine engine;
+        if (words.length == 1) {
+            engine = new GameEngine();
+        } else {
+            if (words.length != 4 && words.length != 5) {
+                throw new IllegalArgumentException();
+            }
+            int rows = Integer.parseInt(words[1]);
+            int columns = Integer.parseInt(words[2]);
+            int bombs = Integer.parseInt(words[3]);
+            if ((long) rows * columns > MAX_CELLS_PER_GAME) {
+                return "ERR game too big";
+            }
+            engine = words.length == 5
+                    ? new GameEngine(rows, columns, bombs, Long.parseLong(words[4]))
+                    : new GameEngine(rows, columns, bombs);
+        }
+        long id = nextId.getAndIncrement();
+        Board board = engine.getBoard();
+        sessions.put(id, engine);
+        return "OK " + id + " " + board.getRows() + " " + board.getColumns() + " "
+                + board.getTotalBombs();
+    }
+
+    /**
+     * REVEAL, FLAG, UNDO or REDO.
+     */
+    private String move(String[] words) throws IOException {
+        String type = words[0].toUpperCase();
+        boolean undoOrRedo = type.equals("UNDO") || type.equals("REDO");
+        checkLength(words, undoOrRedo ? 2 : 4);
+        long id = Long.parseLong(words[1]);
+        int x = undoOrRedo ? 0 : Integer.parseInt(words[2]);
+        int y = undoOrRedo ? 0 : Integer.parseInt(words[3]);
+
+        String response = sessions.withGame(id, engine -> {
+            Board board = engine.getBoard();
+            int columns = board.getColumns();
+            if (x < 0 || x >= board.getRows() || y < 0 || y >= columns) {
+                return "ERR out of bounds";
+            }
+            Changes changes = new Changes(columns);
+            engine.setListener(changes);
+            try {
+                if (type.equals("UNDO")) {
+                    engine.undo();
+                } else if (type.equals("REDO")) {
+                    engine.redo();
+                } else if (type.equals("FLAG")) {
+                    engine.flagCell(x, y);
+                } else {
+                    engine.showClickedCell(x, y);
+                }
+            } finally {
+                engine.setListener(null);
+            }
+
+            byte[] cells = board.getCells();
+            StringBuilder text = new StringBuilder(16 + changes.changedCount * 8);
+            text.append("OK ").append(STATES[engine.getState()]).append(' ')
+                    .append(engine.getFlagsRemaining()).append(' ')
+                    .append(changes.changedCount);
+            for (int i = 0; i < changes.changedCount; i++) {
+                int cell = changes.changed[i];
+                text.append(' ').append(cell / columns).append(',')
+                        .append(cell % columns).append(',').append(symbol(cells[cell]));
+            }
+            return text.toString();
+        });
+        return response == null ? "ERR no such game" : response;
+    }
+
+    private String state(String[] words) throws IOException {
+        checkLength(words, 2);
+        String response = sessions.withGame(Long.parseLong(words[1]), engine -> {
+            Board board = engine.getBoard();
+            byte[] cells = board.getCells();
+            StringBuilder text = new StringBuilder(64 + cells.length);
+            text.append("OK ").append(STATES[engine.getState()]).append(' ')
+                    .append(engine.getFlagsRemaining()).append(' ')
+                    .append(engine.getNonBombCellsRemaining()).append(' ')
+                    .append(engine.getElapsedMillis()).append(' ')
+                    .append(board.getRows()).append(' ').append(board.getColumns())
+                    .append(' ');
+            for (byte cell : cells) {
+                text.append(symbol(cell));
+            }
+            return text.toString();
+        });
+        return response == null ? "ERR no such game" : response;
+    }
+
+    private String newEndless(String[] words, Connection connection) throws IOException {
+        if (words.length > 3) {
+            throw new IllegalArgumentException();
+        }
+        int bombsPerChunk = words.length > 1 ? Integer.parseInt(words[1])
+                : DEFAULT_BOMBS_PER_CHUNK;
+        long seed = words.length > 2 ? Long.parseLong(words[2])
+                : ThreadLocalRandom.current().nextLong();
+        connection.startEndless(seed, bombsPerChunk);
+        return "OK " + seed + " " + bombsPerChunk;
+    }
+
+    /**
+     * EREVEAL or EFLAG.
+     */
+    private String endlessMove(String[] words, Connection connection) {
+        checkLength(words, 3);
+        InfiniteBoard board = connection.endless;
+        if (board == null) {
+            return "ERR no endless game";
+        }
+        if (connection.endlessLost) {
+            return "ERR game over";
+        }
+        int x = Integer.parseInt(words[1]);
+        int y = Integer.parseInt(words[2]);
+
+        StringBuilder text;
+        if (words[0].equalsIgnoreCase("EFLAG")) {
+            boolean changed = !board.getVisibilityOfCell(x, y);
+            board.changeFlaggedOfCell(x, y, !board.getFlaggedOfCell(x, y));
+            text = new StringBuilder("OK RUNNING ").append(changed ? 1 : 0);
+            if (changed) {
+                appendEndlessCell(text, board, x, y);
+            }
+            return text.toString();
+        }
+
+        int count = board.reveal(x, y);
+        connection.endlessLost = count > 0 && board.isBomb(x, y);
+        long[] revealed = board.getRevealed();
+        text = new StringBuilder(16 + count * 12);
+        text.append("OK ").append(connection.endlessLost ? "LOST" : "RUNNING").append(' ')
+                .append(count);
+        for (int i = 0; i < count; i++) {
+            appendEndlessCell(text, board, (int) (revealed[i] >> 32), (int) revealed[i]);
+        }
+        return text.toString();
+    }
+
+    private String endlessView(String[] words, Connection connection) {
+        checkLength(words, 5);
+        InfiniteBoard board = connection.endless;
+        if (board == null) {
+            return "ERR no endless game";
+        }
+        int x = Integer.parseInt(words[1]);
+        int y = Integer.parseInt(words[2]);
+        int rows = Integer.parseInt(words[3]);
+        int columns = Integer.parseInt(words[4]);
+        if (rows <= 0 || columns <= 0) {
+            throw new IllegalArgumentException();
+        }
+        if ((long) rows * columns > MAX_VIEW_CELLS) {
+            return "ERR view too big";
+        }
+        StringBuilder text = new StringBuilder(3 + rows * columns).append("OK ");
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                text.append(endlessSymbol(board, x + i, y + j));
+            }
+        }
+        return text.toString();
+    }
+
+    private static void appendEndlessCell(StringBuilder text, InfiniteBoard board, int x,
+            int y) {
+        text.append(' ').append(x).append(',').append(y).append(',')
+                .append(endlessSymbol(board, x, y));
+    }
+
+    /**
+     * @return what the player sees of a cell of an endless game (0-8, B, F or H)
+     */
+    private static char endlessSymbol(InfiniteBoard board, int x, int y) {
+        if (board.getVisibilityOfCell(x, y)) {
+            int value = board.getNumOfCell(x, y);
+            return value == 9 ? 'B' : (char) ('0' + value);
+        }
+        return board.getFlaggedOfCell(x, y) ? 'F' : 'H';
+    }
+
+    /**
+     * @return what the player sees of a cell (0-8, B, F or H)
+     */
+    private static char symbol(byte cell) {
+        if ((cell & Board.VISIBLE) != 0) {
+            int value = cell & Board.VALUE_MASK;
+            return value == 9 ? 'B' : (char) ('0' + value);
+        }
+        return (cell & Board.FLAGGED) != 0 ? 'F' : 'H';
+    }
+
+    private static void checkLength(String[] words, int length) {
+        if (words.length != length) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    private void acceptAll() {
+        while (!closed) {
+            try {
+                Socket socket = server.accept();
+                Thread.ofVirtual().start(() -> serve(socket));
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("Accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Answers the requests of one connection until it is closed.
+     */
+    private void serve(Socket socket) {
+        try (socket; Connection connection = new Connection()) {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)
+            );
+            BufferedWriter out = new BufferedWriter(
+                    new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)
+            );
+            for (String line = in.readLine(); line != null && !closed; line = in.readLine()) {
+                String response = handle(line, connection);
+                if (response == null) {
+                    break;
+                }
+                out.write(response);
+                out.write('\n');
+                out.flush();
+            }
+        } catch (IOException e) {
+            // The client went away; its games stay on the server (but its endless
+            // game is gone)
+        }
+    }
+
+    /**
+     * Runs the server until the program is stopped. Evicted games are saved in a
+     * new temporary file, which is deleted when the program ends (the games in
+     * memory are lost then anyway).
+     *
+     * @param args the port to listen on, the most games kept in memory, and how
+     *             many seconds a game can be idle before it is evicted (every one
+     *             is optional)
+     * @throws IOException if the port or the file can't be opened
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int maxGames = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_GAMES;
+        int maxIdle = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_IDLE_SECONDS;
+
+        Path store = Files.createTempFile("minesweeper-sessions", ".dat");
+        store.toFile().deleteOnExit();
+        store.resolveSibling(store.getFileName() + ".idx").toFile().deleteOnExit();
+        Metrics.install();
+        SnapshotArchive archive = new SnapshotArchive(store);
+        GameServer server = new GameServer(
+                port, new SessionCache(archive, maxGames, maxIdle, TimeUnit.SECONDS)
+        );
+        System.out.println("Minesweeper server listening on localhost:" + server.getPort());
+        // Virtual threads don't keep the program running, so the main thread
+        // accepts the connections itself
+        server.acceptAll();
+    }
+}
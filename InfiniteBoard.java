@@ -0,0 +1,539 @@
+package org.cis1200.minesweeper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * The board of the endless mode. It has no edges: any (x, y) that fits in an
+ * int is a cell. The world is split into chunks of CHUNK_SIZE x CHUNK_SIZE
+ * cells, and a chunk is only made when one of its cells is first looked at.
+ *
+ * The bombs of a chunk come from the seed of the board and the coordinates of
+ * the chunk alone (each chunk places bombsPerChunk bombs with Floyd's sampling,
+ * the same way Board.addBombs does), so any chunk can be made again at any time
+ * without looking at the others. The cells around (0, 0) never have bombs, so
+ * the game can always start by clicking (0, 0). The numbers along the edges of
+ * a chunk are counted with the bombs of the neighboring chunks, so they are the
+ * same as on one big board.
+ *
+ * Cells are packed the same way as in Board (value in bits 0-3, VISIBLE and
+ * FLAGGED in bits 4 and 5). At most maxChunks chunks are kept in memory; when
+ * another one is needed, the least recently used one is evicted. Since the
+ * values can always be made again, only the visibility and flags of an evicted
+ * chunk are kept (and only if they changed since it was loaded), packed four
+ * cells per byte (see BoardCodec) into a SnapshotArchive under the chunk's
+ * coordinates, and read back the next time the chunk is needed. The archive
+ * compacts itself, so it keeps about one record per stored chunk however often
+ * the chunks go back and forth. So however far the player explores, only
+ * maxChunks chunks (plus an index entry per stored chunk) are ever in the heap.
+ *
+ * A reveal cascade only spreads over as many chunks as fit in memory at once
+ * (see reveal), so it never evicts a chunk it is still working on.
+ *
+ * The endless mode is played through the GameServer (ENDLESS and the requests
+ * after it).
+ */
+public class InfiniteBoard implements Closeable {
+
+    public static final int CHUNK_SIZE = 64;
+    // The most cells one reveal uncovers. At low bomb densities the 0s can
+    // reach arbitrarily far, so a cascade stops here (its edge is left as
+    // visible 0s next to hidden cells, which are all safe to click).
+    public static final int MAX_CASCADE = 1 << 20;
+
+    private static final int CHUNK_SHIFT = 6;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int CHUNK_CELLS = CHUNK_SIZE * CHUNK_SIZE;
+
+    private final long seed;
+    private final int bombsPerChunk;
+    private final int maxChunks;
+    private final SnapshotArchive store;
+    private final LinkedHashMap<Long, Chunk> chunks;
+
+    // The chunk used last, so that cells of the same chunk skip the map
+    private Chunk last;
+    private long chunksMade = 0;
+    private long chunksEvicted = 0;
+    private long chunksLoaded = 0;
+
+    // Scratch space for making chunks and for cascades
+    private final boolean[] bombs = new boolean[(CHUNK_SIZE + 2) * (CHUNK_SIZE + 2)];
+    private final long[] layout = new long[CHUNK_SIZE];
+    private final byte[] packed = new byte[BoardCodec.stateBytes(CHUNK_CELLS)];
+    private long[] queue = new long[64];
+    // The cells uncovered by the last reveal, and the chunks it touched
+    private long[] revealed = new long[64];
+    private final HashSet<Long> cascadeChunks = new HashSet<Long>();
+
+    /**
+     * One CHUNK_SIZE x CHUNK_SIZE piece of the board.
+     */
+    private static class Chunk {
+        final long key;
+        final byte[] cells = new byte[CHUNK_CELLS];
+        // Whether the visibility or flags changed since the chunk was loaded
+        boolean dirty;
+
+        Chunk(long key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Creates an endless board. Evicted chunks are stored in the archive at the
+     * given path (which is created if it doesn't exist yet). Opening the same
+     * path again with the same seed and bombsPerChunk continues where the board
+     * was closed.
+     *
+     * @param seed          the seed of the whole board
+     * @param bombsPerChunk the number of bombs in every chunk
+     * @param maxChunks     the most chunks kept in memory at once
+     * @param store         the path of the archive evicted chunks go to
+     * @throws IllegalArgumentException if bombsPerChunk isn't between 0 and the
+     *                                  number of cells of a chunk, or maxChunks
+     *                                  is less than 9
+     * @throws IOException              if the archive can't be opened
+     */
+    public InfiniteBoard(long seed, int bombsPerChunk, int maxChunks, Path store)
+            throws IOException {
+        // A cell and its 8 neighbors can span up to 4 chunks, and a chunk is made
+        // from its 8 neighbors' bombs, so a few chunks must fit at once
+        if (bombsPerChunk < 0 || bombsPerChunk > CHUNK_CELLS || maxChunks < 9) {
+            throw new IllegalArgumentException();
+        }
+        this.seed = seed;
+        this.bombsPerChunk = bombsPerChunk;
+        this.maxChunks = maxChunks;
+        this.chunks = new LinkedHashMap<Long, Chunk>(16, 0.75f, true);
+        this.store = new SnapshotArchive(store);
+    }
+
+    /**
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return whether the cell is a bomb
+     */
+    public boolean isBomb(int x, int y) {
+        return (cell(x, y) & Board.VALUE_MASK) == 9;
+    }
+
+    /**
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the value of the cell (the number of bombs around it, or 9 for a
+     *         bomb)
+     */
+    public int getNumOfCell(int x, int y) {
+        return cell(x, y) & Board.VALUE_MASK;
+    }
+
+    /**
+     * Counts the bombs around a cell by looking at its 8 neighbors (which may be
+     * in other chunks). Always the same as getNumOfCell for cells that aren't
+     * bombs.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the number of bombs around the cell
+     */
+    public int numSurroundingBombs(int x, int y) {
+        int count = 0;
+        for (int i = -1; i <= 1; i++) {
+            for (int j = -1; j <= 1; j++) {
+                if ((i != 0 || j != 0) && isBomb(x + i, y + j)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return whether the cell is visible
+     */
+    public boolean getVisibilityOfCell(int x, int y) {
+        return (cell(x, y) & Board.VISIBLE) != 0;
+    }
+
+    /**
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return whether the cell is flagged
+     */
+    public boolean getFlaggedOfCell(int x, int y) {
+        return (cell(x, y) & Board.FLAGGED) != 0;
+    }
+
+    /**
+     * Flags or unflags a hidden cell.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param b whether the cell should be flagged
+     */
+    public void changeFlaggedOfCell(int x, int y, boolean b) {
+        Chunk chunk = chunkOf(x, y);
+        int index = indexOf(x, y);
+        if ((chunk.cells[index] & Board.VISIBLE) == 0) {
+            chunk.cells[index] = (byte) (b ? chunk.cells[index] | Board.FLAGGED
+                    : chunk.cells[index] & ~Board.FLAGGED);
+            chunk.dirty = true;
+        }
+    }
+
+    /**
+     * Uncovers a cell. If it is a 0, every cell connected to it through other 0s
+     * (and the numbers bordering them) is uncovered too, across as many chunks as
+     * it takes, up to MAX_CASCADE cells and maxChunks chunks. Where it stops, its
+     * edge is left as visible 0s next to hidden cells, which are all safe to
+     * click (and clicking one goes on from there). Since a cascade never touches
+     * more chunks than fit in memory, none of its chunks is evicted (and stored
+     * and loaded again) while it runs. Visible and flagged cells are never
+     * touched. A bomb is simply uncovered (the caller decides what losing means).
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the number of cells that were uncovered (see getRevealed)
+     */
+    public int reveal(int x, int y) {
+        // Every chunk the cascade touches is looked up in the map (not through
+        // last), so the LRU order puts them all after the chunks it doesn't touch
+        last = null;
+        if (!show(x, y)) {
+            return 0;
+        }
+        cascadeChunks.clear();
+        long lastKey = chunkKey(x, y);
+        cascadeChunks.add(lastKey);
+        int count = 1;
+        revealed[0] = pack(x, y);
+        int head = 0;
+        int tail = 0;
+        if ((cell(x, y) & Board.VALUE_MASK) == 0) {
+            queue[tail++] = pack(x, y);
+        }
+
+        // Every cell in the queue is an uncovered 0 whose neighbors still have to
+        // be uncovered
+        while (head < tail && count < MAX_CASCADE) {
+            long next = queue[head++];
+            int cx = (int) (next >> 32);
+            int cy = (int) next;
+            for (int i = -1; i <= 1; i++) {
+                for (int j = -1; j <= 1; j++) {
+                    long key = chunkKey(cx + i, cy + j);
+                    if (key != lastKey) {
+                        if (!cascadeChunks.contains(key)) {
+                            if (cascadeChunks.size() == maxChunks) {
+                                continue;
+                            }
+                            cascadeChunks.add(key);
+                        }
+                        lastKey = key;
+                    }
+                    if (count < MAX_CASCADE && show(cx + i, cy + j)) {
+                        if (count == revealed.length) {
+                            revealed = Arrays.copyOf(revealed, revealed.length * 2);
+                        }
+                        revealed[count++] = pack(cx + i, cy + j);
+                        if ((cell(cx + i, cy + j) & Board.VALUE_MASK) == 0) {
+                            if (tail == queue.length) {
+                                // Reuses the part that was already walked
+                                System.arraycopy(queue, head, queue, 0, tail - head);
+                                tail -= head;
+                                head = 0;
+                                if (tail == queue.length) {
+                                    queue = Arrays.copyOf(queue, queue.length * 2);
+                                }
+                            }
+                            queue[tail++] = pack(cx + i, cy + j);
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the cells uncovered by the last reveal, as x << 32 | y (only the
+     *         first as many as it returned are meaningful). The array is reused
+     *         by the next reveal
+     */
+    public long[] getRevealed() {
+        return revealed;
+    }
+
+    /**
+     * @return the number of chunks in memory
+     */
+    public int getLoadedChunks() {
+        return chunks.size();
+    }
+
+    /**
+     * @return the number of chunks in the archive
+     */
+    public int getStoredChunks() {
+        return store.size();
+    }
+
+    /**
+     * @return how many times a chunk was made (including chunks made again after
+     *         being evicted)
+     */
+    public long getChunksMade() {
+        return chunksMade;
+    }
+
+    /**
+     * @return how many chunks were evicted from memory
+     */
+    public long getChunksEvicted() {
+        return chunksEvicted;
+    }
+
+    /**
+     * @return how many chunks were read back out of the archive
+     */
+    public long getChunksLoaded() {
+        return chunksLoaded;
+    }
+
+    /**
+     * @return the seed of the board
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Stores every changed chunk that is still in memory and closes the archive.
+     *
+     * @throws IOException if the archive can't be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            for (Chunk chunk : chunks.values()) {
+                spill(chunk);
+            }
+            store.force();
+        } finally {
+            chunks.clear();
+            last = null;
+            store.close();
+        }
+    }
+
+    /**
+     * Uncovers a single hidden, unflagged cell.
+     *
+     * @return whether the cell was uncovered
+     */
+    private boolean show(int x, int y) {
+        Chunk chunk = chunkOf(x, y);
+        int index = indexOf(x, y);
+        if ((chunk.cells[index] & (Board.VISIBLE | Board.FLAGGED)) != 0) {
+            return false;
+        }
+        chunk.cells[index] |= Board.VISIBLE;
+        chunk.dirty = true;
+        return true;
+    }
+
+    private byte cell(int x, int y) {
+        return chunkOf(x, y).cells[indexOf(x, y)];
+    }
+
+    private static int indexOf(int x, int y) {
+        return (x & CHUNK_MASK) * CHUNK_SIZE + (y & CHUNK_MASK);
+    }
+
+    private static long chunkKey(int x, int y) {
+        // An arithmetic shift rounds down, so negative coordinates work too
+        return pack(x >> CHUNK_SHIFT, y >> CHUNK_SHIFT);
+    }
+
+    private static long pack(int x, int y) {
+        return (long) x << 32 | (y & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Finds the chunk holding a cell, making it (or reading it back from the
+     * archive) if it isn't in memory. The chunk must not be kept around after
+     * another chunk is looked at, since it may be evicted by then.
+     */
+    private Chunk chunkOf(int x, int y) {
+        long key = chunkKey(x, y);
+        if (last != null && last.key == key) {
+            return last;
+        }
+        Chunk chunk = chunks.get(key);
+        if (chunk == null) {
+            chunk = load(key);
+            chunks.put(key, chunk);
+            evictIfFull();
+        }
+        last = chunk;
+        return chunk;
+    }
+
+    /**
+     * Evicts least recently used chunks until at most maxChunks are left.
+     */
+    private void evictIfFull() {
+        Iterator<Map.Entry<Long, Chunk>> eldest = chunks.entrySet().iterator();
+        while (chunks.size() > maxChunks) {
+            Chunk chunk = eldest.next().getValue();
+            spill(chunk);
+            eldest.remove();
+            chunksEvicted++;
+            if (chunk == last) {
+                last = null;
+            }
+        }
+    }
+
+    /**
+     * Stores the visibility and flags of a chunk, if they changed since it was
+     * loaded.
+     */
+    private void spill(Chunk chunk) {
+        if (!chunk.dirty) {
+            return;
+        }
+        BoardCodec.packStates(chunk.cells, 0, packed);
+        try {
+            store.append(chunk.key, ByteBuffer.wrap(packed));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        chunk.dirty = false;
+    }
+
+    /**
+     * Makes the chunk with the given key: its values from the seed, and its
+     * visibility and flags from the archive (if it was stored before).
+     */
+    private Chunk load(long key) {
+        int chunkX = (int) (key >> 32);
+        int chunkY = (int) key;
+        Chunk chunk = new Chunk(key);
+        fillValues(chunk.cells, chunkX, chunkY);
+        chunksMade++;
+
+        try {
+            ByteBuffer stored = store.read(key);
+            if (stored != null) {
+                if (stored.remaining() != packed.length) {
+                    throw new IllegalArgumentException();
+                }
+                stored.get(packed);
+                BoardCodec.unpackStates(packed, packed.length, chunk.cells, 0);
+                chunksLoaded++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return chunk;
+    }
+
+    /**
+     * Fills in the values of a chunk. The bombs of the chunk and the ones along
+     * the edges of its 8 neighbors are laid out on a grid one cell bigger on
+     * every side, so the numbers on the edges are counted like any other.
+     */
+    private void fillValues(byte[] cells, int chunkX, int chunkY) {
+        int width = CHUNK_SIZE + 2;
+        Arrays.fill(bombs, false);
+        for (int i = -1; i <= 1; i++) {
+            for (int j = -1; j <= 1; j++) {
+                layBombs(chunkX + i, chunkY + j);
+                // Only the rows/columns of the neighbor that touch this chunk
+                int fromRow = i < 0 ? CHUNK_SIZE - 1 : 0;
+                int toRow = i > 0 ? 0 : CHUNK_SIZE - 1;
+                int fromColumn = j < 0 ? CHUNK_SIZE - 1 : 0;
+                int toColumn = j > 0 ? 0 : CHUNK_SIZE - 1;
+                for (int r = fromRow; r <= toRow; r++) {
+                    long row = layout[r];
+                    for (int c = fromColumn; c <= toColumn; c++) {
+                        if ((row >>> c & 1) != 0) {
+                            int gridRow = r + 1 + i * CHUNK_SIZE;
+                            int gridColumn = c + 1 + j * CHUNK_SIZE;
+                            bombs[gridRow * width + gridColumn] = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        for (int r = 0; r < CHUNK_SIZE; r++) {
+            for (int c = 0; c < CHUNK_SIZE; c++) {
+                int center = (r + 1) * width + c + 1;
+                if (bombs[center]) {
+                    cells[r * CHUNK_SIZE + c] = 9;
+                    continue;
+                }
+                int count = 0;
+                for (int i = -1; i <= 1; i++) {
+                    for (int j = -1; j <= 1; j++) {
+                        if (bombs[center + i * width + j]) {
+                            count++;
+                        }
+                    }
+                }
+                cells[r * CHUNK_SIZE + c] = (byte) count;
+            }
+        }
+    }
+
+    /**
+     * Lays out the bombs of a chunk into layout (bit c of layout[r] is the cell
+     * at row r, column c of the chunk), using only the seed and the chunk's
+     * coordinates.
+     */
+    private void layBombs(int chunkX, int chunkY) {
+        Arrays.fill(layout, 0);
+        SplittableRandom r = new SplittableRandom(chunkSeed(chunkX, chunkY));
+        for (int j = CHUNK_CELLS - bombsPerChunk; j < CHUNK_CELLS; j++) {
+            int index = r.nextInt(j + 1);
+            if ((layout[index >> CHUNK_SHIFT] >>> (index & CHUNK_MASK) & 1) != 0) {
+                index = j;
+            }
+            layout[index >> CHUNK_SHIFT] |= 1L << (index & CHUNK_MASK);
+        }
+
+        // Keeps the cells around (0, 0) free of bombs
+        for (int x = -1; x <= 1; x++) {
+            for (int y = -1; y <= 1; y++) {
+                if (x >> CHUNK_SHIFT == chunkX && y >> CHUNK_SHIFT == chunkY) {
+                    layout[x & CHUNK_MASK] &= ~(1L << (y & CHUNK_MASK));
+                }
+            }
+        }
+    }
+
+    /**
+     * Mixes the seed of the board with the coordinates of a chunk (the finalizer
+     * of SplitMix64), so that neighboring chunks get unrelated seeds.
+     */
+    private long chunkSeed(int chunkX, int chunkY) {
+        long z = seed ^ pack(chunkX, chunkY) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,325 @@
+package org.cis1200.minesweeper;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Plays many games on a GameServer at once and reports how many requests the
+ * server answered per second and how long they took (the 50th, 99th and 99.9th
+ * percentiles). Every session is a virtual thread with its own connection and
+ * its own game, which it plays by revealing random hidden cells (with some
+ * flags and undos mixed in) and starting a new game whenever one ends.
+ *
+ * Every session connects and starts its first game before any of them is
+ * timed, so the numbers are for all of the sessions playing at once. Each
+ * session keeps its own latencies, which are only merged at the end.
+ *
+ * With pause=0 every session sends its next request as soon as it has the
+ * response, so the server is always busy and the latencies are mostly time
+ * spent waiting in line (about sessions / throughput). A pause between moves
+ * (like a person thinking) measures the latency at a given rate instead.
+ *
+ * Usage (every argument is optional):
+ * java org.cis1200.minesweeper.LoadGenerator host=localhost port=7681
+ * sessions=10000 seconds=30 pause=0 seed=1
+ *
+ * Every session holds a socket open, so the open file limit (ulimit -n) has to
+ * be above the number of sessions, on both the server and the load generator.
+ */
+public class LoadGenerator {
+
+    /**
+     * One session: a connection, the game it plays and what it has measured.
+     * Only the session's own thread uses it until the run is over.
+     */
+    private static class Session {
+        final SplittableRandom random;
+        long[] latencies = new long[1024];
+        int requests = 0;
+        int games = 0;
+        int errors = 0;
+
+        BufferedReader in;
+        BufferedWriter out;
+        long id;
+        int rows;
+        int columns;
+        // The cells of the game that are still hidden, as (x * columns + y)
+        int[] hidden;
+        int[] position;
+        int hiddenCount;
+
+        Session(SplittableRandom random) {
+            this.random = random;
+        }
+
+        /**
+         * Sends one request and waits for its response, timing the round trip.
+         */
+        String send(String request, boolean timed) throws IOException {
+            long start = System.nanoTime();
+            out.write(request);
+            out.write('\n');
+            out.flush();
+            String response = in.readLine();
+            if (response == null) {
+                throw new IOException("Connection closed");
+            }
+            if (timed) {
+                if (requests == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, requests * 2);
+                }
+                latencies[requests++] = System.nanoTime() - start;
+            }
+            if (response.startsWith("ERR")) {
+                errors++;
+            }
+            return response;
+        }
+
+        /**
+         * Starts a new game on the server and marks every cell as hidden.
+         */
+        void newGame(boolean timed) throws IOException {
+            String[] words = send("NEW", timed).split(" ");
+            id = Long.parseLong(words[1]);
+            rows = Integer.parseInt(words[2]);
+            columns = Integer.parseInt(words[3]);
+            hiddenCount = rows * columns;
+            if (hidden == null || hidden.length != hiddenCount) {
+                hidden = new int[hiddenCount];
+                position = new int[hiddenCount];
+            }
+            for (int i = 0; i < hiddenCount; i++) {
+                hidden[i] = i;
+                position[i] = i;
+            }
+            games++;
+        }
+
+        /**
+         * Makes one move and updates the hidden cells from the response.
+         *
+         * @return whether the game is still going on
+         */
+        boolean move() throws IOException {
+            int cell = hidden[random.nextInt(hiddenCount)];
+            int dice = random.nextInt(20);
+            String request;
+            if (dice == 0) {
+                request = "UNDO " + id;
+            } else if (dice == 1) {
+                request = "FLAG " + id + " " + cell / columns + " " + cell % columns;
+            } else {
+                request = "REVEAL " + id + " " + cell / columns + " " + cell % columns;
+            }
+            String response = send(request, true);
+            if (!response.startsWith("OK")) {
+                return true;
+            }
+
+            // OK state flagsLeft count x,y,c ...
+            String[] words = response.split(" ");
+            for (int i = 4; i < words.length; i++) {
+                String word = words[i];
+                int comma = word.indexOf(',');
+                int last = word.lastIndexOf(',');
+                int changed = Integer.parseInt(word.substring(0, comma)) * columns
+                        + Integer.parseInt(word.substring(comma + 1, last));
+                char symbol = word.charAt(last + 1);
+                boolean isHidden = symbol == 'H' || symbol == 'F';
+                if (isHidden != (position[changed] < hiddenCount)) {
+                    if (isHidden) {
+                        addHidden(changed);
+                    } else {
+                        removeHidden(changed);
+                    }
+                }
+            }
+            return words[1].equals("RUNNING") && hiddenCount > 0;
+        }
+
+        // hidden[0, hiddenCount) holds the hidden cells and position says where
+        // each cell is in it, so a cell can be added or removed by swapping
+
+        private void removeHidden(int cell) {
+            int last = hidden[--hiddenCount];
+            int at = position[cell];
+            hidden[at] = last;
+            position[last] = at;
+            hidden[hiddenCount] = cell;
+            position[cell] = hiddenCount;
+        }
+
+        private void addHidden(int cell) {
+            int first = hidden[hiddenCount];
+            int at = position[cell];
+            hidden[at] = first;
+            position[first] = at;
+            hidden[hiddenCount] = cell;
+            position[cell] = hiddenCount++;
+        }
+    }
+
+    /**
+     * Runs the load described by the arguments and prints the results.
+     *
+     * @param args key=value pairs (host, port, sessions, seconds, pause, seed)
+     * @throws InterruptedException if interrupted while waiting for the sessions
+     */
+    public static void main(String[] args) throws InterruptedException {
+        String host = "localhost";
+        int port = GameServer.DEFAULT_PORT;
+        int sessions = 10_000;
+        int seconds = 30;
+        int pause = 0;
+        long seed = new SplittableRandom().nextLong();
+        try {
+            for (String arg : args) {
+                int split = arg.indexOf('=');
+                String key = split < 0 ? arg : arg.substring(0, split);
+                String value = split < 0 ? "" : arg.substring(split + 1);
+                if (key.equals("host")) {
+                    host = value;
+                } else if (key.equals("port")) {
+                    port = Integer.parseInt(value);
+                } else if (key.equals("sessions")) {
+                    sessions = Integer.parseInt(value);
+                } else if (key.equals("seconds")) {
+                    seconds = Integer.parseInt(value);
+                } else if (key.equals("pause")) {
+                    pause = Integer.parseInt(value);
+                } else if (key.equals("seed")) {
+                    seed = Long.parseLong(value);
+                } else {
+                    throw new IllegalArgumentException();
+                }
+            }
+            if (sessions <= 0 || seconds <= 0 || pause < 0) {
+                throw new IllegalArgumentException();
+            }
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException is an IllegalArgumentException too
+            System.out.println("Usage: java org.cis1200.minesweeper.LoadGenerator [host=H]"
+                    + " [port=N] [sessions=N] [seconds=N] [pause=MILLISECONDS] [seed=N]");
+            return;
+        }
+
+        System.out.printf("Playing %,d sessions on %s:%d for %d seconds (%d ms between moves)%n",
+                sessions, host, port, seconds, pause);
+        run(host, port, sessions, seconds, pause, seed);
+    }
+
+    /**
+     * Starts every session, lets them play for the given time, and prints the
+     * results.
+     */
+    private static void run(String host, int port, int sessions, int seconds, int pause,
+            long seed) throws InterruptedException {
+        SplittableRandom random = new SplittableRandom(seed);
+        Session[] all = new Session[sessions];
+        Thread[] threads = new Thread[sessions];
+        CountDownLatch ready = new CountDownLatch(sessions);
+        CountDownLatch go = new CountDownLatch(1);
+        long[] window = new long[2];
+
+        for (int i = 0; i < sessions; i++) {
+            Session session = new Session(random.split());
+            all[i] = session;
+            threads[i] = Thread.ofVirtual().start(() -> {
+                boolean counted = false;
+                try (Socket socket = new Socket(host, port)) {
+                    socket.setTcpNoDelay(true);
+                    session.in = new BufferedReader(new InputStreamReader(
+                            socket.getInputStream(), StandardCharsets.UTF_8));
+                    session.out = new BufferedWriter(new OutputStreamWriter(
+                            socket.getOutputStream(), StandardCharsets.UTF_8));
+                    session.newGame(false);
+                    ready.countDown();
+                    counted = true;
+                    go.await();
+                    long end = window[1];
+                    if (pause > 0) {
+                        // Spreads the sessions out instead of all moving together
+                        Thread.sleep(session.random.nextInt(pause));
+                    }
+                    while (System.nanoTime() < end) {
+                        if (!session.move()) {
+                            session.send("CLOSE " + session.id, true);
+                            session.newGame(true);
+                        }
+                        if (pause > 0) {
+                            Thread.sleep(pause);
+                        }
+                    }
+                    session.send("CLOSE " + session.id, false);
+                } catch (IOException | InterruptedException e) {
+                    session.errors++;
+                } finally {
+                    if (!counted) {
+                        ready.countDown();
+                    }
+                }
+            });
+        }
+
+        ready.await();
+        window[0] = System.nanoTime();
+        window[1] = window[0] + seconds * 1_000_000_000L;
+        // Counting down go publishes window to the sessions
+        go.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long wall = System.nanoTime() - window[0];
+        print(all, wall);
+    }
+
+    /**
+     * Merges the latencies of every session and prints the results.
+     */
+    private static void print(Session[] all, long wall) {
+        long requests = 0;
+        long games = 0;
+        long errors = 0;
+        for (Session session : all) {
+            requests += session.requests;
+            games += session.games;
+            errors += session.errors;
+        }
+        long[] latencies = new long[(int) requests];
+        int size = 0;
+        for (Session session : all) {
+            System.arraycopy(session.latencies, 0, latencies, size, session.requests);
+            size += session.requests;
+        }
+        Arrays.sort(latencies);
+
+        double wallSeconds = wall / 1e9;
+        System.out.printf("Requests:   %,d (%,.0f per second)%n", requests,
+                requests / wallSeconds);
+        System.out.printf("Games:      %,d%n", games);
+        System.out.printf("Errors:     %,d%n", errors);
+        if (size > 0) {
+            System.out.printf("Latency:    p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms%n",
+                    percentile(latencies, 0.50), percentile(latencies, 0.99),
+                    percentile(latencies, 0.999), latencies[size - 1] / 1e6);
+        }
+    }
+
+    /**
+     * @return the given percentile of the sorted latencies, in milliseconds
+     */
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
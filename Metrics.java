@@ -0,0 +1,337 @@
+package org.cis1200.minesweeper;
+
+import java.beans.ConstructorProperties;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Measurements of the hot paths of the game (clicks, reveal cascades, undo,
+ * making boards, import and export), so it can be seen where the time goes
+ * while the game (or the GameServer) is running.
+ *
+ * Every measurement goes into a Histogram, which only adds to LongAdders (no
+ * locks, and threads adding at once don't fight over one counter), so recording
+ * costs a few nanoseconds. The histograms are read through the MetricsMXBean,
+ * which register adds to the platform MBean server, and can also be printed
+ * every so often (see startLogging).
+ *
+ * install is the one call a main method needs: it registers the MBean, and
+ * starts logging if the system property LOG_PROPERTY is set to a number of
+ * seconds (e.g. -Dminesweeper.metrics.logSeconds=60).
+ */
+public final class Metrics implements MetricsMXBean {
+
+    public static final String OBJECT_NAME = "org.cis1200.minesweeper:type=Metrics";
+    public static final String LOG_PROPERTY = "minesweeper.metrics.logSeconds";
+
+    static final Histogram CELLS_REVEALED_PER_CLICK = new Histogram("cellsRevealedPerClick");
+    static final Histogram CASCADE_CELLS = new Histogram("cascadeCells");
+    static final Histogram CASCADE_NANOS = new Histogram("cascadeNanos");
+    static final Histogram UNDO_CELLS = new Histogram("undoCells");
+    static final Histogram UNDO_NANOS = new Histogram("undoNanos");
+    static final Histogram ADD_BOMBS_NANOS = new Histogram("addBombsNanos");
+    static final Histogram ADD_NUMBERS_NANOS = new Histogram("addNumbersNanos");
+    static final Histogram IMPORT_NANOS = new Histogram("importNanos");
+    static final Histogram IMPORT_BYTES = new Histogram("importBytes");
+    static final Histogram EXPORT_NANOS = new Histogram("exportNanos");
+    static final Histogram EXPORT_BYTES = new Histogram("exportBytes");
+
+    private static final Histogram[] ALL = { CELLS_REVEALED_PER_CLICK, CASCADE_CELLS,
+        CASCADE_NANOS, UNDO_CELLS, UNDO_NANOS, ADD_BOMBS_NANOS, ADD_NUMBERS_NANOS,
+        IMPORT_NANOS, IMPORT_BYTES, EXPORT_NANOS, EXPORT_BYTES };
+
+    private static final Metrics INSTANCE = new Metrics();
+    private static boolean registered = false;
+    private static boolean installed = false;
+
+    private Metrics() {
+    }
+
+    /**
+     * A histogram of values that are 0 or more. Value v goes in bucket
+     * 64 - numberOfLeadingZeros(v) (0 in bucket 0, 1 in bucket 1, 2-3 in bucket 2,
+     * 4-7 in bucket 3, ...), so the percentiles are known to within a factor of
+     * 2, which is plenty to see where time goes. The count (the sum of the
+     * buckets), total and max are exact.
+     */
+    static final class Histogram {
+        private final String name;
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+        private final LongAdder[] buckets = new LongAdder[64];
+
+        Histogram(String name) {
+            this.name = name;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Adds a value (negative values count as 0).
+         *
+         * @param value the value
+         */
+        void record(long value) {
+            long v = Math.max(0, value);
+            total.add(v);
+            max.accumulate(v);
+            buckets[64 - Long.numberOfLeadingZeros(v)].increment();
+        }
+
+        /**
+         * @return the name of the histogram
+         */
+        String getName() {
+            return name;
+        }
+
+        /**
+         * @return the summary of the values so far. It is only a snapshot: values
+         *         added while it is made may or may not be in it
+         */
+        Summary summarize() {
+            long[] counts = new long[buckets.length];
+            long n = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+                n += counts[i];
+            }
+            long biggest = max.get();
+            return new Summary(n, total.sum(), percentile(counts, n, 0.50, biggest),
+                    percentile(counts, n, 0.99, biggest), biggest);
+        }
+
+        /**
+         * Empties the histogram.
+         */
+        void reset() {
+            total.reset();
+            max.reset();
+            for (LongAdder bucket : buckets) {
+                bucket.reset();
+            }
+        }
+
+        /**
+         * @return the top of the bucket the given percentile falls into (but no
+         *         more than the largest value)
+         */
+        private static long percentile(long[] counts, long n, double p, long biggest) {
+            if (n == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(p * n);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    long top = i == 0 ? 0 : i == 63 ? Long.MAX_VALUE : (1L << i) - 1;
+                    return Math.min(top, biggest);
+                }
+            }
+            return biggest;
+        }
+    }
+
+    /**
+     * What a histogram holds so far. JMX shows it as a CompositeData (one item
+     * per getter).
+     */
+    public static final class Summary {
+        private final long count;
+        private final long total;
+        private final long p50;
+        private final long p99;
+        private final long max;
+
+        /**
+         * @param count the number of values
+         * @param total the sum of the values
+         * @param p50   the 50th percentile (to within a factor of 2)
+         * @param p99   the 99th percentile (to within a factor of 2)
+         * @param max   the largest value
+         */
+        @ConstructorProperties({ "count", "total", "p50", "p99", "max" })
+        public Summary(long count, long total, long p50, long p99, long max) {
+            this.count = count;
+            this.total = total;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @return the average value (0 if there are none)
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) total / count;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d mean=%.1f p50=%d p99=%d max=%d", count, getMean(),
+                    p50, p99, max);
+        }
+    }
+
+    /**
+     * Registers the MBean and, if the system property LOG_PROPERTY is set,
+     * starts printing the metrics that many seconds apart. Calling it again does
+     * nothing.
+     */
+    public static synchronized void install() {
+        if (installed) {
+            return;
+        }
+        installed = true;
+        register();
+        long seconds = Long.getLong(LOG_PROPERTY, 0);
+        if (seconds > 0) {
+            startLogging(seconds);
+        }
+    }
+
+    /**
+     * Adds the MBean to the platform MBean server under OBJECT_NAME (if it isn't
+     * there yet).
+     */
+    public static synchronized void register() {
+        if (registered) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(INSTANCE, name);
+            }
+            registered = true;
+        } catch (JMException e) {
+            System.err.println("Metrics could not be registered: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Prints the metrics (see dump) every so often, on the GameClock's shared
+     * scheduler.
+     *
+     * @param periodSeconds the time between prints (in seconds)
+     * @return the handle to stop the printing with
+     * @throws IllegalArgumentException if the period isn't positive
+     */
+    public static ScheduledFuture<?> startLogging(long periodSeconds) {
+        if (periodSeconds <= 0) {
+            throw new IllegalArgumentException();
+        }
+        long millis = periodSeconds * 1000;
+        return GameClock.schedule(() -> System.out.print(dump()), millis, millis);
+    }
+
+    /**
+     * @return one line per histogram, with its name and summary
+     */
+    public static String dump() {
+        StringBuilder text = new StringBuilder();
+        for (Histogram histogram : ALL) {
+            text.append("metrics ").append(histogram.getName()).append(' ')
+                    .append(histogram.summarize()).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return the MBean (the same one every time)
+     */
+    public static Metrics get() {
+        return INSTANCE;
+    }
+
+    @Override
+    public Summary getCellsRevealedPerClick() {
+        return CELLS_REVEALED_PER_CLICK.summarize();
+    }
+
+    @Override
+    public Summary getCascadeCells() {
+        return CASCADE_CELLS.summarize();
+    }
+
+    @Override
+    public Summary getCascadeNanos() {
+        return CASCADE_NANOS.summarize();
+    }
+
+    @Override
+    public Summary getUndoCells() {
+        return UNDO_CELLS.summarize();
+    }
+
+    @Override
+    public Summary getUndoNanos() {
+        return UNDO_NANOS.summarize();
+    }
+
+    @Override
+    public Summary getAddBombsNanos() {
+        return ADD_BOMBS_NANOS.summarize();
+    }
+
+    @Override
+    public Summary getAddNumbersNanos() {
+        return ADD_NUMBERS_NANOS.summarize();
+    }
+
+    @Override
+    public Summary getImportNanos() {
+        return IMPORT_NANOS.summarize();
+    }
+
+    @Override
+    public Summary getImportBytes() {
+        return IMPORT_BYTES.summarize();
+    }
+
+    @Override
+    public Summary getExportNanos() {
+        return EXPORT_NANOS.summarize();
+    }
+
+    @Override
+    public Summary getExportBytes() {
+        return EXPORT_BYTES.summarize();
+    }
+
+    @Override
+    public void reset() {
+        for (Histogram histogram : ALL) {
+            histogram.reset();
+        }
+    }
+}
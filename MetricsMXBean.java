@@ -0,0 +1,71 @@
+package org.cis1200.minesweeper;
+
+/**
+ * The management interface of the Metrics, so they can be watched through JMX
+ * (e.g. in JConsole or VisualVM, under org.cis1200.minesweeper:type=Metrics).
+ * Every attribute is a Metrics.Summary of one histogram. Times are in
+ * nanoseconds.
+ */
+public interface MetricsMXBean {
+
+    /**
+     * @return the number of cells uncovered by each click (including the bombs
+     *         shown when the click loses)
+     */
+    Metrics.Summary getCellsRevealedPerClick();
+
+    /**
+     * @return the number of cells uncovered by each reveal cascade
+     */
+    Metrics.Summary getCascadeCells();
+
+    /**
+     * @return the time each reveal cascade took
+     */
+    Metrics.Summary getCascadeNanos();
+
+    /**
+     * @return the number of cells each undo flipped back
+     */
+    Metrics.Summary getUndoCells();
+
+    /**
+     * @return the time each undo took
+     */
+    Metrics.Summary getUndoNanos();
+
+    /**
+     * @return the time each board took to place its bombs (addBombs)
+     */
+    Metrics.Summary getAddBombsNanos();
+
+    /**
+     * @return the time each board took to count its numbers (addNumbers)
+     */
+    Metrics.Summary getAddNumbersNanos();
+
+    /**
+     * @return the time each imported game took to load
+     */
+    Metrics.Summary getImportNanos();
+
+    /**
+     * @return the size of each imported file
+     */
+    Metrics.Summary getImportBytes();
+
+    /**
+     * @return the time each exported game took to write
+     */
+    Metrics.Summary getExportNanos();
+
+    /**
+     * @return the size of each exported file
+     */
+    Metrics.Summary getExportBytes();
+
+    /**
+     * Sets every histogram back to empty.
+     */
+    void reset();
+}
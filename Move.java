@@ -8,17 +8,23 @@ package org.cis1200.minesweeper;
  * - 1 = Player flags a cell
  * - 2 = Player unflags a cell
  *
- *
- *
+ * Every move also remembers exactly which cells it changed (their indices, x *
+ * columns + y) and the state of the game (GameEngine.RUNNING, WON or LOST)
+ * before and after it. That way undo and redo only have to flip those cells back
+ * and forth instead of working out what the move must have done.
  */
 public class Move {
 
     private int xCoor;
     private int yCoor;
     private int moveType;
+    private int[] changedCells;
+    private int stateBefore;
+    private int stateAfter;
 
     /**
-     * Default constructor. Sets private fields accordingly
+     * Default constructor. Sets private fields accordingly. The move changed
+     * nothing but the given cell, and the game was (and still is) running.
      *
      * @param x    the x coordinate
      * @param y    the y coordinate
@@ -26,14 +32,32 @@ public class Move {
      * @throws IllegalArgumentException if any arguments are invalid
      */
     public Move(int x, int y, int type) {
+        this(x, y, type, new int[0], GameEngine.RUNNING, GameEngine.RUNNING);
+    }
+
+    /**
+     * Overloaded constructor. Creates a move along with everything it changed.
+     *
+     * @param x            the x coordinate
+     * @param y            the y coordinate
+     * @param type         the type of move recently done (refer to top for legend)
+     * @param changedCells the indices of the cells the move changed (not copied)
+     * @param stateBefore  the state of the game before the move
+     * @param stateAfter   the state of the game after the move
+     * @throws IllegalArgumentException if any arguments are invalid
+     */
+    public Move(int x, int y, int type, int[] changedCells, int stateBefore, int stateAfter) {
 
-        if (x < 0 || y < 0 || x > 15 || y > 15 || type < 0 || type > 2) {
+        if (x < 0 || y < 0 || type < 0 || type > 2 || changedCells == null) {
             throw new IllegalArgumentException();
         }
 
         xCoor = x;
         yCoor = y;
         moveType = type;
+        this.changedCells = changedCells;
+        this.stateBefore = stateBefore;
+        this.stateAfter = stateAfter;
     }
 
     /**
@@ -57,11 +81,34 @@ public class Move {
         return moveType;
     }
 
+    /**
+     * @return the indices of the cells the move changed (not a copy, so don't
+     *         change it)
+     */
+    public int[] getChangedCells() {
+        return changedCells;
+    }
+
+    /**
+     * @return the state of the game before the move
+     */
+    public int getStateBefore() {
+        return stateBefore;
+    }
+
+    /**
+     * @return the state of the game after the move
+     */
+    public int getStateAfter() {
+        return stateAfter;
+    }
+
     /**
      * @return String representation of the move
      */
     public String toString() {
-        return "Move Type: " + moveType + " on (" + xCoor + ", " + yCoor + ")";
+        return "Move Type: " + moveType + " on (" + xCoor + ", " + yCoor + ") changing "
+                + changedCells.length + " cells";
     }
 
 }
@@ -0,0 +1,470 @@
+package org.cis1200.minesweeper;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * This class is the history of a game: every move (see Move), in order, packed
+ * into one growable byte array instead of a list of objects. It also remembers
+ * the size of the board and the seed the bombs were placed with (if the game was
+ * made from one), so the whole game can be played again from the start (see
+ * GameReplay).
+ *
+ * Every move is written as varints (7 bits per byte, the high bit meaning "more
+ * bytes follow"):
+ * - the header: the index of the clicked cell (x * columns + y), shifted left by
+ * 6, then the type of move (2 bits), the state before (2 bits) and the state
+ * after (2 bits)
+ * - the number of cells the move changed
+ * - the changed cells in increasing order, each one as the gap from the one
+ * before it (so a cascade of neighboring cells takes about a byte per cell)
+ *
+ * Undone moves stay in the log until a new move is made, so they can be redone.
+ * size() is the number of moves that are currently done, and getTotal() also
+ * counts the undone ones after them.
+ */
+public final class MoveLog {
+
+    private static final int MAGIC = 0x4D53574D; // "MSWM"
+
+    private final int rows;
+    private final int columns;
+    private final int bombs;
+    private final long seed;
+    private final boolean seeded;
+
+    private byte[] data = new byte[64];
+    private int dataSize = 0;
+    // The offset of each move in data (one extra entry marks the end)
+    private int[] starts = new int[17];
+    private int total = 0;
+    private int position = 0;
+
+    /**
+     * Creates an empty log for a game that was made from a seed.
+     *
+     * @param rows    the number of rows of the board
+     * @param columns the number of columns of the board
+     * @param bombs   the number of bombs
+     * @param seed    the seed the bombs were placed with
+     * @throws IllegalArgumentException if a board of that size can't be made
+     */
+    public MoveLog(int rows, int columns, int bombs, long seed) {
+        this(rows, columns, bombs, seed, true);
+    }
+
+    /**
+     * Creates an empty log for a game that wasn't made from a seed (e.g. an
+     * imported one).
+     *
+     * @param rows    the number of rows of the board
+     * @param columns the number of columns of the board
+     * @param bombs   the number of bombs
+     * @throws IllegalArgumentException if a board of that size can't be made
+     */
+    public MoveLog(int rows, int columns, int bombs) {
+        this(rows, columns, bombs, 0, false);
+    }
+
+    private MoveLog(int rows, int columns, int bombs, long seed, boolean seeded) {
+        if (rows <= 0 || columns <= 0 || (long) rows * columns > Board.MAX_CELLS || bombs < 0
+                || bombs > rows * columns) {
+            throw new IllegalArgumentException();
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.bombs = bombs;
+        this.seed = seed;
+        this.seeded = seeded;
+    }
+
+    /**
+     * Adds a move after the moves that are currently done. Any undone moves are
+     * dropped, since they can't be redone anymore.
+     *
+     * @param move the move to add
+     * @throws IllegalArgumentException if the move doesn't fit the board, isn't
+     *                                  a click (0), flag (1) or unflag (2), or
+     *                                  changes a cell more than once
+     */
+    public void add(Move move) {
+        int cell = checkCell(move.getxCoor(), move.getyCoor());
+        int type = move.getMoveType();
+        if (type < 0 || type > 2) {
+            throw new IllegalArgumentException();
+        }
+        int stateBefore = checkState(move.getStateBefore());
+        int stateAfter = checkState(move.getStateAfter());
+        int[] changed = move.getChangedCells().clone();
+        Arrays.sort(changed);
+        if (changed.length > 0
+                && (changed[0] < 0 || changed[changed.length - 1] >= rows * columns)) {
+            throw new IllegalArgumentException();
+        }
+        // Checked before anything is written, so a bad move leaves the log as it was
+        for (int i = 1; i < changed.length; i++) {
+            if (changed[i] == changed[i - 1]) {
+                throw new IllegalArgumentException();
+            }
+        }
+
+        total = position;
+        dataSize = starts[position];
+        // At most 10 bytes for the header, 5 for the count and 5 per cell
+        ensureData(dataSize + 15 + 5L * changed.length);
+        putVarint((long) cell << 6 | type << 4 | stateBefore << 2 | stateAfter);
+        putVarint(changed.length);
+        int previous = -1;
+        for (int i = 0; i < changed.length; i++) {
+            putVarint(changed[i] - previous - 1);
+            previous = changed[i];
+        }
+
+        if (total + 2 > starts.length) {
+            starts = Arrays.copyOf(starts, starts.length * 2);
+        }
+        total++;
+        position = total;
+        starts[total] = dataSize;
+    }
+
+    /**
+     * Decodes one move of the log (done or undone).
+     *
+     * @param i the number of the move, starting at 0
+     * @return the move
+     * @throws IllegalArgumentException if there is no such move
+     */
+    public Move get(int i) {
+        if (i < 0 || i >= total) {
+            throw new IllegalArgumentException();
+        }
+        int[] at = { starts[i] };
+        long header = getVarint(data, at);
+        int[] changed = new int[(int) getVarint(data, at)];
+        int previous = -1;
+        for (int j = 0; j < changed.length; j++) {
+            previous += (int) getVarint(data, at) + 1;
+            changed[j] = previous;
+        }
+        int cell = (int) (header >>> 6);
+        return new Move(
+                cell / columns, cell % columns, (int) (header >> 4) & 3, changed,
+                (int) (header >> 2) & 3, (int) header & 3
+        );
+    }
+
+    /**
+     * Steps back over the most recent move (it stays in the log so it can be
+     * redone).
+     *
+     * @return false if no moves are done
+     */
+    public boolean undo() {
+        if (position == 0) {
+            return false;
+        }
+        position--;
+        return true;
+    }
+
+    /**
+     * Steps forward over the most recently undone move.
+     *
+     * @return false if there is no undone move
+     */
+    public boolean redo() {
+        if (position == total) {
+            return false;
+        }
+        position++;
+        return true;
+    }
+
+    /**
+     * @return the number of moves that are currently done
+     */
+    public int size() {
+        return position;
+    }
+
+    /**
+     * @return the number of moves in the log, including undone ones
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * @return the number of bytes the moves take up
+     */
+    public int getDataSize() {
+        return dataSize;
+    }
+
+    /**
+     * @return the number of rows of the board
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return the number of columns of the board
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return the number of bombs
+     */
+    public int getBombs() {
+        return bombs;
+    }
+
+    /**
+     * @return the seed the bombs were placed with (0 if isSeeded is false)
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return whether the game was made from a seed
+     */
+    public boolean isSeeded() {
+        return seeded;
+    }
+
+    /**
+     * @return the number of bytes write(...) will produce
+     */
+    public int encodedSize() {
+        return 4 + 4 + 4 + 4 + 1 + 8 + 4 + 4 + 4 + dataSize;
+    }
+
+    /**
+     * Writes the log into the buffer (starting at its position). The layout is
+     * the int MAGIC, the ints rows, columns and bombs, a byte that is 1 if the
+     * game is seeded, the long seed, the ints total, size and number of bytes of
+     * moves, and then the moves themselves.
+     *
+     * @param buffer the buffer to write into
+     * @throws java.nio.BufferOverflowException if there isn't encodedSize() bytes
+     *                                          of room left
+     */
+    public void write(ByteBuffer buffer) {
+        buffer.putInt(MAGIC).putInt(rows).putInt(columns).putInt(bombs);
+        buffer.put((byte) (seeded ? 1 : 0)).putLong(seed);
+        buffer.putInt(total).putInt(position).putInt(dataSize);
+        buffer.put(data, 0, dataSize);
+    }
+
+    /**
+     * Writes the log to the stream (same layout as write(ByteBuffer)).
+     *
+     * @param out the stream to write to
+     * @throws IOException if the stream can't be written to
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream stream = new DataOutputStream(out);
+        stream.writeInt(MAGIC);
+        stream.writeInt(rows);
+        stream.writeInt(columns);
+        stream.writeInt(bombs);
+        stream.writeByte(seeded ? 1 : 0);
+        stream.writeLong(seed);
+        stream.writeInt(total);
+        stream.writeInt(position);
+        stream.writeInt(dataSize);
+        stream.write(data, 0, dataSize);
+    }
+
+    /**
+     * Reads a log from the buffer (starting at its position).
+     *
+     * @param buffer the buffer to read from
+     * @return the log
+     * @throws IllegalArgumentException if the buffer doesn't hold a valid log
+     */
+    public static MoveLog read(ByteBuffer buffer) {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException();
+            }
+            MoveLog log = newLog(
+                    buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.get(),
+                    buffer.getLong()
+            );
+            int total = buffer.getInt();
+            int position = buffer.getInt();
+            int size = buffer.getInt();
+            if (size < 0 || size > buffer.remaining()) {
+                throw new IllegalArgumentException();
+            }
+            log.data = new byte[Math.max(64, size)];
+            buffer.get(log.data, 0, size);
+            log.index(total, position, size);
+            return log;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Reads a log from the stream.
+     *
+     * @param in the stream to read from
+     * @return the log
+     * @throws IOException              if the stream can't be read (or ends early)
+     * @throws IllegalArgumentException if the stream doesn't hold a valid log
+     */
+    public static MoveLog read(InputStream in) throws IOException {
+        DataInputStream stream = new DataInputStream(in);
+        if (stream.readInt() != MAGIC) {
+            throw new IllegalArgumentException();
+        }
+        MoveLog log = newLog(
+                stream.readInt(), stream.readInt(), stream.readInt(), stream.readByte(),
+                stream.readLong()
+        );
+        int total = stream.readInt();
+        int position = stream.readInt();
+        int size = stream.readInt();
+        if (size < 0) {
+            throw new IllegalArgumentException();
+        }
+        // Grown as it is read, so a bad size can't allocate a huge array up front
+        byte[] bytes = new byte[Math.min(size, 1 << 16)];
+        int read = 0;
+        while (read < size) {
+            if (read == bytes.length) {
+                bytes = Arrays.copyOf(bytes, (int) Math.min(size, bytes.length * 2L));
+            }
+            int length = bytes.length - read;
+            stream.readFully(bytes, read, length);
+            read += length;
+        }
+        log.data = bytes.length < 64 ? Arrays.copyOf(bytes, 64) : bytes;
+        log.index(total, position, size);
+        return log;
+    }
+
+    private static MoveLog newLog(int rows, int columns, int bombs, byte seeded, long seed) {
+        if (seeded != 0 && seeded != 1) {
+            throw new IllegalArgumentException();
+        }
+        return new MoveLog(rows, columns, bombs, seed, seeded == 1);
+    }
+
+    /**
+     * Finds the start of every move in data (after it was read), checking that
+     * every move is valid.
+     */
+    private void index(int moves, int done, int size) {
+        if (moves < 0 || done < 0 || done > moves) {
+            throw new IllegalArgumentException();
+        }
+        starts = new int[Math.max(17, moves + 1)];
+        int[] at = { 0 };
+        for (int i = 0; i < moves; i++) {
+            starts[i] = at[0];
+            long header = getVarint(data, at, size);
+            if ((header >>> 6) >= (long) rows * columns || ((header >> 4) & 3) == 3
+                    || ((header >> 2) & 3) == 3 || (header & 3) == 3) {
+                throw new IllegalArgumentException();
+            }
+            long count = getVarint(data, at, size);
+            long cell = -1;
+            for (long j = 0; j < count; j++) {
+                long gap = getVarint(data, at, size);
+                if (gap >= (long) rows * columns || cell + gap + 1 >= (long) rows * columns) {
+                    throw new IllegalArgumentException();
+                }
+                cell += gap + 1;
+            }
+        }
+        if (at[0] != size) {
+            throw new IllegalArgumentException();
+        }
+        starts[moves] = size;
+        total = moves;
+        position = done;
+        dataSize = size;
+    }
+
+    private int checkCell(int x, int y) {
+        if (x < 0 || y < 0 || x >= rows || y >= columns) {
+            throw new IllegalArgumentException();
+        }
+        return x * columns + y;
+    }
+
+    private static int checkState(int state) {
+        if (state < GameEngine.RUNNING || state > GameEngine.LOST) {
+            throw new IllegalArgumentException();
+        }
+        return state;
+    }
+
+    private void ensureData(long size) {
+        if (size > data.length) {
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException();
+            }
+            data = Arrays.copyOf(data, (int) Math.min(Integer.MAX_VALUE - 8,
+                    Math.max(size, data.length * 2L)));
+        }
+    }
+
+    private void putVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            data[dataSize++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[dataSize++] = (byte) value;
+    }
+
+    /**
+     * Reads a varint that was already checked by index.
+     *
+     * @param bytes the bytes to read from
+     * @param at    a one-element array holding the offset, moved past the varint
+     */
+    private static long getVarint(byte[] bytes, int[] at) {
+        long value = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = bytes[at[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Reads a varint that hasn't been checked yet, making sure it ends before the
+     * given size and fits in 63 bits.
+     */
+    private static long getVarint(byte[] bytes, int[] at, int size) {
+        long value = 0;
+        for (int shift = 0; shift < 63; shift += 7) {
+            if (at[0] >= size) {
+                throw new IllegalArgumentException();
+            }
+            byte b = bytes[at[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException();
+    }
+}
@@ -0,0 +1,33 @@
+package org.cis1200.minesweeper;
+
+import java.util.SplittableRandom;
+
+/**
+ * A way of playing the game without a player, used by the Simulation to try out
+ * hint logic on millions of games. Every turn the strategy is shown the board
+ * and picks the next cell to uncover.
+ *
+ * A strategy may only look at what the player can see (which cells are visible
+ * or flagged, and the numbers of the visible cells); asking the Board about a
+ * hidden cell would be cheating. A strategy may keep state between turns (e.g. a
+ * Solver), so every thread needs its own instance, and reset is called before
+ * every new game.
+ */
+public interface MoveStrategy {
+
+    /**
+     * Called before the first move of every game.
+     *
+     * @param board the board of the new game
+     */
+    void reset(Board board);
+
+    /**
+     * Picks the next cell to uncover.
+     *
+     * @param board  the board (only its visible cells may be looked at)
+     * @param random the random stream of the thread playing the game
+     * @return the index (x * columns + y) of a hidden, unflagged cell
+     */
+    int chooseCell(Board board, SplittableRandom random);
+}
@@ -0,0 +1,187 @@
+package org.cis1200.minesweeper;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class fills in the numbers of a whole board (how many bombs surround each
+ * cell) in one sweep, instead of doing a separate 3x3 scan for every cell.
+ *
+ * It works on the bomb bitplane of the board (see BitPlanes), 64 cells at a
+ * time. For a word of a row, the eight neighbors of each cell are the words of
+ * the row above, the row itself and the row below, shifted one column left or
+ * right. Those eight planes are added up bit by bit with full adders (like the
+ * adder circuits of a CPU), which gives the count of every one of the 64 cells
+ * at once as four planes: the 1s, 2s, 4s and 8s bit of the counts. Only then
+ * is each count written into its cell.
+ *
+ * Big boards are split into stripes of rows that are counted in parallel on the
+ * common ForkJoin pool. Each stripe only writes the numbers of its own rows and
+ * only reads the bomb plane (which never changes while counting), so the
+ * stripes never get in each other's way.
+ */
+class NeighborCounter extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    // Stripes with fewer cells than this are counted on the current thread
+    static final int STRIPE_CELLS = 1 << 16;
+
+    private final byte[] cells;
+    private final long[] bombs;
+    private final int rows;
+    private final int columns;
+    private final int fromRow;
+    private final int toRow;
+
+    /**
+     * Creates the task that counts rows fromRow (inclusive) to toRow (exclusive).
+     *
+     * @param cells   the packed cells of the board
+     * @param bombs   the bomb plane of the board
+     * @param rows    the number of rows of the board
+     * @param columns the number of columns of the board
+     * @param fromRow the first row to count
+     * @param toRow   the row after the last row to count
+     */
+    NeighborCounter(byte[] cells, long[] bombs, int rows, int columns, int fromRow,
+            int toRow) {
+        this.cells = cells;
+        this.bombs = bombs;
+        this.rows = rows;
+        this.columns = columns;
+        this.fromRow = fromRow;
+        this.toRow = toRow;
+    }
+
+    /**
+     * Fills in the numbers of every non-bomb cell of the board. Small boards are
+     * counted on the current thread, big ones in parallel.
+     *
+     * @param board the board whose bombs have already been placed
+     */
+    static void countAll(Board board) {
+        NeighborCounter task = new NeighborCounter(
+                board.getCells(), board.getBombPlane(), board.getRows(), board.getColumns(), 0,
+                board.getRows()
+        );
+        if (board.getCells().length <= STRIPE_CELLS) {
+            task.countRows();
+        } else {
+            ForkJoinPool.commonPool().invoke(task);
+        }
+    }
+
+    /**
+     * Splits the rows in half until each stripe is small enough, then counts it.
+     */
+    @Override
+    protected void compute() {
+        if (toRow - fromRow < 2 || (long) (toRow - fromRow) * columns <= STRIPE_CELLS) {
+            countRows();
+        } else {
+            int middle = (fromRow + toRow) >>> 1;
+            invokeAll(
+                    new NeighborCounter(cells, bombs, rows, columns, fromRow, middle),
+                    new NeighborCounter(cells, bombs, rows, columns, middle, toRow)
+            );
+        }
+    }
+
+    /**
+     * Counts the rows of this stripe, keeping the bomb words of the row above,
+     * the current row, and the row below.
+     */
+    void countRows() {
+        int words = (columns + 63) >>> 6;
+        long[] above = new long[words];
+        long[] current = new long[words];
+        long[] below = new long[words];
+        if (fromRow > 0) {
+            BitPlanes.copyRow(bombs, fromRow - 1, columns, above);
+        }
+        BitPlanes.copyRow(bombs, fromRow, columns, current);
+
+        for (int i = fromRow; i < toRow; i++) {
+            if (i + 1 < rows) {
+                BitPlanes.copyRow(bombs, i + 1, columns, below);
+            } else {
+                Arrays.fill(below, 0);
+            }
+            for (int w = 0; w < words; w++) {
+                countWord(above, current, below, w, i * columns + (w << 6));
+            }
+
+            // The rows move down by one; the old "above" array is reused
+            long[] reuse = above;
+            above = current;
+            current = below;
+            below = reuse;
+        }
+    }
+
+    /**
+     * Adds up the eight neighbors of the 64 cells of word w of the current row,
+     * and writes the counts into the cells that aren't bombs.
+     *
+     * @param start the index of the cell in bit 0 of the word
+     */
+    private void countWord(long[] above, long[] current, long[] below, int w, int start) {
+        long up = above[w];
+        long upLeft = left(above, w);
+        long upRight = right(above, w);
+        long sideLeft = left(current, w);
+        long sideRight = right(current, w);
+        long down = below[w];
+        long downLeft = left(below, w);
+        long downRight = right(below, w);
+
+        // The three cells above and the three below, each with a full adder
+        long upOnes = upLeft ^ up ^ upRight;
+        long upTwos = (upLeft & up) | (upRight & (upLeft ^ up));
+        long downOnes = downLeft ^ down ^ downRight;
+        long downTwos = (downLeft & down) | (downRight & (downLeft ^ down));
+        long sideOnes = sideLeft ^ sideRight;
+        long sideTwos = sideLeft & sideRight;
+
+        // Then the 1s of all three, carrying into the 2s
+        long ones = upOnes ^ downOnes ^ sideOnes;
+        long carry = (upOnes & downOnes) | (sideOnes & (upOnes ^ downOnes));
+        // The four 2s, carrying twice into the 4s
+        long twosSum = upTwos ^ downTwos ^ sideTwos;
+        long foursA = (upTwos & downTwos) | (sideTwos & (upTwos ^ downTwos));
+        long twos = twosSum ^ carry;
+        long foursB = twosSum & carry;
+        // At most 8, so the 4s carry into the 8s at most once
+        long fours = foursA ^ foursB;
+        long eights = foursA & foursB;
+
+        long notBombs = ~current[w];
+        int end = Math.min(64, columns - (w << 6));
+        for (int b = 0; b < end; b++) {
+            if ((notBombs >>> b & 1) != 0) {
+                int value = (int) ((ones >>> b & 1) | (twos >>> b & 1) << 1
+                        | (fours >>> b & 1) << 2 | (eights >>> b & 1) << 3);
+                int cell = start + b;
+                cells[cell] = (byte) ((cells[cell] & ~Board.VALUE_MASK) | value);
+            }
+        }
+    }
+
+    /**
+     * @return word w of the row shifted so that bit j holds column j - 1 (the
+     *         left neighbor)
+     */
+    private static long left(long[] row, int w) {
+        return row[w] << 1 | (w > 0 ? row[w - 1] >>> 63 : 0);
+    }
+
+    /**
+     * @return word w of the row shifted so that bit j holds column j + 1 (the
+     *         right neighbor)
+     */
+    private static long right(long[] row, int w) {
+        return row[w] >>> 1 | (w + 1 < row.length ? row[w + 1] << 63 : 0);
+    }
+}
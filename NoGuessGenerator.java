@@ -0,0 +1,192 @@
+package org.cis1200.minesweeper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This class makes boards that never need a guess: starting from a given first
+ * click, the Solver alone can uncover every safe cell. The first click is always
+ * a 0 (no bombs are placed on it or around it), and a board only counts if the
+ * Solver, uncovering every cell it proves safe, round after round, gets through
+ * the whole board.
+ *
+ * Most random boards need a guess somewhere, so many candidates have to be
+ * tried. Every worker thread (one per core by default) makes and checks its own
+ * candidates, each from its own random stream (split from the seed), and the
+ * first worker to find a board wins; the others are cancelled. If no board is
+ * found within the time budget, generate gives up and returns null.
+ *
+ * The board that is returned can be made again from its seed (Board.getSeed)
+ * and the first click with the Board(rows, columns, bombs, seed, safeX, safeY)
+ * constructor.
+ */
+public class NoGuessGenerator implements AutoCloseable {
+
+    private final ExecutorService workers;
+    private final int threads;
+
+    /**
+     * Default constructor. Uses one worker per core.
+     */
+    public NoGuessGenerator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Overloaded constructor. Uses the given number of workers.
+     *
+     * @param threads the number of worker threads
+     * @throws IllegalArgumentException if threads is not positive
+     */
+    public NoGuessGenerator(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.threads = threads;
+        workers = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "no-guess-generator");
+            // Never keeps the program running on its own
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Makes a random board that can be solved without guessing from the given
+     * first click.
+     *
+     * @param rows         the number of rows
+     * @param columns      the number of columns
+     * @param bombs        the number of bombs
+     * @param x            the x coordinate of the first click
+     * @param y            the y coordinate of the first click
+     * @param budgetMillis how long to look for a board (in milliseconds)
+     * @return the board, or null if none was found in time
+     * @throws IllegalArgumentException if such a board can't be made
+     */
+    public Board generate(int rows, int columns, int bombs, int x, int y, long budgetMillis) {
+        return generate(rows, columns, bombs, x, y, new SplittableRandom().nextLong(),
+                budgetMillis);
+    }
+
+    /**
+     * Makes a board that can be solved without guessing from the given first
+     * click, with the workers' random streams split from the given seed. Which
+     * worker finds a board first depends on timing, so the same seed doesn't
+     * always give the same board.
+     *
+     * @param rows         the number of rows
+     * @param columns      the number of columns
+     * @param bombs        the number of bombs
+     * @param x            the x coordinate of the first click
+     * @param y            the y coordinate of the first click
+     * @param seed         the seed the workers' random streams are split from
+     * @param budgetMillis how long to look for a board (in milliseconds)
+     * @return the board, or null if none was found in time
+     * @throws IllegalArgumentException if such a board can't be made
+     */
+    public Board generate(int rows, int columns, int bombs, int x, int y, long seed,
+            long budgetMillis) {
+        if (budgetMillis < 0) {
+            throw new IllegalArgumentException();
+        }
+        // Fails fast (with an IllegalArgumentException) instead of in every worker
+        new Board(rows, columns, bombs, seed, x, y);
+
+        AtomicBoolean found = new AtomicBoolean(false);
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Callable<Board>> tasks = new ArrayList<Callable<Board>>();
+        for (int i = 0; i < threads; i++) {
+            SplittableRandom stream = random.split();
+            tasks.add(() -> {
+                Solver solver = new Solver();
+                RevealCascade cascade = new RevealCascade();
+                while (!found.get()) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new CancellationException();
+                    }
+                    Board candidate = new Board(rows, columns, bombs, stream.nextLong(), x, y);
+                    if (solvable(candidate, x, y, solver, cascade)) {
+                        found.set(true);
+                        return candidate;
+                    }
+                }
+                throw new CancellationException();
+            });
+        }
+
+        try {
+            return workers.invokeAny(tasks, budgetMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            // Stops any worker that hasn't noticed the cancellation yet
+            found.set(true);
+        }
+    }
+
+    /**
+     * Checks whether the board can be solved without guessing from the given
+     * first click. The board itself is not changed.
+     *
+     * @param board the board to check
+     * @param x     the x coordinate of the first click
+     * @param y     the y coordinate of the first click
+     * @return whether the Solver alone can uncover every safe cell
+     * @throws IllegalArgumentException if the coordinates are out of bounds
+     */
+    public static boolean isNoGuess(Board board, int x, int y) {
+        return solvable(board, x, y, new Solver(), new RevealCascade());
+    }
+
+    /**
+     * Stops the workers.
+     */
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Plays the board on a copy: uncovers the first click, then every cell the
+     * Solver proves safe, until the board is done or the Solver is stuck.
+     */
+    private static boolean solvable(Board board, int x, int y, Solver solver,
+            RevealCascade cascade) {
+        if (board.isBomb(x, y)) {
+            return false;
+        }
+        byte[] cells = board.getCells().clone();
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] &= Board.VALUE_MASK;
+        }
+        Board copy = new Board(board.getRows(), board.getColumns(), cells);
+        int columns = copy.getColumns();
+
+        int hidden = cells.length - copy.getTotalBombs() - cascade.reveal(copy, x, y);
+        while (hidden > 0) {
+            solver.solve(copy);
+            if (solver.getSafeCount() == 0) {
+                return false;
+            }
+            for (int cell : solver.getSafeCells()) {
+                if ((cells[cell] & Board.VISIBLE) == 0) {
+                    hidden -= cascade.reveal(copy, cell / columns, cell % columns);
+                }
+            }
+        }
+        return true;
+    }
+}
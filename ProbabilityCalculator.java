@@ -0,0 +1,849 @@
+package org.cis1200.minesweeper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class works out the exact probability that each hidden cell is a bomb,
+ * for when the Solver can't find a certainly safe cell. Like the Solver it only
+ * uses what the player can see (the visible numbers, which cells are hidden, and
+ * the total number of bombs), and flags are not trusted.
+ *
+ * It first runs the Solver, then looks at the "frontier": the hidden cells next
+ * to a visible number that the Solver couldn't decide. Frontier cells that share
+ * a number depend on each other, so the frontier is split into independent
+ * components (with a union-find). For every component, the number of ways to
+ * place its bombs is counted separately for every number of bombs k it could
+ * hold, along with how many of those ways put a bomb on each of its cells.
+ *
+ * The counting goes through the component's cells one at a time (in the order
+ * a breadth-first walk finds them) and memoizes on the state in between: the
+ * bombs still needed by every number that has some cells on both sides. Every
+ * distinct state is only carried forward (and backward, for the per-cell counts)
+ * once, however many ways lead to it. The components are counted in parallel on
+ * the common ForkJoin pool, since on big boards they are many and the work is
+ * CPU-bound.
+ *
+ * Finally the components are combined: a choice of k bombs for every component
+ * is weighted by the number of ways to place the rest of the bombs on the hidden
+ * cells that aren't next to any number (a binomial coefficient). All of the
+ * counts are kept as logarithms, so big boards don't overflow a double.
+ */
+public class ProbabilityCalculator {
+
+    // Components are only counted in parallel if the frontier has this many cells
+    static final int PARALLEL_CELLS = 64;
+
+    // log(n!) for n < 256, summed exactly
+    private static final double[] SMALL_LOG_FACTORIALS = new double[256];
+
+    static {
+        for (int n = 2; n < SMALL_LOG_FACTORIALS.length; n++) {
+            SMALL_LOG_FACTORIALS[n] = SMALL_LOG_FACTORIALS[n - 1] + Math.log(n);
+        }
+    }
+
+    private final Solver solver = new Solver();
+
+    private int rows;
+    private int columns;
+    private double[] probabilities = new double[0];
+    private int components;
+    private int frontier;
+
+    /**
+     * Works out the probability that each cell of the board is a bomb. The
+     * results replace those of the last call.
+     *
+     * @param board the board to look at
+     * @throws IllegalArgumentException if what is visible on the board can't
+     *                                  happen (no placement of bombs fits it)
+     */
+    public void calculate(Board board) {
+        solver.solve(board);
+        rows = board.getRows();
+        columns = board.getColumns();
+        int cells = rows * columns;
+        byte[] numbers = solver.getNumbers();
+        byte[] known = solver.getKnownCells();
+        if (probabilities.length != cells) {
+            probabilities = new double[cells];
+        }
+
+        // Splits the frontier into components, joining the cells around each number
+        int[] parent = new int[cells];
+        Arrays.fill(parent, -1);
+        int bombsLeft = board.getTotalBombs();
+        for (int cell = 0; cell < cells; cell++) {
+            if (known[cell] == Solver.BOMB || numbers[cell] == 9) {
+                bombsLeft--;
+            }
+            if (numbers[cell] < 0 || numbers[cell] > 8) {
+                continue;
+            }
+            int first = -1;
+            int x = cell / columns;
+            int y = cell % columns;
+            for (int i = Math.max(0, x - 1); i <= Math.min(rows - 1, x + 1); i++) {
+                for (int j = Math.max(0, y - 1); j <= Math.min(columns - 1, y + 1); j++) {
+                    int neighbor = i * columns + j;
+                    if (numbers[neighbor] < 0 && known[neighbor] == Solver.UNKNOWN) {
+                        if (parent[neighbor] < 0) {
+                            parent[neighbor] = neighbor;
+                        }
+                        if (first < 0) {
+                            first = neighbor;
+                        } else {
+                            union(parent, first, neighbor);
+                        }
+                    }
+                }
+            }
+        }
+
+        HashMap<Integer, ArrayList<Integer>> groups = new HashMap<Integer, ArrayList<Integer>>();
+        int interior = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            if (numbers[cell] >= 0 || known[cell] != Solver.UNKNOWN) {
+                probabilities[cell] = numbers[cell] == 9 || known[cell] == Solver.BOMB ? 1 : 0;
+            } else if (parent[cell] < 0) {
+                interior++;
+            } else {
+                groups.computeIfAbsent(find(parent, cell), k -> new ArrayList<Integer>())
+                        .add(cell);
+            }
+        }
+
+        ComponentTask[] tasks = new ComponentTask[groups.size()];
+        int next = 0;
+        frontier = 0;
+        int[] order = new int[cells];
+        Arrays.fill(order, -1);
+        for (ArrayList<Integer> group : groups.values()) {
+            int[] members = new int[group.size()];
+            for (int i = 0; i < members.length; i++) {
+                members[i] = group.get(i);
+            }
+            frontier += members.length;
+            tasks[next++] = new ComponentTask(numbers, known, rows, columns, order, members);
+        }
+        components = tasks.length;
+        if (tasks.length > 1 && frontier >= PARALLEL_CELLS) {
+            ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute() {
+                    ForkJoinTask.invokeAll(tasks);
+                }
+            });
+        } else {
+            for (ComponentTask task : tasks) {
+                task.compute();
+            }
+        }
+
+        double interiorProbability = combine(tasks, interior, bombsLeft);
+        for (int cell = 0; cell < cells; cell++) {
+            if (numbers[cell] < 0 && known[cell] == Solver.UNKNOWN && parent[cell] < 0) {
+                probabilities[cell] = interiorProbability;
+            }
+        }
+    }
+
+    /**
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the probability (0 to 1) that the cell is a bomb, as of the last
+     *         calculate; visible cells are 0 (or 1 for bombs uncovered by losing)
+     * @throws IllegalArgumentException if the coordinates are out of bounds
+     */
+    public double getProbability(int x, int y) {
+        if (x < 0 || x >= rows || y < 0 || y >= columns) {
+            throw new IllegalArgumentException();
+        }
+        return probabilities[x * columns + y];
+    }
+
+    /**
+     * @return the probabilities of every cell (index x * columns + y)
+     */
+    public double[] getProbabilities() {
+        return probabilities.clone();
+    }
+
+    /**
+     * @return the hidden cell (x * columns + y) least likely to be a bomb, or -1 if
+     *         there are no hidden cells that aren't known to be bombs
+     */
+    public int getSafestCell() {
+        byte[] numbers = solver.getNumbers();
+        int best = -1;
+        for (int cell = 0; cell < probabilities.length; cell++) {
+            if (numbers[cell] < 0 && probabilities[cell] < 1
+                    && (best < 0 || probabilities[cell] < probabilities[best])) {
+                best = cell;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return the number of independent components of the frontier
+     */
+    public int getComponents() {
+        return components;
+    }
+
+    /**
+     * @return the number of undecided hidden cells next to a visible number
+     */
+    public int getFrontier() {
+        return frontier;
+    }
+
+    /**
+     * Weighs every component's counts by the ways the other components and the
+     * interior cells can hold the rest of the bombs, and turns the counts into
+     * probabilities.
+     *
+     * @param tasks     the counted components
+     * @param interior  the number of undecided hidden cells not next to a number
+     * @param bombsLeft the number of bombs not known yet
+     * @return the probability of each interior cell
+     */
+    private double combine(ComponentTask[] tasks, int interior, int bombsLeft) {
+        // rest[s] = the ways to place the other bombs on the interior cells if the
+        // frontier holds s bombs
+        double[] rest = new double[frontier + 1];
+        for (int s = 0; s < rest.length; s++) {
+            rest[s] = logChoose(interior, bombsLeft - s);
+        }
+
+        // Multiplying every count of k bombs by e^(slope * k) and dividing rest by
+        // the same amount changes nothing, but keeps the counts that matter close
+        // to the biggest ones, so nothing important underflows below
+        int around = (int) Math.min(frontier - 1,
+                (long) Math.max(0, bombsLeft) * frontier / Math.max(1, frontier + interior));
+        double slope = around < 0 ? 0 : rest[around + 1] - rest[around];
+        if (Double.isInfinite(slope) || Double.isNaN(slope)) {
+            slope = 0;
+        }
+        for (int s = 0; s < rest.length; s++) {
+            rest[s] -= slope * s;
+        }
+        for (ComponentTask task : tasks) {
+            tilt(task.logTotal, slope);
+            for (double[] logs : task.logBombs) {
+                tilt(logs, slope);
+            }
+        }
+
+        Counts[] others = new Counts[tasks.length];
+        Counts all = allBut(tasks, 0, tasks.length, Counts.ONE, others);
+
+        double logTotal = Double.NEGATIVE_INFINITY;
+        double logInteriorBombs = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < all.logs.length; i++) {
+            int k = all.first + i;
+            double log = all.logs[i] + rest[k];
+            logTotal = logAdd(logTotal, log);
+            if (interior > 0 && bombsLeft - k > 0) {
+                logInteriorBombs = logAdd(logInteriorBombs, log + Math.log(bombsLeft - k));
+            }
+        }
+        if (logTotal == Double.NEGATIVE_INFINITY) {
+            throw new IllegalArgumentException();
+        }
+        double interiorProbability = interior == 0 ? 0
+                : Math.exp(logInteriorBombs - logTotal) / interior;
+
+        double restMax = max(rest);
+        double[] restWays = toWays(rest, restMax);
+        for (int t = 0; t < tasks.length; t++) {
+            ComponentTask task = tasks[t];
+            // weights[k] = ways for everything else if this component holds k bombs
+            double othersMax = max(others[t].logs);
+            double[] otherWays = toWays(others[t].logs, othersMax);
+            double[] weights = new double[task.logTotal.length];
+            for (int k = 0; k < weights.length; k++) {
+                double sum = 0;
+                int offset = k + others[t].first;
+                for (int j = 0; j < otherWays.length; j++) {
+                    sum += otherWays[j] * restWays[offset + j];
+                }
+                weights[k] = Math.log(sum) + othersMax + restMax;
+            }
+            for (int i = 0; i < task.cells.length; i++) {
+                double log = Double.NEGATIVE_INFINITY;
+                for (int k = 0; k < weights.length; k++) {
+                    log = logAdd(log, task.logBombs[i][k] + weights[k]);
+                }
+                probabilities[task.cells[i]] = Math.min(1, Math.exp(log - logTotal));
+            }
+        }
+
+        return interiorProbability;
+    }
+
+    private static void tilt(double[] logs, double slope) {
+        for (int k = 0; k < logs.length; k++) {
+            logs[k] += slope * k;
+        }
+    }
+
+    private static double max(double[] logs) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (double log : logs) {
+            max = Math.max(max, log);
+        }
+        return max == Double.NEGATIVE_INFINITY ? 0 : max;
+    }
+
+    /**
+     * @return exp(logs - max), the counts divided by e^max (tiny ones become 0)
+     */
+    private static double[] toWays(double[] logs, double max) {
+        double[] ways = new double[logs.length];
+        for (int k = 0; k < logs.length; k++) {
+            // e^-745 is the smallest double, so anything below that is just 0
+            ways[k] = logs[k] - max < -745 ? 0 : Math.exp(logs[k] - max);
+        }
+        return ways;
+    }
+
+    /**
+     * Combines the counts of the components from..to (as the distribution of the
+     * total number of bombs in them), and fills in, for each of them, the
+     * combined counts of all the other components. Splitting in halves means
+     * each component only takes part in a logarithmic number of combinations.
+     *
+     * @param tasks   the counted components
+     * @param from    the first component
+     * @param to      the component after the last one
+     * @param outside the combined counts of the components outside from..to
+     * @param others  where the counts of all other components are written
+     * @return the combined counts of the components from..to
+     */
+    private static Counts allBut(ComponentTask[] tasks, int from, int to, Counts outside,
+            Counts[] others) {
+        if (to - from == 0) {
+            return Counts.ONE;
+        }
+        if (to - from == 1) {
+            others[from] = outside;
+            return Counts.of(0, tasks[from].logTotal);
+        }
+        int middle = (from + to) >>> 1;
+        Counts left = product(tasks, from, middle);
+        Counts right = product(tasks, middle, to);
+        allBut(tasks, from, middle, outside.convolve(right), others);
+        allBut(tasks, middle, to, outside.convolve(left), others);
+        return left.convolve(right);
+    }
+
+    private static Counts product(ComponentTask[] tasks, int from, int to) {
+        if (to - from == 1) {
+            return Counts.of(0, tasks[from].logTotal);
+        }
+        int middle = (from + to) >>> 1;
+        return product(tasks, from, middle).convolve(product(tasks, middle, to));
+    }
+
+    /**
+     * @return log(exp(a) + exp(b)), without overflowing
+     */
+    static double logAdd(double a, double b) {
+        if (a == Double.NEGATIVE_INFINITY) {
+            return b;
+        }
+        if (b == Double.NEGATIVE_INFINITY) {
+            return a;
+        }
+        return Math.max(a, b) + Math.log1p(Math.exp(-Math.abs(a - b)));
+    }
+
+    /**
+     * @return the log of the binomial coefficient n choose k (negative infinity if
+     *         it is 0)
+     */
+    static double logChoose(int n, int k) {
+        if (k < 0 || k > n) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        return logFactorial(n) - logFactorial(k) - logFactorial(n - k);
+    }
+
+    /**
+     * @return log(n!), summed exactly for small n and from Stirling's series for
+     *         big n
+     */
+    static double logFactorial(int n) {
+        if (n < SMALL_LOG_FACTORIALS.length) {
+            return SMALL_LOG_FACTORIALS[n];
+        }
+        double x = n;
+        return x * Math.log(x) - x + 0.5 * Math.log(2 * Math.PI * x) + 1 / (12 * x)
+                - 1 / (360 * x * x * x);
+    }
+
+    private static int find(int[] parent, int cell) {
+        while (parent[cell] != cell) {
+            parent[cell] = parent[parent[cell]];
+            cell = parent[cell];
+        }
+        return cell;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) {
+            parent[rootB] = rootA;
+        }
+    }
+
+    /**
+     * The (log) counts of the ways to hold k bombs, for k = first, first + 1, and
+     * so on. Counts too small to matter (and the zeros) at either end are cut off,
+     * since combining many components gives a long array that is almost all
+     * zeros.
+     */
+    private static final class Counts {
+        static final Counts ONE = new Counts(0, new double[] { 0 });
+
+        private final int first;
+        private final double[] logs;
+
+        private Counts(int first, double[] logs) {
+            this.first = first;
+            this.logs = logs;
+        }
+
+        /**
+         * @return the counts of logs[k] (starting at k = first), cut down to the
+         *         part that matters
+         */
+        static Counts of(int first, double[] logs) {
+            double max = max(logs);
+            int from = 0;
+            int to = logs.length;
+            while (from < to && !(logs[from] - max >= -745)) {
+                from++;
+            }
+            while (to > from && !(logs[to - 1] - max >= -745)) {
+                to--;
+            }
+            if (from == to) {
+                return new Counts(first, new double[] { Double.NEGATIVE_INFINITY });
+            }
+            return new Counts(first + from, Arrays.copyOfRange(logs, from, to));
+        }
+
+        /**
+         * @return the counts of the total bombs of two independent components
+         */
+        Counts convolve(Counts other) {
+            double maxA = max(logs);
+            double maxB = max(other.logs);
+            double[] waysA = toWays(logs, maxA);
+            double[] waysB = toWays(other.logs, maxB);
+            double[] sum = new double[waysA.length + waysB.length - 1];
+            for (int i = 0; i < waysA.length; i++) {
+                if (waysA[i] != 0) {
+                    for (int j = 0; j < waysB.length; j++) {
+                        sum[i + j] += waysA[i] * waysB[j];
+                    }
+                }
+            }
+            for (int k = 0; k < sum.length; k++) {
+                sum[k] = Math.log(sum[k]) + maxA + maxB;
+            }
+            return of(first + other.first, sum);
+        }
+    }
+
+    /**
+     * The bombs still needed by the numbers that are "open" between two cells of
+     * the walk (they have cells on both sides). Two ways of placing bombs on the
+     * first cells that lead to the same state can be finished in exactly the
+     * same ways, so they are only carried on once.
+     */
+    private static final class Needs {
+        private final byte[] needs;
+        private final int hash;
+
+        Needs(byte[] needs) {
+            this.needs = needs;
+            hash = Arrays.hashCode(needs);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Needs && Arrays.equals(needs, ((Needs) o).needs);
+        }
+    }
+
+    /**
+     * Counts the ways to place bombs on one component of the frontier, for every
+     * number of bombs it could hold, and the ways that put a bomb on each of its
+     * cells.
+     */
+    private static final class ComponentTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] numbers;
+        private final byte[] known;
+        private final int rows;
+        private final int columns;
+        // The position of every frontier cell in its component's walk (shared by
+        // all components, which never have a cell in common)
+        private final int[] order;
+        private final int[] cells;
+
+        // Results (in logs): the ways to hold k bombs, and the ways to hold k
+        // bombs with a bomb on cell i
+        private double[] logTotal;
+        private double[][] logBombs;
+
+        // The numbers of the component: their bombs needed and their cells
+        // (positions in the walk, in increasing order)
+        private int[] needed;
+        private int[][] members;
+        // The numbers each cell of the walk belongs to
+        private int[][] numbersOf;
+        // The open numbers between cell i - 1 and cell i
+        private int[][] open;
+
+        ComponentTask(byte[] numbers, byte[] known, int rows, int columns, int[] order,
+                int[] cells) {
+            this.numbers = numbers;
+            this.known = known;
+            this.rows = rows;
+            this.columns = columns;
+            this.order = order;
+            this.cells = cells;
+        }
+
+        @Override
+        protected void compute() {
+            walk();
+            int size = cells.length;
+
+            // Forward: the ways to reach every state, by bombs so far
+            ArrayList<HashMap<Needs, double[]>> forward;
+            forward = new ArrayList<HashMap<Needs, double[]>>();
+            double[] forwardScale = new double[size + 1];
+            HashMap<Needs, double[]> start = new HashMap<Needs, double[]>();
+            start.put(new Needs(new byte[0]), new double[] { 1 });
+            forward.add(start);
+            for (int i = 0; i < size; i++) {
+                HashMap<Needs, double[]> layer = new HashMap<Needs, double[]>();
+                for (HashMap.Entry<Needs, double[]> entry : forward.get(i).entrySet()) {
+                    for (int bomb = 0; bomb <= 1; bomb++) {
+                        Needs next = step(i, entry.getKey(), bomb);
+                        if (next != null) {
+                            double[] ways = layer.computeIfAbsent(next, k -> new double[0]);
+                            ways = add(ways, entry.getValue(), bomb);
+                            layer.put(next, ways);
+                        }
+                    }
+                }
+                if (layer.isEmpty()) {
+                    throw new IllegalArgumentException();
+                }
+                forwardScale[i + 1] = forwardScale[i] + rescale(layer);
+                forward.add(layer);
+            }
+
+            // Backward: the ways to finish from every reachable state, by bombs
+            // from here on
+            HashMap<Needs, double[]> after = new HashMap<Needs, double[]>();
+            after.put(new Needs(new byte[0]), new double[] { 1 });
+            double afterScale = 0;
+            logBombs = new double[size][];
+            for (int i = size - 1; i >= 0; i--) {
+                HashMap<Needs, double[]> layer = new HashMap<Needs, double[]>();
+                double[] bombWays = new double[0];
+                for (HashMap.Entry<Needs, double[]> entry : forward.get(i).entrySet()) {
+                    double[] ways = new double[0];
+                    for (int bomb = 0; bomb <= 1; bomb++) {
+                        Needs next = step(i, entry.getKey(), bomb);
+                        double[] finish = next == null ? null : after.get(next);
+                        if (finish == null) {
+                            continue;
+                        }
+                        ways = add(ways, finish, bomb);
+                        if (bomb == 1) {
+                            // Ways through this state with a bomb on cell i, by
+                            // bombs in the whole component
+                            double[] through = multiply(entry.getValue(), finish);
+                            bombWays = add(bombWays, through, 1);
+                        }
+                    }
+                    if (ways.length > 0) {
+                        layer.put(entry.getKey(), ways);
+                    }
+                }
+                logBombs[i] = toLogs(bombWays, forwardScale[i] + afterScale, size + 1);
+                afterScale += rescale(layer);
+                after = layer;
+            }
+            logTotal = toLogs(
+                    forward.get(size).values().iterator().next(), forwardScale[size], size + 1
+            );
+        }
+
+        /**
+         * Orders the cells of the component by a breadth-first walk (cells
+         * sharing a number are next to each other in the walk, which keeps the
+         * number of open numbers small), and collects the numbers.
+         */
+        private void walk() {
+            HashMap<Integer, Integer> ids = new HashMap<Integer, Integer>();
+            ArrayList<int[]> memberList = new ArrayList<int[]>();
+            ArrayList<Integer> neededList = new ArrayList<Integer>();
+            int[] walked = new int[cells.length];
+            int[] neighborCells = new int[8];
+            walked[0] = cells[0];
+            order[cells[0]] = 0;
+            int size = 1;
+            for (int head = 0; head < size; head++) {
+                int cell = walked[head];
+                int x = cell / columns;
+                int y = cell % columns;
+                for (int i = Math.max(0, x - 1); i <= Math.min(rows - 1, x + 1); i++) {
+                    for (int j = Math.max(0, y - 1); j <= Math.min(columns - 1, y + 1); j++) {
+                        int number = i * columns + j;
+                        if (numbers[number] < 0 || numbers[number] > 8
+                                || ids.containsKey(number)) {
+                            continue;
+                        }
+                        ids.put(number, ids.size());
+                        int count = unknownNeighbors(number, neighborCells);
+                        neededList.add(numbers[number] - knownBombs(number));
+                        for (int n = 0; n < count; n++) {
+                            if (order[neighborCells[n]] < 0) {
+                                order[neighborCells[n]] = size;
+                                walked[size++] = neighborCells[n];
+                            }
+                        }
+                        memberList.add(Arrays.copyOf(neighborCells, count));
+                    }
+                }
+            }
+            System.arraycopy(walked, 0, cells, 0, cells.length);
+
+            int numberCount = memberList.size();
+            needed = new int[numberCount];
+            members = new int[numberCount][];
+            int[] numbersPerCell = new int[cells.length];
+            for (int n = 0; n < numberCount; n++) {
+                needed[n] = neededList.get(n);
+                members[n] = memberList.get(n);
+                for (int m = 0; m < members[n].length; m++) {
+                    members[n][m] = order[members[n][m]];
+                    numbersPerCell[members[n][m]]++;
+                }
+                Arrays.sort(members[n]);
+            }
+            numbersOf = new int[cells.length][];
+            for (int i = 0; i < cells.length; i++) {
+                numbersOf[i] = new int[numbersPerCell[i]];
+                numbersPerCell[i] = 0;
+            }
+            for (int n = 0; n < numberCount; n++) {
+                for (int m : members[n]) {
+                    numbersOf[m][numbersPerCell[m]++] = n;
+                }
+            }
+
+            // A number is open from after its first cell up to its last cell
+            open = new int[cells.length + 1][];
+            open[0] = new int[0];
+            for (int i = 0; i < cells.length; i++) {
+                int[] current = open[i];
+                int[] next = new int[current.length + numbersOf[i].length];
+                int length = 0;
+                for (int n : current) {
+                    if (members[n][members[n].length - 1] > i) {
+                        next[length++] = n;
+                    }
+                }
+                for (int n : numbersOf[i]) {
+                    if (members[n][0] == i && members[n][members[n].length - 1] > i) {
+                        next[length++] = n;
+                    }
+                }
+                open[i + 1] = Arrays.copyOf(next, length);
+            }
+        }
+
+        /**
+         * Places a bomb (or not) on cell i.
+         *
+         * @return the state after cell i, or null if the numbers can't be
+         *         satisfied anymore
+         */
+        private Needs step(int i, Needs state, int bomb) {
+            int[] before = open[i];
+            int[] after = open[i + 1];
+            byte[] needs = new byte[after.length];
+            for (int a = 0; a < after.length; a++) {
+                int n = after[a];
+                int need = -1;
+                for (int b = 0; b < before.length && need < 0; b++) {
+                    if (before[b] == n) {
+                        need = state.needs[b];
+                    }
+                }
+                needs[a] = (byte) (need < 0 ? needed[n] : need);
+            }
+            for (int n : numbersOf[i]) {
+                int need = -1;
+                int slot = -1;
+                for (int a = 0; a < after.length && slot < 0; a++) {
+                    if (after[a] == n) {
+                        slot = a;
+                    }
+                }
+                if (slot >= 0) {
+                    need = needs[slot] - bomb;
+                    needs[slot] = (byte) need;
+                } else {
+                    // The number closes at cell i (or only has this one cell)
+                    need = neededBefore(n, i, before, state) - bomb;
+                }
+                if (need < 0 || need > cellsAfter(n, i)) {
+                    return null;
+                }
+            }
+            return new Needs(needs);
+        }
+
+        private int neededBefore(int n, int i, int[] before, Needs state) {
+            for (int b = 0; b < before.length; b++) {
+                if (before[b] == n) {
+                    return state.needs[b];
+                }
+            }
+            return needed[n];
+        }
+
+        /**
+         * @return the number of cells of number n after cell i
+         */
+        private int cellsAfter(int n, int i) {
+            int count = 0;
+            for (int m : members[n]) {
+                if (m > i) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private int unknownNeighbors(int cell, int[] out) {
+            int x = cell / columns;
+            int y = cell % columns;
+            int size = 0;
+            for (int i = Math.max(0, x - 1); i <= Math.min(rows - 1, x + 1); i++) {
+                for (int j = Math.max(0, y - 1); j <= Math.min(columns - 1, y + 1); j++) {
+                    int neighbor = i * columns + j;
+                    if (numbers[neighbor] < 0 && known[neighbor] == Solver.UNKNOWN) {
+                        out[size++] = neighbor;
+                    }
+                }
+            }
+            return size;
+        }
+
+        private int knownBombs(int cell) {
+            int x = cell / columns;
+            int y = cell % columns;
+            int count = 0;
+            for (int i = Math.max(0, x - 1); i <= Math.min(rows - 1, x + 1); i++) {
+                for (int j = Math.max(0, y - 1); j <= Math.min(columns - 1, y + 1); j++) {
+                    int neighbor = i * columns + j;
+                    if (known[neighbor] == Solver.BOMB || numbers[neighbor] == 9) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+
+        /**
+         * @return sum with ways (shifted up by shift bombs) added into it (sum may
+         *         be replaced by a bigger array)
+         */
+        private static double[] add(double[] sum, double[] ways, int shift) {
+            if (sum.length < ways.length + shift) {
+                sum = Arrays.copyOf(sum, ways.length + shift);
+            }
+            for (int k = 0; k < ways.length; k++) {
+                sum[k + shift] += ways[k];
+            }
+            return sum;
+        }
+
+        /**
+         * @return the counts by total bombs of combining a way to reach a state
+         *         with a way to finish from it
+         */
+        private static double[] multiply(double[] a, double[] b) {
+            double[] product = new double[a.length + b.length - 1];
+            for (int i = 0; i < a.length; i++) {
+                if (a[i] != 0) {
+                    for (int j = 0; j < b.length; j++) {
+                        product[i + j] += a[i] * b[j];
+                    }
+                }
+            }
+            return product;
+        }
+
+        /**
+         * Divides every count of a layer by the biggest one, so the counts never
+         * overflow.
+         *
+         * @return the log of the number everything was divided by
+         */
+        private static double rescale(HashMap<Needs, double[]> layer) {
+            double max = 0;
+            for (double[] ways : layer.values()) {
+                for (double w : ways) {
+                    max = Math.max(max, w);
+                }
+            }
+            if (max == 0) {
+                return 0;
+            }
+            for (double[] ways : layer.values()) {
+                for (int k = 0; k < ways.length; k++) {
+                    ways[k] /= max;
+                }
+            }
+            return Math.log(max);
+        }
+
+        private static double[] toLogs(double[] ways, double scale, int length) {
+            double[] logs = new double[length];
+            for (int k = 0; k < length; k++) {
+                logs[k] = k < ways.length && ways[k] > 0 ? Math.log(ways[k]) + scale
+                        : Double.NEGATIVE_INFINITY;
+            }
+            return logs;
+        }
+    }
+}
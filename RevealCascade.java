@@ -0,0 +1,159 @@
+package org.cis1200.minesweeper;
+
+/**
+ * This class uncovers (or covers back up) a whole region of cells at once.
+ * When a 0 is revealed, all of its neighbors are revealed too, and any of those
+ * that are 0 reveal their neighbors, and so on. Instead of a recursive call per
+ * cell (which overflows the stack on big open boards), the region is walked with
+ * an explicit queue of cell indices and a visited bitset.
+ *
+ * The queue doubles as the result: after a cascade, the first getSize() entries
+ * of getCells() are exactly the cells that changed, in the order they were
+ * found. The arrays are reused between cascades, so a RevealCascade should be
+ * kept around (one per game) rather than made for every click.
+ */
+public class RevealCascade {
+
+    private int[] queue = new int[64];
+    private int size = 0;
+    private int depth = 0;
+    private long[] visited = new long[0];
+
+    /**
+     * Uncovers the given cell. If the cell is a 0, every cell connected to it
+     * through other 0s (and the numbers bordering them) is uncovered as well.
+     * Flagged and already visible cells are never touched.
+     * Invariant: the given cell is a valid, hidden, unflagged, non-bomb cell
+     * (GameEngine.showCell checks this).
+     *
+     * @param board the board to uncover cells on
+     * @param x     the x coordinate of the clicked cell
+     * @param y     the y coordinate of the clicked cell
+     * @return the number of cells that were uncovered
+     */
+    public int reveal(Board board, int x, int y) {
+        return walk(board, x * board.getColumns() + y, true);
+    }
+
+    /**
+     * Covers the given cell back up. If the cell is a 0, every visible cell
+     * connected to it through other 0s is covered back up as well (the opposite
+     * of reveal). Used when undoing a move.
+     * Invariant: the given cell is a valid, visible, non-bomb cell.
+     *
+     * @param board the board to cover cells on
+     * @param x     the x coordinate of the cell
+     * @param y     the y coordinate of the cell
+     * @return the number of cells that were covered
+     */
+    public int hide(Board board, int x, int y) {
+        return walk(board, x * board.getColumns() + y, false);
+    }
+
+    /**
+     * Walks the region starting at the given cell. Every cell whose visibility
+     * is the opposite of show gets added to the queue (once), and only 0s add
+     * their neighbors. Once the whole region is found, the visibility of every
+     * cell in the queue is changed in one pass.
+     *
+     * @param board the board to walk
+     * @param start the index of the first cell (x * columns + y)
+     * @param show  true to uncover the region, false to cover it
+     * @return the number of cells in the region
+     */
+    private int walk(Board board, int start, boolean show) {
+        byte[] cells = board.getCells();
+        int rows = board.getRows();
+        int columns = board.getColumns();
+        // A cell can join the region if it is hidden and unflagged (to show) or
+        // visible (to hide)
+        int mask = show ? Board.VISIBLE | Board.FLAGGED : Board.VISIBLE;
+        int wanted = show ? 0 : Board.VISIBLE;
+
+        if (visited.length < (cells.length + 63) >>> 6) {
+            visited = new long[(cells.length + 63) >>> 6];
+        }
+
+        size = 0;
+        push(start);
+        int head = 0;
+        // The queue holds the region in layers, by distance from the start; the
+        // current layer ends at layerEnd
+        int layer = 0;
+        int layerEnd = size;
+        while (head < size) {
+            if (head == layerEnd) {
+                layer++;
+                layerEnd = size;
+            }
+            int current = queue[head++];
+            if ((cells[current] & Board.VALUE_MASK) != 0) {
+                continue;
+            }
+
+            int x = current / columns;
+            int y = current - x * columns;
+            // iterates through all 8 adjacent cells
+            for (int i = Math.max(x - 1, 0); i <= Math.min(x + 1, rows - 1); i++) {
+                for (int j = Math.max(y - 1, 0); j <= Math.min(y + 1, columns - 1); j++) {
+                    int neighbor = i * columns + j;
+                    if ((cells[neighbor] & mask) == wanted
+                            && (visited[neighbor >>> 6] & (1L << neighbor)) == 0) {
+                        push(neighbor);
+                    }
+                }
+            }
+        }
+
+        // Change the whole region at once, and clear only the bits that were set
+        for (int i = 0; i < size; i++) {
+            int cell = queue[i];
+            if (show) {
+                cells[cell] |= Board.VISIBLE;
+            } else {
+                cells[cell] &= ~Board.VISIBLE;
+            }
+            visited[cell >>> 6] &= ~(1L << cell);
+        }
+        depth = layer;
+        return size;
+    }
+
+    /**
+     * Adds a cell to the end of the queue and marks it as visited.
+     *
+     * @param cell the index of the cell
+     */
+    private void push(int cell) {
+        if (size == queue.length) {
+            int[] bigger = new int[(int) Math.min(queue.length * 2L, Board.MAX_CELLS)];
+            System.arraycopy(queue, 0, bigger, 0, size);
+            queue = bigger;
+        }
+        queue[size++] = cell;
+        visited[cell >>> 6] |= 1L << cell;
+    }
+
+    /**
+     * @return the array holding the cells of the last cascade (only the first
+     *         getSize() entries are valid)
+     */
+    public int[] getCells() {
+        return queue;
+    }
+
+    /**
+     * @return the number of cells changed by the last cascade
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return how far (in steps between neighbors) the last cascade reached from
+     *         the cell it started at
+     */
+    public int getDepth() {
+        return depth;
+    }
+}
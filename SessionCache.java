@@ -0,0 +1,468 @@
+package org.cis1200.minesweeper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * The games being played on a GameServer, by id. At most maxGames of them are
+ * kept in memory. When there are more, the game that was used the longest time
+ * ago is evicted, and so is every game that hasn't been used for maxIdle. An
+ * evicted game is saved as a compact binary snapshot (see GameCodec) in a
+ * SnapshotArchive, and is loaded back the next time it is used, so the caller
+ * never notices (besides the time it takes).
+ *
+ * So the heap holds at most maxGames games (plus the ones still being saved),
+ * however many games there are; every other game only costs its entry in the
+ * index of the archive (about 40 bytes).
+ *
+ * A game is only used through withGame, which locks the game while the action
+ * runs, so two threads never change the same game at once, and a game is never
+ * evicted in the middle of an action. The cache itself is a LinkedHashMap in
+ * access order (the least recently used game first), guarded by the cache's
+ * lock. That lock is only held to look games up and to pick the games to evict:
+ * nothing waits for the lock of a game or for the disk while holding it. The
+ * evicted games are taken out of the map under the lock, and saved after it is
+ * let go (a game that is used again before it is saved is simply taken back).
+ * A game that has to be loaded is put in the map locked, and read from the
+ * archive after the cache's lock is let go, so other games are used meanwhile.
+ * A game stays in the map, locked, while it is removed from the archive, so no
+ * other thread can load the old snapshot back in the meantime.
+ * The locks are ReentrantLocks rather than monitors, so a virtual thread that
+ * waits for one (or for the disk while holding one) doesn't pin its carrier.
+ *
+ * Evictions happen while a game is added or used, so no thread is needed to
+ * expire idle games.
+ *
+ * The hits, misses and evictions are counted with LongAdders, so counting
+ * doesn't make the threads fight over one counter.
+ */
+public class SessionCache {
+
+    /**
+     * A game and when it was last used. Once evicted (or removed), it is stale:
+     * the game lives in the archive, and a new entry is made when it is loaded.
+     * Its fields (but lastUsed, which is guarded by the cache's lock) are guarded
+     * by its lock.
+     */
+    private static class Entry {
+        final ReentrantLock lock = new ReentrantLock();
+        // Null while the game is being loaded
+        GameEngine engine;
+        long lastUsed;
+        boolean evicted = false;
+        // The number of actions run on the game, and how many of them the
+        // snapshot in the archive has seen (-1 if there is none)
+        long version = 0;
+        long savedVersion = -1;
+
+        Entry(GameEngine engine, long lastUsed) {
+            this.engine = engine;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    private final SnapshotArchive archive;
+    private final int maxGames;
+    private final long maxIdleNanos;
+
+    // All guarded by the cache's lock
+    private final ReentrantLock lock = new ReentrantLock();
+    // The games in memory, from the least to the most recently used
+    private final LinkedHashMap<Long, Entry> games = new LinkedHashMap<Long, Entry>(
+            16, 0.75f, true
+    );
+    // The games taken out of games to be evicted, until they are saved
+    private final HashMap<Long, Entry> saving = new HashMap<Long, Entry>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param archive  where evicted games are saved (the cache doesn't close it)
+     * @param maxGames the most games kept in memory
+     * @param maxIdle  how long a game can go unused before it is evicted
+     * @param unit     the unit of maxIdle
+     * @throws IllegalArgumentException if the archive is null, maxGames isn't
+     *                                  positive or maxIdle is negative
+     */
+    public SessionCache(SnapshotArchive archive, int maxGames, long maxIdle, TimeUnit unit) {
+        if (archive == null || maxGames <= 0 || maxIdle < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.archive = archive;
+        this.maxGames = maxGames;
+        this.maxIdleNanos = unit.toNanos(maxIdle);
+    }
+
+    /**
+     * Adds a new game to the cache. The cache owns the game from now on; it
+     * should only be used through withGame.
+     *
+     * @param id     the id of the game (not used by any other game, even one that
+     *               was removed)
+     * @param engine the game
+     * @throws IOException if a game that had to be evicted couldn't be saved
+     */
+    public void put(long id, GameEngine engine) throws IOException {
+        List<Long> victims;
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            games.put(id, new Entry(engine, now));
+            victims = pickVictims(now);
+        } finally {
+            lock.unlock();
+        }
+        save(victims);
+    }
+
+    /**
+     * Runs an action on a game, loading it from the archive first if it was
+     * evicted. No other thread uses the game while the action runs. The action
+     * must not use the cache itself.
+     *
+     * @param id     the id of the game
+     * @param action what to do with the game
+     * @param <R>    the type of the result of the action
+     * @return the result of the action, or null if there is no such game
+     * @throws IOException if the game couldn't be loaded, or a game that had to
+     *                     be evicted couldn't be saved
+     */
+    public <R> R withGame(long id, Function<GameEngine, R> action) throws IOException {
+        while (true) {
+            Entry entry;
+            boolean hit;
+            List<Long> victims;
+            lock.lock();
+            try {
+                long now = System.nanoTime();
+                entry = games.get(id);
+                if (entry == null) {
+                    // Still in memory if it is waiting to be saved
+                    entry = saving.remove(id);
+                    if (entry != null) {
+                        games.put(id, entry);
+                    }
+                }
+                hit = entry != null;
+                if (entry == null) {
+                    // Locked before anyone else can see it, so the other threads
+                    // that want the game wait for it to be loaded
+                    entry = new Entry(null, now);
+                    entry.lock.lock();
+                    games.put(id, entry);
+                }
+                entry.lastUsed = now;
+                // The game was just used as of now, so it is never the one evicted
+                victims = pickVictims(now);
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                if (!hit) {
+                    try {
+                        if (!load(id, entry)) {
+                            misses.increment();
+                            return null;
+                        }
+                    } finally {
+                        entry.lock.unlock();
+                    }
+                }
+            } finally {
+                // Only once no game is locked, since saving locks the victims
+                save(victims);
+            }
+
+            entry.lock.lock();
+            try {
+                // Evicted between leaving the cache's lock and getting here, so the
+                // game has to be loaded again
+                if (!entry.evicted) {
+                    (hit ? hits : misses).increment();
+                    try {
+                        return action.apply(entry.engine);
+                    } finally {
+                        entry.version++;
+                    }
+                }
+            } finally {
+                entry.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Removes a game for good (from memory and from the archive).
+     *
+     * @param id the id of the game
+     * @return whether there was such a game
+     * @throws IOException if the removal couldn't be saved in the archive
+     */
+    public boolean remove(long id) throws IOException {
+        while (true) {
+            Entry entry;
+            boolean placeholder;
+            lock.lock();
+            try {
+                entry = games.get(id);
+                if (entry == null) {
+                    entry = saving.get(id);
+                }
+                placeholder = entry == null;
+                if (placeholder) {
+                    // Stands for the game while it is removed from the archive, so
+                    // no other thread loads it back from there meanwhile
+                    entry = new Entry(null, System.nanoTime());
+                    entry.lock.lock();
+                    games.put(id, entry);
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (!placeholder) {
+                // Waits for an action, a load or a save of the game that is
+                // running, so nothing is written for the game after the removal
+                entry.lock.lock();
+            }
+
+            try {
+                if (entry.evicted) {
+                    // Saved, removed or dropped meanwhile, so look again
+                    continue;
+                }
+                boolean archived;
+                try {
+                    archived = archive.remove(id);
+                } catch (IOException | RuntimeException e) {
+                    if (placeholder) {
+                        drop(id, entry);
+                    }
+                    throw e;
+                }
+                boolean existed = entry.engine != null;
+                drop(id, entry);
+                return existed || archived;
+            } finally {
+                entry.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Evicts every game that has been idle for longer than maxIdle. This also
+     * happens whenever a game is added or used, so calling it is only needed to
+     * free the memory of a cache that isn't being used.
+     *
+     * @throws IOException if a game couldn't be saved
+     */
+    public void evictIdle() throws IOException {
+        List<Long> victims;
+        lock.lock();
+        try {
+            victims = pickVictims(System.nanoTime());
+        } finally {
+            lock.unlock();
+        }
+        save(victims);
+    }
+
+    /**
+     * @return the number of games in memory (not counting the ones being saved)
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return games.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of times a game was found in memory
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of times a game wasn't in memory (it was loaded from the
+     *         archive, or didn't exist)
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of games loaded back from the archive
+     */
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    /**
+     * @return the number of games saved to the archive and dropped from memory
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Loads an evicted game from the archive into its entry. Must hold the lock
+     * of the entry (which was just put in the map), but not the cache's lock.
+     * If there is no such game (or it can't be read), the entry is dropped.
+     *
+     * @return whether the archive has the game
+     */
+    private boolean load(long id, Entry entry) throws IOException {
+        boolean loaded = false;
+        try {
+            ByteBuffer snapshot = archive.read(id);
+            if (snapshot != null) {
+                entry.engine = GameCodec.read(snapshot);
+                entry.savedVersion = entry.version;
+                loads.increment();
+                loaded = true;
+            }
+            return loaded;
+        } finally {
+            if (!loaded) {
+                drop(id, entry);
+            }
+        }
+    }
+
+    /**
+     * Marks an entry as stale and takes it out of the cache (wherever it is).
+     * Must hold the lock of the entry, but not the cache's lock.
+     */
+    private void drop(long id, Entry entry) {
+        entry.evicted = true;
+        lock.lock();
+        try {
+            if (!games.remove(id, entry)) {
+                saving.remove(id, entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the least recently used games out of the map while there are too
+     * many, and the games that have been idle for too long (as of now). They are
+     * kept in saving until save has written them. Must hold the cache's lock.
+     *
+     * @return the ids of the games to save
+     */
+    private List<Long> pickVictims(long now) {
+        List<Long> victims = new ArrayList<Long>();
+        Iterator<Map.Entry<Long, Entry>> oldest = games.entrySet().iterator();
+        while (oldest.hasNext()) {
+            Map.Entry<Long, Entry> next = oldest.next();
+            Entry entry = next.getValue();
+            if (games.size() <= maxGames && now - entry.lastUsed <= maxIdleNanos) {
+                // Every game after this one was used more recently
+                break;
+            }
+            saving.put(next.getKey(), entry);
+            victims.add(next.getKey());
+            oldest.remove();
+        }
+        return victims;
+    }
+
+    /**
+     * Saves the games picked by pickVictims to the archive and drops them. Must
+     * not hold the cache's lock. A game that was used again meanwhile is kept in
+     * memory, and so is a game that couldn't be saved (so a failed write loses
+     * nothing).
+     *
+     * @param victims the ids of the games
+     * @throws IOException if a game couldn't be saved (the rest are still tried)
+     */
+    private void save(List<Long> victims) throws IOException {
+        IOException failure = null;
+        for (long id : victims) {
+            try {
+                save(id);
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Saves one of the games picked by pickVictims, if it is still waiting to be
+     * saved.
+     */
+    private void save(long id) throws IOException {
+        Entry entry;
+        lock.lock();
+        try {
+            entry = saving.get(id);
+        } finally {
+            lock.unlock();
+        }
+        if (entry == null) {
+            // Taken back, removed, or saved by another thread
+            return;
+        }
+
+        entry.lock.lock();
+        try {
+            if (entry.evicted) {
+                return;
+            }
+            boolean saved = false;
+            try {
+                // Written while the game is locked, so the last snapshot in the
+                // archive is always the newest state
+                if (entry.savedVersion != entry.version) {
+                    archive.append(id, entry.engine);
+                    entry.savedVersion = entry.version;
+                }
+                saved = true;
+            } finally {
+                lock.lock();
+                try {
+                    if (saving.remove(id, entry)) {
+                        if (saved) {
+                            entry.evicted = true;
+                            evictions.increment();
+                        } else {
+                            games.put(id, entry);
+                        }
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package org.cis1200;
+
+import org.cis1200.minesweeper.Board;
+import org.cis1200.minesweeper.GameEngine;
+import org.cis1200.minesweeper.MoveStrategy;
+import org.cis1200.minesweeper.ProbabilityCalculator;
+import org.cis1200.minesweeper.Solver;
+
+import java.util.SplittableRandom;
+
+/**
+ * Plays many games headlessly (no JFrame, just the GameEngine) with a
+ * MoveStrategy and reports the win rate, the average number of moves, and a
+ * histogram of the time per game. It is used to tune hint logic.
+ *
+ * The games are split evenly across threads (one per core by default). Every
+ * thread gets its own random stream, split from the seed before any thread
+ * starts, and its own Stats, which are only merged once every thread is done,
+ * so the threads never share anything while playing. With the same seed and
+ * number of threads the same games are played.
+ *
+ * Usage (every argument is optional):
+ * java org.cis1200.Simulation games=1000000 preset=classic strategy=solver
+ * threads=8 seed=1
+ *
+ * Presets:
+ * - classic = The 16x16 board with 30 bombs that the GUI plays
+ * - beginner = 9x9 with 10 bombs
+ * - intermediate = 16x16 with 40 bombs
+ * - expert = 16x30 with 99 bombs
+ *
+ * Strategies:
+ * - random = Uncovers a random hidden cell every move
+ * - solver = Uncovers the cells the Solver proves safe, and guesses a random
+ * cell that isn't known to be a bomb when there are none
+ * - probability = Like solver, but guesses the cell the ProbabilityCalculator
+ * finds least likely to be a bomb
+ */
+public class Simulation {
+
+    private static final String[] PRESET_NAMES = { "classic", "beginner", "intermediate",
+        "expert" };
+    private static final int[][] PRESETS = { { 16, 16, 30 }, { 9, 9, 10 }, { 16, 16, 40 },
+        { 16, 30, 99 } };
+    private static final String[] STRATEGY_NAMES = { "random", "solver", "probability" };
+
+    // Games taking less than 2^i microseconds (and at least 2^(i-1)) go in bucket i
+    private static final int BUCKETS = 32;
+
+    /**
+     * What one thread has found out. Only the thread playing the games writes
+     * to it.
+     */
+    static class Stats {
+        long games;
+        long wins;
+        long moves;
+        long nanos;
+        final long[] histogram = new long[BUCKETS];
+
+        /**
+         * Adds the results of another thread to these.
+         *
+         * @param other the results to add
+         */
+        void merge(Stats other) {
+            games += other.games;
+            wins += other.wins;
+            moves += other.moves;
+            nanos += other.nanos;
+            for (int i = 0; i < BUCKETS; i++) {
+                histogram[i] += other.histogram[i];
+            }
+        }
+    }
+
+    /**
+     * Runs the simulation described by the arguments and prints the results.
+     *
+     * @param args key=value pairs (games, preset, strategy, threads, seed)
+     */
+    public static void main(String[] args) {
+        long games = 1_000_000;
+        int preset = 0;
+        int strategy = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = new SplittableRandom().nextLong();
+        try {
+            for (String arg : args) {
+                int split = arg.indexOf('=');
+                String key = split < 0 ? arg : arg.substring(0, split);
+                String value = split < 0 ? "" : arg.substring(split + 1);
+                if (key.equals("games")) {
+                    games = Long.parseLong(value);
+                } else if (key.equals("preset")) {
+                    preset = indexOf(PRESET_NAMES, value);
+                } else if (key.equals("strategy")) {
+                    strategy = indexOf(STRATEGY_NAMES, value);
+                } else if (key.equals("threads")) {
+                    threads = Integer.parseInt(value);
+                } else if (key.equals("seed")) {
+                    seed = Long.parseLong(value);
+                } else {
+                    throw new IllegalArgumentException();
+                }
+            }
+            if (games <= 0 || threads <= 0) {
+                throw new IllegalArgumentException();
+            }
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException is an IllegalArgumentException too
+            System.out.println("Usage: java org.cis1200.Simulation [games=N] [preset="
+                    + String.join("|", PRESET_NAMES) + "] [strategy="
+                    + String.join("|", STRATEGY_NAMES) + "] [threads=N] [seed=N]");
+            return;
+        }
+
+        int rows = PRESETS[preset][0];
+        int columns = PRESETS[preset][1];
+        int bombs = PRESETS[preset][2];
+        System.out.printf(
+                "Playing %,d %s games (%dx%d, %d bombs) with the %s strategy on %d threads"
+                        + " (seed %d)%n",
+                games, PRESET_NAMES[preset], rows, columns, bombs, STRATEGY_NAMES[strategy],
+                threads, seed
+        );
+
+        long start = System.nanoTime();
+        Stats total = run(rows, columns, bombs, STRATEGY_NAMES[strategy], games, threads, seed);
+        long wall = System.nanoTime() - start;
+        print(total, wall);
+    }
+
+    /**
+     * Plays the games on the given number of threads.
+     *
+     * @param rows     the number of rows
+     * @param columns  the number of columns
+     * @param bombs    the number of bombs
+     * @param strategy the name of the strategy every thread plays with
+     * @param games    the number of games to play
+     * @param threads  the number of threads
+     * @param seed     the seed the threads' random streams are split from
+     * @return the merged results of every thread
+     */
+    static Stats run(int rows, int columns, int bombs, String strategy, long games,
+            int threads, long seed) {
+        SplittableRandom root = new SplittableRandom(seed);
+        Stats[] stats = new Stats[threads];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            // The first games % threads threads play one extra game
+            long share = games / threads + (t < games % threads ? 1 : 0);
+            SplittableRandom random = root.split();
+            Stats mine = new Stats();
+            MoveStrategy player = makeStrategy(strategy);
+            stats[t] = mine;
+            workers[t] = new Thread(() -> {
+                for (long g = 0; g < share; g++) {
+                    play(rows, columns, bombs, player, random, mine);
+                }
+            }, "simulation-" + t);
+            workers[t].start();
+        }
+
+        Stats total = new Stats();
+        for (int t = 0; t < threads; t++) {
+            try {
+                workers[t].join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            total.merge(stats[t]);
+        }
+        return total;
+    }
+
+    /**
+     * Plays one game to the end and records it.
+     */
+    private static void play(int rows, int columns, int bombs, MoveStrategy player,
+            SplittableRandom random, Stats stats) {
+        long start = System.nanoTime();
+        GameEngine engine = new GameEngine(rows, columns, bombs, random.nextLong());
+        Board board = engine.getBoard();
+        player.reset(board);
+        long moves = 0;
+        while (engine.getGameInPlay()) {
+            int cell = player.chooseCell(board, random);
+            int x = cell / columns;
+            int y = cell % columns;
+            if (cell < 0 || cell >= rows * columns || board.getVisibilityOfCell(x, y)
+                    || board.getFlaggedOfCell(x, y)) {
+                // Otherwise the game would never end
+                throw new IllegalStateException("The strategy picked cell " + cell);
+            }
+            engine.showClickedCell(x, y);
+            moves++;
+        }
+        long nanos = System.nanoTime() - start;
+
+        stats.games++;
+        if (engine.getState() == GameEngine.WON) {
+            stats.wins++;
+        }
+        stats.moves += moves;
+        stats.nanos += nanos;
+        stats.histogram[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos / 1000))]++;
+    }
+
+    /**
+     * Prints the win rate, average moves and time histogram.
+     */
+    private static void print(Stats total, long wall) {
+        System.out.printf("Win rate:       %.3f%% (%,d of %,d)%n",
+                100.0 * total.wins / total.games, total.wins, total.games);
+        System.out.printf("Average moves:  %.2f%n", (double) total.moves / total.games);
+        System.out.printf("Average time:   %.2f us per game (%,.0f games/s)%n",
+                total.nanos / 1e3 / total.games, total.games / (wall / 1e9));
+        System.out.println("Time per game:");
+
+        long most = 0;
+        int first = BUCKETS;
+        int last = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (total.histogram[i] > 0) {
+                most = Math.max(most, total.histogram[i]);
+                first = Math.min(first, i);
+                last = i;
+            }
+        }
+        for (int i = first; i <= last; i++) {
+            String bar = "#".repeat((int) (50 * total.histogram[i] / most));
+            System.out.printf("  < %,10d us %,12d  %s%n", 1L << i, total.histogram[i], bar);
+        }
+    }
+
+    /**
+     * Simple helper function that makes a new instance of the named strategy
+     * (every thread needs its own).
+     *
+     * @param name the name of the strategy
+     * @return the strategy
+     * @throws IllegalArgumentException if there is no strategy with that name
+     */
+    static MoveStrategy makeStrategy(String name) {
+        if (name.equals("random")) {
+            return new RandomStrategy();
+        } else if (name.equals("solver")) {
+            return new SolverStrategy(false);
+        } else if (name.equals("probability")) {
+            return new SolverStrategy(true);
+        }
+        throw new IllegalArgumentException();
+    }
+
+    private static int indexOf(String[] names, String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException();
+    }
+
+    /**
+     * Simple helper function that picks a random hidden, unflagged cell that the
+     * solver (if given) doesn't know to be a bomb. A few random tries are enough
+     * on most boards; near the end of a game the cells are scanned instead.
+     *
+     * @return the index of the cell
+     */
+    private static int randomHiddenCell(Board board, Solver solver,
+            SplittableRandom random) {
+        int columns = board.getColumns();
+        int cells = board.getRows() * columns;
+        for (int tries = 0; tries < 32; tries++) {
+            int cell = random.nextInt(cells);
+            if (canGuess(board, solver, cell / columns, cell % columns)) {
+                return cell;
+            }
+        }
+        int count = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            if (canGuess(board, solver, cell / columns, cell % columns)) {
+                count++;
+            }
+        }
+        int pick = random.nextInt(count);
+        for (int cell = 0; cell < cells; cell++) {
+            if (canGuess(board, solver, cell / columns, cell % columns) && pick-- == 0) {
+                return cell;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    private static boolean canGuess(Board board, Solver solver, int x, int y) {
+        return !board.getVisibilityOfCell(x, y) && !board.getFlaggedOfCell(x, y)
+                && (solver == null || solver.getKnown(x, y) != Solver.BOMB);
+    }
+
+    /**
+     * Uncovers a random hidden cell every move.
+     */
+    private static class RandomStrategy implements MoveStrategy {
+        @Override
+        public void reset(Board board) {
+        }
+
+        @Override
+        public int chooseCell(Board board, SplittableRandom random) {
+            return randomHiddenCell(board, null, random);
+        }
+    }
+
+    /**
+     * Uncovers every cell the Solver proves safe, and only guesses when there
+     * are none: either a random cell that isn't known to be a bomb, or the cell
+     * the ProbabilityCalculator finds least likely to be a bomb.
+     */
+    private static class SolverStrategy implements MoveStrategy {
+        private final Solver solver = new Solver();
+        private final ProbabilityCalculator calculator;
+        // The safe cells of the last solve that haven't been uncovered yet
+        private int[] safe = new int[0];
+        private int next;
+
+        SolverStrategy(boolean useProbabilities) {
+            calculator = useProbabilities ? new ProbabilityCalculator() : null;
+        }
+
+        @Override
+        public void reset(Board board) {
+            safe = new int[0];
+            next = 0;
+        }
+
+        @Override
+        public int chooseCell(Board board, SplittableRandom random) {
+            int columns = board.getColumns();
+            // Safe cells can be uncovered by an earlier one's cascade, so those
+            // are skipped
+            while (next < safe.length) {
+                int cell = safe[next++];
+                if (canGuess(board, null, cell / columns, cell % columns)) {
+                    return cell;
+                }
+            }
+            solver.solve(board);
+            safe = solver.getSafeCells();
+            next = 0;
+            if (safe.length > 0) {
+                return safe[next++];
+            }
+            // The Solver is stuck (or nothing is visible yet), so this is a guess
+            if (calculator != null) {
+                calculator.calculate(board);
+                int cell = calculator.getSafestCell();
+                if (cell >= 0 && !board.getFlaggedOfCell(cell / columns, cell % columns)) {
+                    return cell;
+                }
+            }
+            return randomHiddenCell(board, solver, random);
+        }
+    }
+}
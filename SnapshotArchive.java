@@ -0,0 +1,581 @@
+package org.cis1200.minesweeper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class stores many game snapshots (see GameCodec) in one append-only file
+ * instead of one small file per export. Every snapshot is kept under a game id;
+ * appending a snapshot for an id that is already stored simply makes the new one
+ * the current one (the old bytes stay in the file until the next compaction).
+ *
+ * There are two files:
+ * - The data file holds the records one after another. Each record is an int
+ * RECORD_MAGIC, the long game id, the int length of the snapshot, and then the
+ * snapshot itself.
+ * - The index file (the data file's name + ".idx") holds one entry per record:
+ * the long game id, the long offset of the snapshot in the data file, and its int
+ * length. It is read into a hash table when the archive is opened, so finding a
+ * game is a single lookup.
+ *
+ * The data file is mapped into memory in segments of SEGMENT_BYTES. A segment is
+ * mapped the first time a snapshot in it is read once the file has grown past
+ * its end (so its bytes never change again), and the mapping is kept from then
+ * on, so loading such a game returns a read-only slice of the mapping without
+ * copying the snapshot. Snapshots in the last, unfinished segment (or across the
+ * border of two segments) are copied out with one read instead, so a file that
+ * is being appended to is never mapped again and again.
+ * If the program stopped between writing a record and its index entry, opening
+ * the archive finds the record by scanning the end of the data file (and cuts
+ * off a record that was only partly written).
+ *
+ * Old snapshots of a game, and removed games (stored as empty snapshots), only
+ * take up space. Once they take up more of the data file than the current
+ * snapshots do (and the file is at least MIN_COMPACT_BYTES), the archive is
+ * compacted: the current snapshots are copied into new files, which then replace
+ * the old ones, and the removed games are dropped. Each byte is copied about
+ * once for every byte appended, so compaction adds at most about one more write
+ * per append. The index is emptied before the new files are renamed into
+ * place, and an archive opened with an empty index rebuilds it by scanning the
+ * data file, so stopping the program at any point leaves a usable archive.
+ *
+ * The methods take the archive's lock, so an archive can be shared between
+ * threads. It is a ReentrantLock rather than a monitor, so a virtual thread that
+ * waits for the disk while holding it doesn't pin its carrier.
+ */
+public class SnapshotArchive implements Closeable {
+
+    public static final int RECORD_MAGIC = 0x4D535741; // "MSWA"
+
+    private static final int RECORD_HEADER_BYTES = 4 + 8 + 4;
+    private static final int INDEX_ENTRY_BYTES = 8 + 8 + 4;
+    private static final int SEGMENT_SHIFT = 26;
+    public static final long SEGMENT_BYTES = 1L << SEGMENT_SHIFT;
+    public static final long MIN_COMPACT_BYTES = 1L << 20;
+
+    private final Path path;
+    private final Path indexPath;
+    private FileChannel data;
+    private FileChannel index;
+    private long dataSize;
+    private long indexSize;
+    // The bytes of the current records (headers included)
+    private long liveBytes = 0;
+    // The mapped segments of the data file (null until they are needed)
+    private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    // Open addressing hash table from game id to the offset/length of the snapshot
+    private long[] ids = new long[64];
+    private long[] offsets = new long[64];
+    private int[] lengths = new int[64];
+    // The used slots, and how many of them hold a removed game
+    private int size = 0;
+    private int removed = 0;
+
+    // Guards everything above (and the buffers below)
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+    private final ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+
+    /**
+     * Opens the archive at the given path, creating it if it doesn't exist yet.
+     *
+     * @param path the path of the data file
+     * @throws IOException if the files can't be opened or read
+     */
+    public SnapshotArchive(Path path) throws IOException {
+        Arrays.fill(lengths, -1);
+        this.path = path;
+        this.indexPath = path.resolveSibling(path.getFileName() + ".idx");
+        data = open(path);
+        try {
+            index = open(indexPath);
+        } catch (IOException e) {
+            data.close();
+            throw e;
+        }
+        try {
+            dataSize = data.size();
+            recover(loadIndex());
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the index file into the hash table. Stops at the first entry that
+     * points past the end of the data file (and cuts the index off there).
+     *
+     * @return the offset in the data file right after the last indexed record
+     */
+    private long loadIndex() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(INDEX_ENTRY_BYTES * 4096);
+        long position = 0;
+        long indexedEnd = 0;
+        // A partly written entry at the end is ignored (and cut off below)
+        long complete = index.size() - index.size() % INDEX_ENTRY_BYTES;
+
+        while (position < complete) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), complete - position));
+            while (buffer.hasRemaining()) {
+                if (index.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("index ended early");
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                long id = buffer.getLong();
+                long offset = buffer.getLong();
+                int length = buffer.getInt();
+                if (length < 0 || offset < RECORD_HEADER_BYTES || offset + length > dataSize) {
+                    index.truncate(position);
+                    indexSize = position;
+                    return indexedEnd;
+                }
+                put(id, offset, length);
+                indexedEnd = Math.max(indexedEnd, offset + length);
+                position += INDEX_ENTRY_BYTES;
+            }
+        }
+        index.truncate(position);
+        indexSize = position;
+        return indexedEnd;
+    }
+
+    /**
+     * Scans the data file after the last indexed record for records that never
+     * made it into the index, and indexes them. A record that was only partly
+     * written is cut off.
+     *
+     * @param from the offset right after the last indexed record
+     */
+    private void recover(long from) throws IOException {
+        long position = from;
+        while (position + RECORD_HEADER_BYTES <= dataSize) {
+            header.clear();
+            while (header.hasRemaining()) {
+                data.read(header, position + header.position());
+            }
+            header.flip();
+            int magic = header.getInt();
+            long id = header.getLong();
+            int length = header.getInt();
+            long offset = position + RECORD_HEADER_BYTES;
+            if (magic != RECORD_MAGIC || length < 0 || offset + length > dataSize) {
+                break;
+            }
+            put(id, offset, length);
+            writeIndexEntry(id, offset, length);
+            position = offset + length;
+        }
+        if (position < dataSize) {
+            data.truncate(position);
+            dataSize = position;
+        }
+    }
+
+    /**
+     * Appends a snapshot (all of the remaining bytes of the buffer) under the
+     * given game id. It becomes the current snapshot of that game. An empty
+     * snapshot removes the game (see remove).
+     *
+     * @param gameId   the id of the game
+     * @param snapshot the bytes of the snapshot
+     * @throws IOException if the files can't be written
+     */
+    public void append(long gameId, ByteBuffer snapshot) throws IOException {
+        lock.lock();
+        try {
+            int length = snapshot.remaining();
+            header.clear();
+            header.putInt(RECORD_MAGIC).putLong(gameId).putInt(length).flip();
+
+            long offset = dataSize + RECORD_HEADER_BYTES;
+            writeFully(data, header, dataSize);
+            writeFully(data, snapshot, offset);
+            dataSize = offset + length;
+
+            writeIndexEntry(gameId, offset, length);
+            put(gameId, offset, length);
+
+            if (dataSize >= MIN_COMPACT_BYTES && dataSize - liveBytes > liveBytes) {
+                compact();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends a snapshot of the game (see GameCodec) under the given game id.
+     *
+     * @param gameId the id of the game
+     * @param engine the game to save
+     * @throws IOException if the files can't be written
+     */
+    public void append(long gameId, GameEngine engine) throws IOException {
+        ByteBuffer snapshot = ByteBuffer.allocate(GameCodec.encodedSize(engine));
+        GameCodec.write(engine, snapshot);
+        snapshot.flip();
+        append(gameId, snapshot);
+    }
+
+    /**
+     * Removes a game. The archive can't delete, so an empty snapshot is appended
+     * as a mark that the game is gone (dropped by the next compaction).
+     *
+     * @param gameId the id of the game
+     * @return whether the archive held the game
+     * @throws IOException if the files can't be written
+     */
+    public boolean remove(long gameId) throws IOException {
+        lock.lock();
+        try {
+            if (lengths[find(gameId)] <= 0) {
+                return false;
+            }
+            append(gameId, ByteBuffer.allocate(0));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Finds the current snapshot of a game.
+     *
+     * @param gameId the id of the game
+     * @return a read-only buffer holding the snapshot (a slice of a mapped
+     *         segment, or a copy if the snapshot isn't in a full segment), or
+     *         null if the game isn't in the archive
+     * @throws IOException if the data file can't be read or mapped
+     */
+    public ByteBuffer read(long gameId) throws IOException {
+        lock.lock();
+        try {
+            int slot = find(gameId);
+            // An empty snapshot marks a removed game
+            if (lengths[slot] <= 0) {
+                return null;
+            }
+            long offset = offsets[slot];
+            int length = lengths[slot];
+
+            int segment = (int) (offset >>> SEGMENT_SHIFT);
+            long segmentEnd = (segment + 1L) << SEGMENT_SHIFT;
+            if (offset + length <= segmentEnd && segmentEnd <= dataSize) {
+                int start = (int) (offset - ((long) segment << SEGMENT_SHIFT));
+                return segment(segment).slice(start, length).asReadOnlyBuffer();
+            }
+            ByteBuffer copy = ByteBuffer.allocate(length);
+            while (copy.hasRemaining()) {
+                if (data.read(copy, offset + copy.position()) < 0) {
+                    throw new IOException("data file ended early");
+                }
+            }
+            copy.flip();
+            return copy.asReadOnlyBuffer();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Copies the current snapshots into new files, which then replace the old
+     * ones, and drops the removed games (the ones whose current snapshot is
+     * empty). This happens by itself while appending (see the class comment), so
+     * calling it is only needed to shrink an archive right away. Buffers returned
+     * by read before stay readable.
+     *
+     * @throws IOException if the files can't be written or renamed. The archive
+     *                     is left as it was if the new files weren't renamed yet
+     */
+    public void compact() throws IOException {
+        lock.lock();
+        try {
+            Path newPath = path.resolveSibling(path.getFileName() + ".compact");
+            Path newIndexPath = path.resolveSibling(indexPath.getFileName() + ".compact");
+
+            try (FileChannel newData = FileChannel.open(newPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                    FileChannel newIndex = FileChannel.open(newIndexPath,
+                            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                            StandardOpenOption.WRITE)) {
+                ByteBuffer entries = ByteBuffer.allocate(INDEX_ENTRY_BYTES * 4096);
+                long newSize = 0;
+                long indexPosition = 0;
+                for (int slot = 0; slot < ids.length; slot++) {
+                    if (lengths[slot] <= 0) {
+                        continue;
+                    }
+                    // The header and the snapshot are copied as they are
+                    long record = offsets[slot] - RECORD_HEADER_BYTES;
+                    long recordBytes = RECORD_HEADER_BYTES + lengths[slot];
+                    for (long copied = 0; copied < recordBytes;) {
+                        copied += data.transferTo(
+                                record + copied, recordBytes - copied, newData
+                        );
+                    }
+
+                    if (!entries.hasRemaining()) {
+                        entries.flip();
+                        writeFully(newIndex, entries, indexPosition);
+                        indexPosition += entries.limit();
+                        entries.clear();
+                    }
+                    entries.putLong(ids[slot]).putLong(newSize + RECORD_HEADER_BYTES)
+                            .putInt(lengths[slot]);
+                    newSize += recordBytes;
+                }
+                entries.flip();
+                writeFully(newIndex, entries, indexPosition);
+                newData.force(true);
+                newIndex.force(true);
+            } catch (IOException e) {
+                Files.deleteIfExists(newPath);
+                Files.deleteIfExists(newIndexPath);
+                throw e;
+            }
+
+            // From here on, an archive opened after a crash rebuilds its index from
+            // whichever data file it finds
+            index.truncate(0);
+            index.force(true);
+            data.close();
+            index.close();
+            try {
+                move(newPath, path);
+                move(newIndexPath, indexPath);
+            } finally {
+                // Whatever got renamed, the files at path and indexPath now belong
+                // together
+                reload();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Loads the current snapshot of a game into the engine.
+     *
+     * @param gameId the id of the game
+     * @param engine the engine to load the game into
+     * @return false if the game isn't in the archive
+     * @throws IOException              if the data file can't be mapped
+     * @throws IllegalArgumentException if the stored snapshot is invalid
+     */
+    public boolean read(long gameId, GameEngine engine) throws IOException {
+        ByteBuffer snapshot = read(gameId);
+        if (snapshot == null) {
+            return false;
+        }
+        GameCodec.read(snapshot, engine);
+        return true;
+    }
+
+    /**
+     * @param gameId the id of the game
+     * @return whether the archive holds a snapshot of the game
+     */
+    public boolean contains(long gameId) {
+        lock.lock();
+        try {
+            return lengths[find(gameId)] > 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of games in the archive (not counting removed games)
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return size - removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the size of the data file (in bytes)
+     */
+    public long getDataSize() {
+        lock.lock();
+        try {
+            return dataSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces everything appended so far onto the disk.
+     *
+     * @throws IOException if the files can't be written
+     */
+    public void force() throws IOException {
+        lock.lock();
+        try {
+            data.force(false);
+            index.force(false);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes both files. Buffers returned by read stay readable until they are
+     * garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            try {
+                data.close();
+            } finally {
+                index.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Opens the files again and reads the index back in (rebuilding it from the
+     * data file if it is empty), dropping the mappings of the old data file.
+     */
+    private void reload() throws IOException {
+        data = open(path);
+        index = open(indexPath);
+        segments = new MappedByteBuffer[0];
+        ids = new long[64];
+        offsets = new long[64];
+        lengths = new int[64];
+        Arrays.fill(lengths, -1);
+        size = 0;
+        removed = 0;
+        liveBytes = 0;
+        dataSize = data.size();
+        recover(loadIndex());
+    }
+
+    /**
+     * @return the mapping of a full segment of the data file (mapped the first
+     *         time it is needed)
+     */
+    private MappedByteBuffer segment(int segment) throws IOException {
+        if (segment >= segments.length) {
+            segments = Arrays.copyOf(segments, Math.max(segment + 1, segments.length * 2));
+        }
+        if (segments[segment] == null) {
+            segments[segment] = data.map(
+                    FileChannel.MapMode.READ_ONLY, (long) segment << SEGMENT_SHIFT,
+                    SEGMENT_BYTES
+            );
+        }
+        return segments[segment];
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(
+                file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE
+        );
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void writeIndexEntry(long id, long offset, int length) throws IOException {
+        entry.clear();
+        entry.putLong(id).putLong(offset).putInt(length).flip();
+        writeFully(index, entry, indexSize);
+        indexSize += INDEX_ENTRY_BYTES;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Adds (or replaces) the entry of a game in the hash table, growing it when
+     * it gets more than half full. The entry of a removed game (length 0) stays
+     * in the table, so it hides the older snapshots of the game, but doesn't
+     * count as a live record.
+     */
+    private void put(long id, long offset, int length) {
+        int slot = find(id);
+        int old = lengths[slot];
+        if (old < 0) {
+            size++;
+        } else if (old == 0) {
+            removed--;
+        } else {
+            liveBytes -= RECORD_HEADER_BYTES + old;
+        }
+        if (length == 0) {
+            removed++;
+        } else {
+            liveBytes += RECORD_HEADER_BYTES + length;
+        }
+        ids[slot] = id;
+        offsets[slot] = offset;
+        lengths[slot] = length;
+
+        if (size * 2 > ids.length) {
+            long[] oldIds = ids;
+            long[] oldOffsets = offsets;
+            int[] oldLengths = lengths;
+            ids = new long[oldIds.length * 2];
+            offsets = new long[oldIds.length * 2];
+            lengths = new int[oldIds.length * 2];
+            Arrays.fill(lengths, -1);
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldLengths[i] >= 0) {
+                    int newSlot = find(oldIds[i]);
+                    ids[newSlot] = oldIds[i];
+                    offsets[newSlot] = oldOffsets[i];
+                    lengths[newSlot] = oldLengths[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the slot holding the game id, or the empty slot where it belongs
+     */
+    private int find(long id) {
+        int mask = ids.length - 1;
+        // Spreads the bits of the id so sequential ids don't cluster
+        long hash = id * 0x9E3779B97F4A7C15L;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (lengths[slot] >= 0 && ids[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
@@ -0,0 +1,354 @@
+package org.cis1200.minesweeper;
+
+import java.util.Arrays;
+
+/**
+ * This class works out which hidden cells are certainly safe and which are
+ * certainly bombs, using only what the player can see: the numbers of the
+ * visible cells (Board.getNumOfCell is only ever asked about visible cells) and
+ * which cells are still hidden. Flags are not trusted, since the player could be
+ * wrong, so a flagged cell is treated like any other hidden cell (and can even
+ * turn out to be safe).
+ *
+ * Every visible number with hidden neighbors is a constraint: its hidden
+ * neighbors hold exactly (number - known bombs around it) bombs. Two rules are
+ * used:
+ * - Single cell: if a constraint needs no more bombs, all of its hidden
+ * neighbors are safe; if it needs as many bombs as it has hidden neighbors, they
+ * are all bombs.
+ * - Subset/superset: for two constraints A and B that share hidden cells, the
+ * number of bombs in the shared cells is limited by both of them. If that forces
+ * the cells only A has to be all bombs (or all safe), they are. When A is a
+ * subset of B this is the usual "B minus A holds the difference" rule.
+ *
+ * Constraints are kept in a work queue, and whenever a cell is found to be safe
+ * or a bomb, the constraints around it are checked again, so the solver stops as
+ * soon as nothing new can be found. The arrays are reused between calls, so a
+ * Solver should be kept around (e.g. one per game) to run after every move.
+ */
+public class Solver {
+
+    public static final byte UNKNOWN = 0;
+    public static final byte SAFE = 1;
+    public static final byte BOMB = 2;
+
+    private int rows;
+    private int columns;
+    // The number of each visible cell, or -1 for hidden cells
+    private byte[] numbers = new byte[0];
+    // What is known about each hidden cell (UNKNOWN, SAFE or BOMB)
+    private byte[] known = new byte[0];
+
+    private int[] queue = new int[0];
+    private boolean[] queued = new boolean[0];
+    private int head;
+    private int tail;
+    private int queueSize;
+
+    private int[] safeCells = new int[16];
+    private int safeCount;
+    private int[] bombCells = new int[16];
+    private int bombCount;
+
+    // Scratch space for the hidden, unknown neighbors of two constraints
+    private final int[] first = new int[8];
+    private final int[] second = new int[8];
+
+    /**
+     * Finds every cell that is certainly safe or certainly a bomb on the board.
+     * The results replace those of the last call.
+     *
+     * @param board the board to look at
+     */
+    public void solve(Board board) {
+        rows = board.getRows();
+        columns = board.getColumns();
+        int cells = rows * columns;
+        if (numbers.length != cells) {
+            numbers = new byte[cells];
+            known = new byte[cells];
+            queue = new int[cells];
+            queued = new boolean[cells];
+        }
+        Arrays.fill(known, UNKNOWN);
+        head = 0;
+        tail = 0;
+        queueSize = 0;
+        safeCount = 0;
+        bombCount = 0;
+
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                numbers[i * columns + j] = board.getVisibilityOfCell(i, j)
+                        ? (byte) board.getNumOfCell(i, j) : -1;
+            }
+        }
+        for (int cell = 0; cell < cells; cell++) {
+            if (isConstraint(cell)) {
+                enqueue(cell);
+            }
+        }
+
+        while (queueSize > 0) {
+            int cell = queue[head];
+            head = head + 1 == queue.length ? 0 : head + 1;
+            queueSize--;
+            queued[cell] = false;
+            check(cell);
+        }
+    }
+
+    /**
+     * @return the indices (x * columns + y) of the cells that are certainly safe,
+     *         in the order they were found
+     */
+    public int[] getSafeCells() {
+        return Arrays.copyOf(safeCells, safeCount);
+    }
+
+    /**
+     * @return the indices (x * columns + y) of the cells that are certainly
+     *         bombs, in the order they were found
+     */
+    public int[] getBombCells() {
+        return Arrays.copyOf(bombCells, bombCount);
+    }
+
+    /**
+     * @return the number of cells that are certainly safe
+     */
+    public int getSafeCount() {
+        return safeCount;
+    }
+
+    /**
+     * @return the number of cells that are certainly bombs
+     */
+    public int getBombCount() {
+        return bombCount;
+    }
+
+    /**
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return what is known about the cell after the last solve (UNKNOWN, SAFE or
+     *         BOMB); visible cells are always SAFE
+     * @throws IllegalArgumentException if the coordinates are out of bounds
+     */
+    public byte getKnown(int x, int y) {
+        if (x < 0 || x >= rows || y < 0 || y >= columns) {
+            throw new IllegalArgumentException();
+        }
+        int cell = x * columns + y;
+        return numbers[cell] >= 0 ? SAFE : known[cell];
+    }
+
+    /**
+     * The numbers seen by the last solve (-1 for hidden cells). Not a copy.
+     */
+    byte[] getNumbers() {
+        return numbers;
+    }
+
+    /**
+     * What the last solve found out about each hidden cell. Not a copy.
+     */
+    byte[] getKnownCells() {
+        return known;
+    }
+
+    /**
+     * Applies the single-cell rule to a constraint, then the subset/superset rule
+     * with every constraint close enough to share hidden cells with it.
+     *
+     * @param cell the visible cell of the constraint
+     */
+    private void check(int cell) {
+        int size = unknownNeighbors(cell, first);
+        if (size == 0) {
+            return;
+        }
+        int needed = numbers[cell] - knownBombs(cell);
+        if (needed == 0) {
+            markAll(first, size, SAFE);
+            return;
+        }
+        if (needed == size) {
+            markAll(first, size, BOMB);
+            return;
+        }
+
+        int x = cell / columns;
+        int y = cell % columns;
+        for (int i = Math.max(0, x - 2); i <= Math.min(rows - 1, x + 2); i++) {
+            for (int j = Math.max(0, y - 2); j <= Math.min(columns - 1, y + 2); j++) {
+                int other = i * columns + j;
+                if (other == cell || !isConstraint(other)) {
+                    continue;
+                }
+                if (compare(cell, size, needed, other)) {
+                    // Something was found, so this constraint is checked again
+                    // from scratch later
+                    enqueue(cell);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * The subset/superset rule for constraints A (already in first) and B.
+     *
+     * @return whether any cell was marked
+     */
+    private boolean compare(int cellA, int sizeA, int neededA, int cellB) {
+        int sizeB = unknownNeighbors(cellB, second);
+        if (sizeB == 0) {
+            return false;
+        }
+        int neededB = numbers[cellB] - knownBombs(cellB);
+
+        int both = 0;
+        for (int i = 0; i < sizeA; i++) {
+            for (int j = 0; j < sizeB; j++) {
+                if (first[i] == second[j]) {
+                    both++;
+                    break;
+                }
+            }
+        }
+        if (both == 0) {
+            return false;
+        }
+        int onlyA = sizeA - both;
+        int onlyB = sizeB - both;
+        // The number of bombs in the shared cells is somewhere in [least, most]
+        int least = Math.max(0, Math.max(neededA - onlyA, neededB - onlyB));
+        int most = Math.min(both, Math.min(neededA, neededB));
+
+        boolean marked = false;
+        if (onlyA > 0 && neededA - most == onlyA) {
+            markOnly(first, sizeA, second, sizeB, BOMB);
+            marked = true;
+        } else if (onlyA > 0 && neededA - least == 0) {
+            markOnly(first, sizeA, second, sizeB, SAFE);
+            marked = true;
+        }
+        if (onlyB > 0 && neededB - most == onlyB) {
+            markOnly(second, sizeB, first, sizeA, BOMB);
+            marked = true;
+        } else if (onlyB > 0 && neededB - least == 0) {
+            markOnly(second, sizeB, first, sizeA, SAFE);
+            marked = true;
+        }
+        return marked;
+    }
+
+    /**
+     * Marks the cells of a that are not in b.
+     */
+    private void markOnly(int[] a, int sizeA, int[] b, int sizeB, byte what) {
+        for (int i = 0; i < sizeA; i++) {
+            boolean shared = false;
+            for (int j = 0; j < sizeB && !shared; j++) {
+                shared = a[i] == b[j];
+            }
+            if (!shared) {
+                mark(a[i], what);
+            }
+        }
+    }
+
+    private void markAll(int[] cells, int size, byte what) {
+        for (int i = 0; i < size; i++) {
+            mark(cells[i], what);
+        }
+    }
+
+    /**
+     * Records that a hidden cell is safe or a bomb, and queues the constraints
+     * around it to be checked again.
+     */
+    private void mark(int cell, byte what) {
+        if (known[cell] != UNKNOWN) {
+            return;
+        }
+        known[cell] = what;
+        if (what == SAFE) {
+            if (safeCount == safeCells.length) {
+                safeCells = Arrays.copyOf(safeCells, safeCount * 2);
+            }
+            safeCells[safeCount++] = cell;
+        } else {
+            if (bombCount == bombCells.length) {
+                bombCells = Arrays.copyOf(bombCells, bombCount * 2);
+            }
+            bombCells[bombCount++] = cell;
+        }
+
+        int x = cell / columns;
+        int y = cell % columns;
+        for (int i = Math.max(0, x - 1); i <= Math.min(rows - 1, x + 1); i++) {
+            for (int j = Math.max(0, y - 1); j <= Math.min(columns - 1, y + 1); j++) {
+                if (isConstraint(i * columns + j)) {
+                    enqueue(i * columns + j);
+                }
+            }
+        }
+    }
+
+    private void enqueue(int cell) {
+        if (!queued[cell]) {
+            queued[cell] = true;
+            queue[tail] = cell;
+            tail = tail + 1 == queue.length ? 0 : tail + 1;
+            queueSize++;
+        }
+    }
+
+    /**
+     * Collects the hidden neighbors of a cell that aren't known yet.
+     *
+     * @return the number of cells written into out
+     */
+    private int unknownNeighbors(int cell, int[] out) {
+        int x = cell / columns;
+        int y = cell % columns;
+        int size = 0;
+        for (int i = Math.max(0, x - 1); i <= Math.min(rows - 1, x + 1); i++) {
+            for (int j = Math.max(0, y - 1); j <= Math.min(columns - 1, y + 1); j++) {
+                int neighbor = i * columns + j;
+                if (numbers[neighbor] < 0 && known[neighbor] == UNKNOWN) {
+                    out[size++] = neighbor;
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return whether the cell is a visible number (a bomb uncovered by losing
+     *         isn't a constraint)
+     */
+    private boolean isConstraint(int cell) {
+        return numbers[cell] >= 0 && numbers[cell] < 9;
+    }
+
+    /**
+     * @return the number of neighbors of a cell known to be bombs (including
+     *         bombs uncovered by losing)
+     */
+    private int knownBombs(int cell) {
+        int x = cell / columns;
+        int y = cell % columns;
+        int count = 0;
+        for (int i = Math.max(0, x - 1); i <= Math.min(rows - 1, x + 1); i++) {
+            for (int j = Math.max(0, y - 1); j <= Math.min(columns - 1, y + 1); j++) {
+                if (known[i * columns + j] == BOMB || numbers[i * columns + j] == 9) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
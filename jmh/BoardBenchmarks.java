@@ -0,0 +1,93 @@
+package org.cis1200.minesweeper;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmarks of the Board: making boards (random, and from the string of an
+ * exported game), turning a board into that string, and counting the bombs
+ * around a cell. Every benchmark runs at every size and bomb density.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class BoardBenchmarks {
+
+    // The number of rows (and columns) of the board
+    @Param({ "16", "128", "1024" })
+    int size;
+
+    // The fraction of cells that are bombs
+    @Param({ "0.05", "0.15", "0.30" })
+    double density;
+
+    int bombs;
+    Board fixed;
+    String values;
+
+    @Setup
+    public void setUp() {
+        bombs = (int) (size * size * density);
+        fixed = new Board(size, size, bombs, 42);
+        values = fixed.toString().replace("\n", "");
+    }
+
+    @Benchmark
+    public Board newBoard() {
+        return new Board(size, size, bombs);
+    }
+
+    @Benchmark
+    public Board boardFromString() {
+        return new Board(size, size, values);
+    }
+
+    @Benchmark
+    public String boardToString() {
+        return fixed.toString();
+    }
+
+    /**
+     * Counts the bombs around every cell of the board, so the score is the time
+     * of one sweep of size * size calls.
+     */
+    @Benchmark
+    public void numSurroundingBombs(Blackhole blackhole) {
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                blackhole.consume(fixed.numSurroundingBombs(i, j));
+            }
+        }
+    }
+
+    /**
+     * Simple helper function that finds a cell to click on that cascades.
+     *
+     * @param board the board to search
+     * @return the index of the first 0 on the board (or 0 if there is none)
+     */
+    static int firstZero(Board board) {
+        byte[] cells = board.getCells();
+        for (int i = 0; i < cells.length; i++) {
+            if ((cells[i] & Board.VALUE_MASK) == 0) {
+                return i;
+            }
+        }
+        return 0;
+    }
+}
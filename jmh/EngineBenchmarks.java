@@ -0,0 +1,102 @@
+package org.cis1200.minesweeper;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of the moves of the GameEngine: a click on a 0 that cascades
+ * over its whole region (showClickedCell, which goes through showCell and also
+ * records the move, so it can be undone), undoing that click, and the visibility board of the
+ * game after it. Every benchmark runs at every size and bomb density.
+ *
+ * The cascade and the undo each need the board as the other one leaves it, so
+ * the game is put back between invocations (Level.Invocation). That setup isn't
+ * timed, but the timestamps it costs are noticeable on the smallest boards.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class EngineBenchmarks {
+
+    /**
+     * A game and the 0 to click on.
+     */
+    @State(Scope.Thread)
+    public static class Game {
+        // The number of rows (and columns) of the board
+        @Param({ "16", "128", "1024" })
+        int size;
+
+        // The fraction of cells that are bombs
+        @Param({ "0.05", "0.15", "0.30" })
+        double density;
+
+        GameEngine engine;
+        int zeroX;
+        int zeroY;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            engine = new GameEngine(size, size, (int) (size * size * density), 42);
+            int zero = BoardBenchmarks.firstZero(engine.getBoard());
+            zeroX = zero / size;
+            zeroY = zero % size;
+        }
+    }
+
+    /**
+     * A game where the click hasn't happened yet.
+     */
+    @State(Scope.Thread)
+    public static class Covered extends Game {
+        @Setup(Level.Invocation)
+        public void cover() {
+            if (engine.getMoveLog().size() > 0) {
+                engine.undo();
+            }
+        }
+    }
+
+    /**
+     * A game where the click has just happened.
+     */
+    @State(Scope.Thread)
+    public static class Uncovered extends Game {
+        @Setup(Level.Invocation)
+        public void uncover() {
+            if (engine.getMoveLog().size() == 0) {
+                engine.showClickedCell(zeroX, zeroY);
+            }
+        }
+    }
+
+    @Benchmark
+    public int showCellCascade(Covered game) {
+        game.engine.showClickedCell(game.zeroX, game.zeroY);
+        return game.engine.getNonBombCellsRemaining();
+    }
+
+    @Benchmark
+    public boolean undoCascade(Uncovered game) {
+        return game.engine.undo();
+    }
+
+    @Benchmark
+    public String getVisibilityBoard(Uncovered game) {
+        return game.engine.getVisibilityBoard();
+    }
+}
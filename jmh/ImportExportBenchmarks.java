@@ -0,0 +1,72 @@
+package org.cis1200.minesweeper;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of saving a game and loading it back into another engine: as
+ * the text of the exported .txt files, and as a binary GameCodec snapshot. The
+ * game has had one cascading click. Every benchmark runs at every size and bomb
+ * density. Only the work in memory is measured, not the disk.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ImportExportBenchmarks {
+
+    // The number of rows (and columns) of the board
+    @Param({ "16", "128", "1024" })
+    int size;
+
+    // The fraction of cells that are bombs
+    @Param({ "0.05", "0.15", "0.30" })
+    double density;
+
+    GameEngine played;
+    GameEngine copy;
+    ByteBuffer snapshot;
+
+    @Setup
+    public void setUp() {
+        int bombs = (int) (size * size * density);
+        played = new GameEngine(size, size, bombs, 42);
+        int zero = BoardBenchmarks.firstZero(played.getBoard());
+        played.showClickedCell(zero / size, zero % size);
+        copy = new GameEngine(size, size, bombs, 1);
+        snapshot = ByteBuffer.allocate(GameCodec.encodedSize(played));
+    }
+
+    @Benchmark
+    public int exportImportRoundTrip() {
+        String visibility = played.getVisibilityBoard().replace("\n", "");
+        String solution = played.getBoard().toString().replace("\n", "");
+        copy.resetWithGivenState(
+                size, size, solution, visibility, Integer.toString(played.getCurrentTime())
+        );
+        return copy.getNonBombCellsRemaining();
+    }
+
+    @Benchmark
+    public int binaryRoundTrip() {
+        snapshot.clear();
+        GameCodec.write(played, snapshot);
+        snapshot.flip();
+        GameCodec.read(snapshot, copy);
+        return copy.getNonBombCellsRemaining();
+    }
+}
@@ -0,0 +1,174 @@
+package org.cis1200.minesweeper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests the SessionCache with many threads using a few games in a cache that
+ * only holds one or two of them, so almost every call evicts, saves, loads or
+ * takes back a game while other threads use it.
+ */
+public class SessionCacheTest {
+
+    private static final int GAMES = 8;
+    private static final int THREADS = 32;
+    private static final int CALLS = 400;
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Every game has no bombs, so every flagCell is a move (flagging or
+     * unflagging a cell) and the game never ends.
+     */
+    private static GameEngine newGame(long id) {
+        return new GameEngine(16, 16, 0, id);
+    }
+
+    /**
+     * Runs the threads at once and waits for all of them.
+     *
+     * @return the first thing a thread threw, or null
+     */
+    private static Throwable runAll(Runnable task, int threads) throws InterruptedException {
+        CountDownLatch go = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] running = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            running[i] = Thread.ofVirtual().start(() -> {
+                try {
+                    go.await();
+                    task.run();
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+        }
+        go.countDown();
+        for (Thread thread : running) {
+            thread.join();
+        }
+        return failure.get();
+    }
+
+    private void testNoMovesLost(int maxGames) throws Exception {
+        try (SnapshotArchive archive = new SnapshotArchive(dir.resolve("games.dat"))) {
+            SessionCache cache = new SessionCache(archive, maxGames, 1, TimeUnit.HOURS);
+            for (long id = 0; id < GAMES; id++) {
+                cache.put(id, newGame(id));
+            }
+            AtomicLong calls = new AtomicLong();
+            AtomicLong[] moves = new AtomicLong[GAMES];
+            for (int id = 0; id < GAMES; id++) {
+                moves[id] = new AtomicLong();
+            }
+
+            Throwable failure = runAll(() -> {
+                SplittableRandom random = new SplittableRandom();
+                for (int i = 0; i < CALLS; i++) {
+                    int id = random.nextInt(GAMES);
+                    int row = random.nextInt(16);
+                    int column = random.nextInt(16);
+                    try {
+                        calls.incrementAndGet();
+                        Boolean played = cache.withGame(id, engine -> {
+                            engine.flagCell(row, column);
+                            return true;
+                        });
+                        assertTrue(played, "game " + id + " went missing");
+                        moves[id].incrementAndGet();
+                        if (i % 50 == 0) {
+                            cache.evictIdle();
+                        }
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }, THREADS);
+            if (failure != null) {
+                throw new AssertionError(failure);
+            }
+
+            for (int id = 0; id < GAMES; id++) {
+                calls.incrementAndGet();
+                int made = cache.withGame(id, engine -> engine.getMoveLog().size());
+                assertEquals(moves[id].get(), made, "moves of game " + id);
+            }
+            assertEquals(calls.get(), cache.getHits() + cache.getMisses());
+            assertTrue(cache.size() <= maxGames);
+            assertTrue(cache.getEvictions() > 0);
+            assertTrue(cache.getLoads() > 0);
+        }
+    }
+
+    @Test
+    public void testNoMovesLostWithOneGameInMemory() throws Exception {
+        testNoMovesLost(1);
+    }
+
+    @Test
+    public void testNoMovesLostWithTwoGamesInMemory() throws Exception {
+        testNoMovesLost(2);
+    }
+
+    @Test
+    public void testRemovedGameStaysRemoved() throws Exception {
+        try (SnapshotArchive archive = new SnapshotArchive(dir.resolve("games.dat"))) {
+            SessionCache cache = new SessionCache(archive, 2, 1, TimeUnit.HOURS);
+            for (long id = 0; id < GAMES; id++) {
+                cache.put(id, newGame(id));
+            }
+            AtomicLong calls = new AtomicLong();
+            AtomicLong removals = new AtomicLong();
+            // Every thread uses all of the games, and removes game 0 half way
+            // through, so the removal races with uses, loads and saves of it
+            Throwable failure = runAll(() -> {
+                SplittableRandom random = new SplittableRandom();
+                try {
+                    for (int i = 0; i < CALLS; i++) {
+                        if (i == CALLS / 2 && cache.remove(0)) {
+                            removals.incrementAndGet();
+                        }
+                        calls.incrementAndGet();
+                        cache.withGame(random.nextInt(GAMES), engine -> {
+                            engine.flagCell(0, 0);
+                            return true;
+                        });
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }, THREADS);
+            if (failure != null) {
+                throw new AssertionError(failure);
+            }
+
+            assertEquals(1, removals.get());
+            assertNull(cache.withGame(0, engine -> true));
+            assertFalse(cache.remove(0));
+            assertFalse(archive.contains(0));
+            assertEquals(calls.get() + 1, cache.getHits() + cache.getMisses());
+            // A new cache on the same archive doesn't find it either, but the
+            // other games are all still there
+            SessionCache other = new SessionCache(archive, 1, 1, TimeUnit.HOURS);
+            assertNull(other.withGame(0, engine -> true));
+            for (long id = 1; id < GAMES; id++) {
+                Boolean found = cache.withGame(id, engine -> true);
+                assertEquals(Boolean.TRUE, found, "game " + id);
+            }
+        }
+    }
+}
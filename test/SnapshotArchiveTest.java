@@ -0,0 +1,260 @@
+package org.cis1200.minesweeper;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests the SnapshotArchive, mostly what happens when it is opened again after
+ * the program stopped at a bad time (a lost or cut off index, a record that was
+ * only partly written) and what compaction keeps.
+ */
+public class SnapshotArchiveTest {
+
+    // The sizes of a record header and an index entry (see SnapshotArchive)
+    private static final int RECORD_HEADER_BYTES = 4 + 8 + 4;
+    private static final int INDEX_ENTRY_BYTES = 8 + 8 + 4;
+
+    @TempDir
+    Path dir;
+
+    /**
+     * @return the bytes of a made up snapshot, different for every id and
+     *         version
+     */
+    private static byte[] snapshot(long id, int version, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (id * 31 + version * 7 + i);
+        }
+        return bytes;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static void truncate(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    private Path data() {
+        return dir.resolve("games.dat");
+    }
+
+    private Path index() {
+        return dir.resolve("games.dat.idx");
+    }
+
+    /**
+     * Appends ids 0 to 99 (with 100 + id bytes each), then a second version of
+     * every even id.
+     */
+    private void fill(SnapshotArchive archive) throws IOException {
+        for (long id = 0; id < 100; id++) {
+            archive.append(id, ByteBuffer.wrap(snapshot(id, 1, 100 + (int) id)));
+        }
+        for (long id = 0; id < 100; id += 2) {
+            archive.append(id, ByteBuffer.wrap(snapshot(id, 2, 50)));
+        }
+    }
+
+    /**
+     * Checks that the archive holds exactly what fill appended.
+     */
+    private static void assertFilled(SnapshotArchive archive) throws IOException {
+        assertEquals(100, archive.size());
+        for (long id = 0; id < 100; id++) {
+            byte[] expected = id % 2 == 0 ? snapshot(id, 2, 50)
+                    : snapshot(id, 1, 100 + (int) id);
+            assertArrayEquals(expected, bytes(archive.read(id)), "game " + id);
+        }
+        assertNull(archive.read(100));
+    }
+
+    @Test
+    public void testAppendAndReadAfterReopen() throws IOException {
+        GameEngine engine = new GameEngine(9, 9, 10, 42);
+        engine.showClickedCell(4, 4);
+        engine.flagCell(0, 0);
+        try (SnapshotArchive archive = new SnapshotArchive(data())) {
+            fill(archive);
+            assertFilled(archive);
+            archive.append(500, engine);
+        }
+
+        try (SnapshotArchive archive = new SnapshotArchive(data())) {
+            assertEquals(101, archive.size());
+            assertTrue(archive.contains(500));
+            GameEngine loaded = new GameEngine();
+            assertTrue(archive.read(500, loaded));
+            assertEquals(engine.getVisibilityBoard(), loaded.getVisibilityBoard());
+            assertEquals(engine.getMoveLog().size(), loaded.getMoveLog().size());
+            assertFalse(archive.read(501, loaded));
+        }
+    }
+
+    @Test
+    public void testReopenWithoutIndex() throws IOException {
+        try (SnapshotArchive archive = new SnapshotArchive(data())) {
+            fill(archive);
+        }
+        Files.delete(index());
+
+        try (SnapshotArchive archive = new SnapshotArchive(data())) {
+            assertFilled(archive);
+        }
+        // The index was written again while scanning the data file
+        assertEquals(150L * INDEX_ENTRY_BYTES, Files.size(index()));
+        try (SnapshotArchive archive = new SnapshotArchive(data())) {
+            assertFilled(archive);
+        }
+    }
+
+    @Test
+    public void testReopenWithTruncatedIndex() throws IOException {
+        try (SnapshotArchive archive = new SnapshotArchive(data())) {
+            fill(archive);
+        }
+        // Cut off in the middle of an entry
+        truncate(index(), Files.size(index()) - 7);
+        try (SnapshotArchive archive = new SnapshotArchive(data())) {
+            assertFilled(archive);
+        }
+
+        // Cut off before the second versions, which have to be found again in the
+        // data file (and have to win over the first versions)
+        truncate(index(), 60L * INDEX_ENTRY_BYTES);
+        try (SnapshotArchive archive = new SnapshotArchive(data())) {
+            assertFilled(archive);
+        }
+        assertEquals(150L * INDEX_ENTRY_BYTES, Files.size(index()));
+    }
+
+    @Test
+    public void testReopenWithHalfWrittenRecord() throws IOException {
+        long complete;
+        try (SnapshotArchive archive = new SnapshotArchive(data())) {
+            fill(archive);
+            complete = archive.getDataSize();
+            archive.append(1, ByteBuffer.wrap(snapshot(1, 3, 1000)));
+            archive.append(200, ByteBuffer.wrap(snapshot(200, 1, 1000)));
+        }
+
+        // The snapshot of game 200 was only partly written
+        truncate(data(), complete + RECORD_HEADER_BYTES + 1000 + RECORD_HEADER_BYTES + 10);
+        try (SnapshotArchive archive = new SnapshotArchive(data())) {
+            assertFalse(archive.contains(200));
+            assertArrayEquals(snapshot(1, 3, 1000), bytes(archive.read(1)));
+            assertEquals(complete + RECORD_HEADER_BYTES + 1000, archive.getDataSize());
+        }
+
+        // Only part of the header of the newest snapshot of game 1 was written
+        truncate(data(), complete + 5);
+        try (SnapshotArchive archive = new SnapshotArchive(data())) {
+            assertEquals(complete, archive.getDataSize());
+            assertFilled(archive);
+            // What is appended after the cut is found after opening again
+            archive.append(200, ByteBuffer.wrap(snapshot(200, 2, 30)));
+        }
+        try (SnapshotArchive archive = new SnapshotArchive(data())) {
+            assertArrayEquals(snapshot(200, 2, 30), bytes(archive.read(200)));
+            assertEquals(101, archive.size());
+        }
+    }
+
+    @Test
+    public void testRemovedGamesAreAbsent() throws IOException {
+        try (SnapshotArchive archive = new SnapshotArchive(data())) {
+            fill(archive);
+            assertTrue(archive.remove(7));
+            assertFalse(archive.remove(7));
+            assertFalse(archive.remove(100));
+            assertFalse(archive.contains(7));
+            assertNull(archive.read(7));
+            assertFalse(archive.read(7, new GameEngine()));
+            assertEquals(99, archive.size());
+        }
+        try (SnapshotArchive archive = new SnapshotArchive(data())) {
+            assertFalse(archive.contains(7));
+            assertEquals(99, archive.size());
+        }
+    }
+
+    @Test
+    public void testCompactionDropsRemovedGames() throws IOException {
+        try (SnapshotArchive archive = new SnapshotArchive(data())) {
+            fill(archive);
+            ByteBuffer before = archive.read(1);
+            for (long id = 0; id < 50; id++) {
+                archive.remove(id);
+            }
+            long size = archive.getDataSize();
+
+            archive.compact();
+            assertTrue(archive.getDataSize() < size);
+            assertEquals(50, archive.size());
+            for (long id = 0; id < 100; id++) {
+                assertEquals(id >= 50, archive.contains(id), "game " + id);
+            }
+            // Read before the compaction, from the old data file
+            assertArrayEquals(snapshot(1, 1, 101), bytes(before));
+            assertArrayEquals(snapshot(51, 1, 151), bytes(archive.read(51)));
+            assertArrayEquals(snapshot(52, 2, 50), bytes(archive.read(52)));
+        }
+        assertFalse(Files.exists(dir.resolve("games.dat.compact")));
+        try (SnapshotArchive archive = new SnapshotArchive(data())) {
+            assertEquals(50, archive.size());
+            assertNull(archive.read(0));
+            assertArrayEquals(snapshot(99, 1, 199), bytes(archive.read(99)));
+        }
+    }
+
+    @Test
+    public void testCompactionKeepsMappedBuffers() throws IOException {
+        // Enough to fill the first segment, so game 0 is read from a mapping
+        int length = 1 << 20;
+        int games = (int) (SnapshotArchive.SEGMENT_BYTES / length) + 2;
+        try (SnapshotArchive archive = new SnapshotArchive(data())) {
+            for (long id = 0; id < games; id++) {
+                archive.append(id, ByteBuffer.wrap(snapshot(id, 1, length)));
+            }
+            ByteBuffer mapped = archive.read(0);
+            assertTrue(mapped.isDirect());
+            archive.remove(0);
+            archive.compact();
+
+            assertArrayEquals(snapshot(0, 1, length), bytes(mapped));
+            assertNull(archive.read(0));
+            assertArrayEquals(snapshot(1, 1, length), bytes(archive.read(1)));
+        }
+    }
+
+    @Test
+    public void testCompactsByItself() throws IOException {
+        try (SnapshotArchive archive = new SnapshotArchive(data())) {
+            // The same game over and over, so almost all of the file is dead
+            for (int version = 0; version < 1000; version++) {
+                archive.append(1, ByteBuffer.wrap(snapshot(1, version, 4096)));
+            }
+            assertTrue(archive.getDataSize() < 2 * SnapshotArchive.MIN_COMPACT_BYTES);
+            assertArrayEquals(snapshot(1, 999, 4096), bytes(archive.read(1)));
+        }
+    }
+}